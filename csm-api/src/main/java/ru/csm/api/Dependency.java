@@ -7,18 +7,6 @@ import java.net.URL;
 
 public enum Dependency {
 
-    DBCP(
-            "commons-dbcp2-2.8.0.jar",
-            "https://repo1.maven.org/maven2/org/apache/commons/commons-dbcp2/2.8.0/commons-dbcp2-2.8.0.jar"
-    ),
-    COMMONS_LOGGING(
-            "commons-logging-1.2.jar",
-            "https://repo1.maven.org/maven2/commons-logging/commons-logging/1.2/commons-logging-1.2.jar"
-    ),
-    COMMONS_POOL(
-            "commons-pool2-2.8.1.jar",
-            "https://repo1.maven.org/maven2/org/apache/commons/commons-pool2/2.8.1/commons-pool2-2.8.1.jar"
-    ),
     COMMONS_LANG3(
             "commons-lang3-3.11.jar",
             "https://repo1.maven.org/maven2/org/apache/commons/commons-lang3/3.11/commons-lang3-3.11.jar"
@@ -0,0 +1,236 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.http;
+
+import ru.csm.api.http.entity.HttpEntity;
+import ru.csm.api.http.entity.HttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client used for all requests to Mojang and Mineskin.
+ * Connections are kept alive by JDK per host, while response body is read to the end and closed without disconnect.
+ * Connect and read timeouts limit every socket operation, and deadline limits the whole request:
+ * when it's expired, connection is closed, so slow server cannot hold calling thread
+ */
+public final class HttpClient {
+
+    private static final String USER_AGENT = "CustomSkinsManager";
+    private static final HttpClient DEFAULT = new HttpClient(5000, 10000, 20000, 8);
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int deadline;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    /**
+     * @param connectTimeout Default connect timeout in milliseconds
+     * @param readTimeout Default read timeout in milliseconds
+     * @param deadline Default time in milliseconds for the whole request. 0 to disable
+     * @param threads Amount of threads for asynchronous requests
+     */
+    public HttpClient(int connectTimeout, int readTimeout, int deadline, int threads){
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.deadline = deadline;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new HttpThreadFactory("CSM Http #"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.watchdog = new ScheduledThreadPoolExecutor(1, new HttpThreadFactory("CSM Http Watchdog #"));
+        this.watchdog.setRemoveOnCancelPolicy(true);
+        this.watchdog.setKeepAliveTime(60, TimeUnit.SECONDS);
+        this.watchdog.allowCoreThreadTimeOut(true);
+    }
+
+    public static HttpClient getDefault(){
+        return DEFAULT;
+    }
+
+    /**
+     * @return Executor for tasks which send several requests and wait for them
+     */
+    public Executor getExecutor(){
+        return executor;
+    }
+
+    /**
+     * Execute request and read body of the response as string
+     */
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        return send(request, (connection, body) -> {
+            HttpResponse response = new HttpResponse(connection.getResponseCode(), readString(body));
+
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()){
+                if (header.getKey() != null && !header.getValue().isEmpty()){
+                    response.addHeader(header.getKey(), header.getValue().get(0));
+                }
+            }
+
+            return response;
+        });
+    }
+
+    /**
+     * Execute request and pass body of the response to handler
+     */
+    public <T> T execute(HttpRequest request, ResponseHandler<T> handler) throws IOException {
+        return send(request, (connection, body) -> handler.handle(connection.getResponseCode(), body));
+    }
+
+    /**
+     * Execute request on the thread of the client
+     * @return Future, completed exceptionally with {@link IOException} cause if request is failed
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request){
+        return supplyAsync(() -> execute(request));
+    }
+
+    public <T> CompletableFuture<T> executeAsync(HttpRequest request, ResponseHandler<T> handler){
+        return supplyAsync(() -> execute(request, handler));
+    }
+
+    private <T> T send(HttpRequest request, ConnectionHandler<T> handler) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+        int timeout = request.getTimeout();
+        int requestDeadline = request.getDeadline() >= 0 ? request.getDeadline() : deadline;
+
+        connection.setRequestMethod(request.getMethod().getMethod());
+        connection.setConnectTimeout(timeout >= 0 ? timeout : connectTimeout);
+        connection.setReadTimeout(timeout >= 0 ? timeout : readTimeout);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()){
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> timer = requestDeadline > 0 ? watchdog.schedule(() -> {
+            expired.set(true);
+            connection.disconnect();
+        }, requestDeadline, TimeUnit.MILLISECONDS) : null;
+
+        try {
+            HttpEntity entity = request.getEntity();
+
+            if (entity != null){
+                byte[] body = entity.build().getBytes(StandardCharsets.UTF_8);
+
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+
+                try (OutputStream out = connection.getOutputStream()){
+                    out.write(body);
+                }
+            }
+
+            int code = connection.getResponseCode();
+            InputStream raw = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+            if (raw == null){
+                return handler.handle(connection, new ByteArrayInputStream(new byte[0]));
+            }
+
+            // Closing of the fully read stream returns connection to the keep-alive cache
+            try (InputStream body = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                    ? new GZIPInputStream(raw) : raw){
+                T result = handler.handle(connection, body);
+
+                // Cancel before close, so watchdog never disconnects connection which is already reused
+                if (timer != null) timer.cancel(false);
+                return result;
+            }
+        } catch (IOException e){
+            if (expired.get()){
+                throw new SocketTimeoutException("Request to " + request.getUrl().getHost()
+                        + " exceeded deadline of " + requestDeadline + " ms");
+            }
+            throw e;
+        } finally {
+            if (timer != null) timer.cancel(false);
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(IOSupplier<T> supplier){
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e){
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+
+        while ((length = in.read(buffer)) != -1){
+            result.write(buffer, 0, length);
+        }
+
+        return result.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private interface ConnectionHandler<T> {
+        T handle(HttpURLConnection connection, InputStream body) throws IOException;
+    }
+
+    private interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private static class HttpThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        HttpThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -16,56 +16,28 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package ru.csm.api.http;
 
 import ru.csm.api.http.entity.HttpEntity;
-import ru.csm.api.http.entity.HttpResponse;
 import ru.csm.api.http.entity.RequestMethod;
-import ru.csm.api.utils.StringUtil;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
 public class HttpPost extends HttpRequest {
 
-    private final HttpsURLConnection connection;
     private HttpEntity entity;
 
     public HttpPost(String url) throws IOException {
-        super(url);
-        connection = (HttpsURLConnection) getUrl().openConnection();
-        connection.setRequestMethod(RequestMethod.POST.getMethod());
+        super(url, RequestMethod.POST);
     }
 
     @Override
-    public void addHeader(String key, String value){
-        connection.setRequestProperty(key, value);
+    public HttpEntity getEntity(){
+        return entity;
     }
 
-    @Override
     public void setEntity(HttpEntity entity){
         this.entity = entity;
     }
-
-    @Override
-    public HttpResponse execute() throws IOException {
-        connection.setConnectTimeout(getTimeout());
-        connection.setReadTimeout(getTimeout());
-        connection.setDoOutput(true);
-
-        DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-        wr.writeBytes(entity.build());
-        wr.flush();
-        wr.close();
-
-        int responseCode = connection.getResponseCode();
-        String line = null;
-
-        if(connection.getInputStream() != null){
-            line = StringUtil.streamToString(connection.getInputStream());
-        }
-
-        return new HttpResponse(responseCode, line);
-    }
 }
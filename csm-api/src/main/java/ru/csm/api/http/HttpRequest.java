@@ -16,28 +16,44 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package ru.csm.api.http;
 
 import ru.csm.api.http.entity.HttpEntity;
 import ru.csm.api.http.entity.HttpResponse;
+import ru.csm.api.http.entity.RequestMethod;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class HttpRequest {
 
-    private URL url;
-    private int timeout;
-    private String entity;
+    private final URL url;
+    private final RequestMethod method;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private int timeout = -1;
+    private int deadline = -1;
 
-    HttpRequest(String url) throws IOException {
+    HttpRequest(String url, RequestMethod method) throws IOException {
         this.url = new URL(url);
+        this.method = method;
     }
 
     public URL getUrl(){
         return url;
     }
 
+    public RequestMethod getMethod(){
+        return method;
+    }
+
+    /**
+     * @return Connect and read timeout in milliseconds, or -1 if default timeout of the client is used
+     */
     public int getTimeout(){
         return timeout;
     }
@@ -46,10 +62,42 @@ public abstract class HttpRequest {
         this.timeout = timeout;
     }
 
-    public abstract void setEntity(HttpEntity entity);
+    /**
+     * @return Time in milliseconds for the whole request, or -1 if default deadline of the client is used
+     */
+    public int getDeadline(){
+        return deadline;
+    }
+
+    public void setDeadline(int deadline){
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return Body of the request, or null if request has no body
+     */
+    public HttpEntity getEntity(){
+        return null;
+    }
+
+    public Map<String, String> getHeaders(){
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public void addHeader(String key, String value){
+        headers.put(key, value);
+    }
+
+    public HttpResponse execute() throws IOException {
+        return HttpClient.getDefault().execute(this);
+    }
 
-    public abstract void addHeader(String key, String value);
+    public <T> T execute(ResponseHandler<T> handler) throws IOException {
+        return HttpClient.getDefault().execute(this, handler);
+    }
 
-    public abstract HttpResponse execute() throws IOException;
+    public CompletableFuture<HttpResponse> executeAsync(){
+        return HttpClient.getDefault().executeAsync(this);
+    }
 
 }
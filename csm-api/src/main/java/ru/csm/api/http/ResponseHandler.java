@@ -0,0 +1,37 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads body of the response while connection is open, so large bodies don't have to be stored as string
+ */
+@FunctionalInterface
+public interface ResponseHandler<T> {
+
+    /**
+     * @param code Response code
+     * @param body Body of the response. Already decompressed if server used gzip
+     */
+    T handle(int code, InputStream body) throws IOException;
+
+}
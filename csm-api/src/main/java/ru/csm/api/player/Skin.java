@@ -86,6 +86,15 @@ public class Skin {
         return json.get("profileName").getAsString();
     }
 
+    /**
+     * @return Time when texture was signed by Mojang, or 0 if texture has no timestamp
+     * */
+    public long getTimestamp(){
+        String decoded = new String(DECODER.decode(value));
+        JsonObject json = JSON_PARSER.parse(decoded).getAsJsonObject();
+        return json.has("timestamp") ? json.get("timestamp").getAsLong() : 0;
+    }
+
     private SkinModel parseModel(){
         JsonObject textures = getTextures();
 
@@ -18,6 +18,7 @@
 
 package ru.csm.api.player;
 
+import java.util.Set;
 import java.util.UUID;
 
 public interface SkinPlayer {
@@ -101,4 +102,21 @@ public interface SkinPlayer {
      * @return true is player has specified permission
      */
     boolean hasPermission(String permission);
+
+    /**
+     * Mark field as changed, so it will be written on next save
+     * @param field - Changed field
+     * */
+    void markDirty(SkinField field);
+
+    /**
+     * @return true if some fields changed since the last save
+     * */
+    boolean hasDirtyFields();
+
+    /**
+     * Get fields changed since the last call and clear them
+     * @return Set of changed fields. Empty if nothing changed
+     * */
+    Set<SkinField> pollDirtyFields();
 }
@@ -19,36 +19,60 @@
 package ru.csm.api.services;
 
 import com.google.gson.*;
+import ru.csm.api.http.HttpGet;
+import ru.csm.api.http.HttpPost;
+import ru.csm.api.http.entity.HttpEntity;
+import ru.csm.api.http.entity.HttpResponse;
 import ru.csm.api.player.Skin;
 import ru.csm.api.logging.Logger;
+import ru.csm.api.storage.PremiumSkinCache;
+import ru.csm.api.storage.UuidCache;
 import ru.csm.api.utils.UuidUtil;
+import ru.csm.api.utils.Validator;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.Base64;
-import java.util.Scanner;
-import java.util.UUID;
+import java.util.*;
 
 public final class MojangAPI {
 
     private static final String UUID_URL = "https://api.mojang.com/users/profiles/minecraft/%s";
+    private static final String PROFILES_URL = "https://api.mojang.com/profiles/minecraft";
+    // Maximum amount of the names in one request to PROFILES_URL
+    public static final int MAX_BULK_NAMES = 10;
     private static final String SKIN_URL = "https://sessionserver.mojang.com/session/minecraft/profile/%s?unsigned=false";
 
     private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
     private static final JsonParser JSON_PARSER = new JsonParser();
 
+    private static volatile UuidCache uuidCache;
+    private static volatile PremiumSkinCache skinCache;
+    private static volatile long skinMaxAge;
+
     private MojangAPI(){}
 
+    /**
+     * Set cache of the UUIDs used by {@link #getUUID(String)}
+     * @param cache Cache or null to request Mojang every time
+     */
+    public static void setUuidCache(UuidCache cache){
+        uuidCache = cache;
+    }
+
+    /**
+     * Set cache of the premium skins used by {@link #getPremiumSkin(UUID)}
+     * @param cache Cache or null to request Mojang every time
+     * @param maxAge Default maximum age of the cached skin in milliseconds
+     */
+    public static void setSkinCache(PremiumSkinCache cache, long maxAge){
+        skinCache = cache;
+        skinMaxAge = maxAge;
+    }
+
     public static UUID getUUID(String name){
-        try(InputStream in = new URL(String.format(UUID_URL, name)).openStream()){
-            String jsonString = getLine(in);
+        UuidCache cache = uuidCache;
 
-            if(!jsonString.isEmpty()){
-                JsonObject object = JSON_PARSER.parse(jsonString).getAsJsonObject();
-                String uuid = object.get("id").getAsString();
-                return UuidUtil.getUUID(uuid);
-            }
+        try{
+            return cache != null ? cache.get(name, MojangAPI::requestUUID) : requestUUID(name);
         } catch (IOException e){
             Logger.warning("Cannot get uuid of player %s: %s", name, e.getMessage());
         }
@@ -56,30 +80,132 @@ public final class MojangAPI {
         return null;
     }
 
+    /**
+     * Get UUIDs of several names by one request to Mojang
+     * @param names Names of the players. No more than {@link #MAX_BULK_NAMES} names
+     * @return UUIDs of the premium accounts by lower case name. Names without premium account,
+     * invalid names or all names if request failed are not included
+     */
+    public static Map<String, UUID> getUUIDs(Collection<String> names){
+        List<String> valid = new ArrayList<>(names.size());
+
+        for (String name : names){
+            if (Validator.validateName(name)) valid.add(name);
+        }
+
+        if (valid.isEmpty()) return Collections.emptyMap();
+
+        UuidCache cache = uuidCache;
+
+        try{
+            return cache != null ? cache.getAll(valid, MojangAPI::requestUUIDs) : requestUUIDs(valid);
+        } catch (IOException e){
+            Logger.warning("Cannot get uuids of players %s: %s", valid, e.getMessage());
+        }
+
+        return Collections.emptyMap();
+    }
+
+    private static Map<String, UUID> requestUUIDs(List<String> names) throws IOException {
+        JsonArray request = new JsonArray();
+        for (String name : names) request.add(name);
+
+        HttpPost post = new HttpPost(PROFILES_URL);
+        post.addHeader("Content-Type", "application/json");
+        post.setEntity(new HttpEntity(request.toString()));
+
+        HttpResponse response = post.execute();
+
+        if (response.getCode() != 200){
+            throw new IOException("Response code: " + response.getCode());
+        }
+
+        Map<String, UUID> uuids = new HashMap<>();
+
+        try {
+            for (JsonElement element : JSON_PARSER.parse(response.getResponse()).getAsJsonArray()){
+                JsonObject profile = element.getAsJsonObject();
+                uuids.put(profile.get("name").getAsString().toLowerCase(), UuidUtil.getUUID(profile.get("id").getAsString()));
+            }
+        } catch (RuntimeException e){
+            throw new IOException("Invalid response: " + e.getMessage());
+        }
+
+        return uuids;
+    }
+
+    /**
+     * @return UUID of the premium account, or null if Mojang says there is no such account
+     * @throws IOException if request failed, so it's unknown whether account exists
+     */
+    private static UUID requestUUID(String name) throws IOException {
+        HttpResponse response = new HttpGet(String.format(UUID_URL, name)).execute();
+        String jsonString = response.getResponse();
+
+        if (response.getCode() == 204 || response.getCode() == 404) return null;
+
+        if (response.getCode() != 200){
+            throw new IOException("Response code: " + response.getCode());
+        }
+
+        try {
+            JsonObject object = JSON_PARSER.parse(jsonString).getAsJsonObject();
+            return object.has("id") ? UuidUtil.getUUID(object.get("id").getAsString()) : null;
+        } catch (JsonParseException | IllegalStateException e){
+            throw new IOException("Invalid response: " + e.getMessage());
+        }
+    }
+
     public static Skin getPremiumSkin(UUID uuid){
-        try(InputStream in = new URL(String.format(SKIN_URL, clearUUID(uuid))).openStream()){
-            String jsonString = getLine(in);
+        return getPremiumSkin(uuid, skinMaxAge, 0);
+    }
+
+    /**
+     * Get premium skin from cache or from Mojang
+     * @param maxAge Maximum age of the cached skin in milliseconds
+     * @param changedAfter Skin signed before this time is requested again. 0 to accept any skin
+     * @return Skin or null if account has no skin or request failed
+     */
+    public static Skin getPremiumSkin(UUID uuid, long maxAge, long changedAfter){
+        PremiumSkinCache cache = skinCache;
+
+        try{
+            return cache != null ? cache.get(uuid, maxAge, changedAfter, MojangAPI::requestPremiumSkin) : requestPremiumSkin(uuid);
+        } catch (IOException e){
+            Logger.warning("Cannot fetch premium skin of %s: %s", uuid, e.getMessage());
+        }
+
+        return null;
+    }
+
+    private static Skin requestPremiumSkin(UUID uuid) throws IOException {
+        HttpResponse response = new HttpGet(String.format(SKIN_URL, clearUUID(uuid))).execute();
 
-            if(!jsonString.isEmpty()){
-                JsonObject object = JSON_PARSER.parse(jsonString).getAsJsonObject();
+        if (response.getCode() == 204 || response.getCode() == 404) return null;
 
-                if(object.has("properties")){
-                    JsonArray propArr = object.get("properties").getAsJsonArray();
+        if (response.getCode() != 200){
+            throw new IOException("Response code: " + response.getCode());
+        }
+
+        try {
+            JsonObject object = JSON_PARSER.parse(response.getResponse()).getAsJsonObject();
+
+            if(object.has("properties")){
+                JsonArray propArr = object.get("properties").getAsJsonArray();
 
-                    if (propArr.size() > 0){
-                        JsonObject properties = object.get("properties").getAsJsonArray().get(0).getAsJsonObject();
-                        String value = properties.get("value").getAsString();
-                        String signature = properties.get("signature").getAsString();
-                        String skinUrl = getSkinURL(value);
+                if (propArr.size() > 0){
+                    JsonObject properties = propArr.get(0).getAsJsonObject();
+                    String value = properties.get("value").getAsString();
+                    String signature = properties.get("signature").getAsString();
+                    String skinUrl = getSkinURL(value);
 
-                        if(skinUrl != null){
-                            return Skin.of(value, signature);
-                        }
+                    if(skinUrl != null){
+                        return Skin.of(value, signature);
                     }
                 }
             }
-        } catch (Exception e){
-            Logger.warning("Cannot fetch premium skin of %s: %s", uuid, e.getMessage());
+        } catch (RuntimeException e){
+            throw new IOException("Invalid response: " + e.getMessage());
         }
 
         return null;
@@ -97,13 +223,6 @@ public final class MojangAPI {
         return null;
     }
 
-    private static String getLine(InputStream in){
-        Scanner scanner = new Scanner(in);
-        StringBuilder builder = new StringBuilder();
-        while(scanner.hasNext()) builder.append(scanner.next());
-        return builder.toString();
-    }
-
     private static String clearUUID(UUID uuid){
         return uuid.toString().replace("-", "");
     }
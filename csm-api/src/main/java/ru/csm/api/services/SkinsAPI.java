@@ -19,12 +19,18 @@
 package ru.csm.api.services;
 
 import napi.configurate.Language;
+import ru.csm.api.http.HttpClient;
 import ru.csm.api.player.*;
-import ru.csm.api.storage.Tables;
+import ru.csm.api.storage.AsyncDatabase;
 import ru.csm.api.storage.Database;
-import ru.csm.api.storage.Row;
+import ru.csm.api.storage.SaveBuffer;
+import ru.csm.api.storage.SkinRecord;
+import ru.csm.api.storage.SkinRecordCache;
+import ru.csm.api.storage.SkinRecordRepository;
+import ru.csm.api.storage.SwitchableSkinRecordRepository;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public interface SkinsAPI<Player> {
 
@@ -32,6 +38,22 @@ public interface SkinsAPI<Player> {
     
     Database getDatabase();
 
+    SkinRecordRepository getSkinRepository();
+
+    SaveBuffer getSaveBuffer();
+
+    AsyncDatabase getAsyncDatabase();
+
+    /**
+     * @return Cache of the stored records. Records changed outside of this server should be invalidated there
+     */
+    SkinRecordCache getRecordCache();
+
+    /**
+     * @return Repository under the cache which allows to change storage without restart
+     */
+    SwitchableSkinRecordRepository getSwitchableRepository();
+
     /**
      * Check is premium nickname exist in blacklist
      * @param nickname Required premium nickname
@@ -68,7 +90,12 @@ public interface SkinsAPI<Player> {
      */
     SkinPlayer getPlayer(String name);
 
-    Head getPlayerHead(String name);
+    /**
+     * Load head of the player from storage
+     * @param name - Name of the player. Case insensitive
+     * @return Future with head or with null if player not found
+     */
+    CompletableFuture<Head> getPlayerHead(String name);
 
     default void showPreview(Player player, Skin skin){
         showPreview(player, skin, true, null);
@@ -151,63 +178,83 @@ public interface SkinsAPI<Player> {
         return Optional.ofNullable(skin);
     }
 
+    /**
+     * Get premium skin of the player without blocking calling thread
+     * @see #getDefaultSkin(String)
+     */
+    default CompletableFuture<Optional<Skin>> getDefaultSkinAsync(String username){
+        return CompletableFuture.supplyAsync(() -> getDefaultSkin(username), HttpClient.getDefault().getExecutor());
+    }
+
+    /**
+     * Load stored record of the player. Unsaved record from save buffer is returned if exists
+     * @param uuid - UUID of the player
+     * @return Future with record or with null if player not stored yet
+     */
+    default CompletableFuture<SkinRecord> loadRecord(UUID uuid){
+        SkinRecord pending = getSaveBuffer().getPending(uuid);
+        if (pending != null) return CompletableFuture.completedFuture(pending);
+        return getAsyncDatabase().loadByUUID(uuid);
+    }
+
     default SkinPlayer loadPlayer(UUID uuid, String name){
-        Row row = getDatabase().getRow(Tables.SKINS, "uuid", uuid.toString());
-
-        if (row != null){
-            SkinPlayer player = buildPlayer(uuid, name);
-            Skin defaultSkin = Skin.of(row.getField("default_value").toString(),
-                    row.getField("default_signature").toString());
-            Skin customSkin = null;
-            boolean savePlayer = false;
-
-            if (isUpdateDefaultSkin()){
-                Optional<Skin> skinOpt = getDefaultSkin(player.getName());
-
-                if (skinOpt.isPresent() && !skinOpt.get().equals(defaultSkin)){
-                    defaultSkin = skinOpt.get();
-                    savePlayer = true;
-                }
-            }
+        SkinRecord record = loadRecord(uuid).join();
+        return record != null ? loadPlayer(record, uuid, name) : null;
+    }
 
-            if (row.hasField("custom_value") && row.hasField("custom_signature")){
-                customSkin = Skin.of(row.getField("custom_value").toString(),
-                        row.getField("custom_signature").toString());
-            }
+    /**
+     * Create player from the stored record. May request Mojang API, so should not be called in main thread
+     * @param record - Stored record of the player
+     * @param uuid - UUID of the player
+     * @param name - Current name of the player
+     */
+    default SkinPlayer loadPlayer(SkinRecord record, UUID uuid, String name){
+        SkinPlayer player = buildPlayer(uuid, name);
 
-            player.setDefaultSkin(defaultSkin);
-            player.setCustomSkin(customSkin);
+        player.setDefaultSkin(record.getDefaultSkin());
+        player.setCustomSkin(record.getCustomSkin());
+        player.pollDirtyFields(); // Loaded state is already stored
 
-            if (savePlayer) savePlayer(player);
+        if (!player.getName().equals(record.getName())){
+            player.markDirty(SkinField.NAME);
+        }
 
-            return player;
+        if (isUpdateDefaultSkin()){
+            Optional<Skin> skinOpt = getDefaultSkin(player.getName());
+
+            if (skinOpt.isPresent() && !skinOpt.get().equals(player.getDefaultSkin())){
+                player.setDefaultSkin(skinOpt.get());
+            }
         }
 
-        return null;
+        if (player.hasDirtyFields()) savePlayer(player);
+
+        return player;
+    }
+
+    /**
+     * Apply the record changed by another server to the online player.
+     * Record is already stored, so player is not saved again
+     * @param player - Online player
+     * @param record - Actual record of the player
+     */
+    default void updatePlayer(SkinPlayer player, SkinRecord record){
+        player.setDefaultSkin(record.getDefaultSkin());
+        player.setCustomSkin(record.getCustomSkin());
+        player.pollDirtyFields();
+        player.applySkin();
+        player.refreshSkin();
     }
 
     /**
-     * Save the player data into current storage (local or remote database)
+     * Save the player data into current storage (local or remote database).
+     * Data is written by save buffer on the next flush
      * @param player - Object of a player
      * */
     void savePlayer(SkinPlayer player);
 
     default void savePlayerBlocking(SkinPlayer player){
-        Row row = new Row();
-
-        row.addField("name", player.getName());
-        row.addField("default_value", player.getDefaultSkin().getValue());
-        row.addField("default_signature", player.getDefaultSkin().getSignature());
-        row.addField("custom_value", player.hasCustomSkin() ? player.getCustomSkin().getValue() : null);
-        row.addField("custom_signature", player.hasCustomSkin() ? player.getCustomSkin().getSignature() : null);
-
-        boolean exists = getDatabase().existsRow(Tables.SKINS, "uuid", player.getUUID().toString());
-
-        if (exists){
-            getDatabase().updateRow(Tables.SKINS, "uuid", player.getUUID().toString(), row);
-        } else {
-            row.addField("uuid", player.getUUID().toString());
-            getDatabase().createRow(Tables.SKINS, row);
-        }
+        getSaveBuffer().add(SkinRecord.of(player), player.pollDirtyFields());
+        getSaveBuffer().flush();
     }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of the skins storage.
+ * Reads are executed on own bounded executor, which has as many threads as connection pool has connections.
+ * Writes passed to {@link #write(Runnable)}, such as periodic flushes of the save buffer, are executed one by one
+ * on own thread, so they never occupy reading threads. Other writes are executed on the calling threads.
+ * Writers are not serialized here: on SQLite they wait for the single write connection of {@link SQLiteDatabase}
+ * If queue of the executor is full, returned future is completed exceptionally with {@link RejectedExecutionException}
+ */
+public class AsyncDatabase {
+
+    private final SkinRecordRepository repository;
+    private final SkinRecordCache cache;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor writer;
+
+    /**
+     * @param repository Repository to load and save records
+     * @param cache Cache used by repository. Cached records are returned without switching to database thread
+     * @param threads Amount of threads for reading
+     * @param queueSize Maximum amount of the waiting queries
+     */
+    public AsyncDatabase(SkinRecordRepository repository, SkinRecordCache cache, int threads, int queueSize){
+        this.repository = repository;
+        this.cache = cache;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DatabaseThreadFactory("CSM Database #"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.writer = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DatabaseThreadFactory("CSM Database Writer #"));
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    public SkinRecordRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return Amount of the queries waiting for free thread
+     */
+    public int getQueueSize(){
+        return executor.getQueue().size() + writer.getQueue().size();
+    }
+
+    public CompletableFuture<SkinRecord> loadByUUID(UUID uuid){
+        SkinRecord cached = cache.get(uuid);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return supply(() -> repository.loadByUUID(uuid));
+    }
+
+    public CompletableFuture<SkinRecord> loadByName(String name){
+        SkinRecord cached = cache.getByName(name);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return supply(() -> repository.loadByName(name));
+    }
+
+    public CompletableFuture<List<SkinRecord>> loadGalleryPage(int offset, int limit){
+        List<SkinRecord> cached = cache.getGalleryPage(offset, limit);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return supply(() -> repository.loadGalleryPage(offset, limit));
+    }
+
+    public CompletableFuture<Void> run(Runnable task){
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Execute task which modifies data on the writer thread
+     */
+    public CompletableFuture<Void> write(Runnable task){
+        return supply(writer, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task){
+        return supply(executor, task);
+    }
+
+    private static <T> CompletableFuture<T> supply(Executor executor, Supplier<T> task){
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e){
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Stop accepting new queries and wait until queued queries completed
+     */
+    public void shutdown(){
+        executor.shutdown();
+        writer.shutdown();
+
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class DatabaseThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+
+        DatabaseThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.SkinField;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Repository which reads records through memory cache and updates cache after successful writes
+ */
+public class CachedSkinRecordRepository implements SkinRecordRepository {
+
+    private final SkinRecordRepository repository;
+    private final SkinRecordCache cache;
+
+    public CachedSkinRecordRepository(SkinRecordRepository repository, SkinRecordCache cache){
+        this.repository = repository;
+        this.cache = cache;
+    }
+
+    public SkinRecordCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public SkinRecord loadByUUID(UUID uuid) {
+        SkinRecord record = cache.get(uuid);
+        if (record != null) return record;
+
+        long token = cache.startLoad();
+
+        try {
+            record = repository.loadByUUID(uuid);
+        } finally {
+            cache.putLoaded(record, token);
+        }
+
+        return record;
+    }
+
+    @Override
+    public SkinRecord loadByName(String name) {
+        SkinRecord record = cache.getByName(name);
+        if (record != null) return record;
+
+        long token = cache.startLoad();
+
+        try {
+            record = repository.loadByName(name);
+        } finally {
+            cache.putLoaded(record, token);
+        }
+
+        return record;
+    }
+
+    @Override
+    public void save(SkinRecord record) {
+        save(record, EnumSet.allOf(SkinField.class));
+    }
+
+    @Override
+    public void save(SkinRecord record, Set<SkinField> fields) {
+        // Single save doesn't report failure, so it goes through saveAll to keep failed record out of the cache
+        saveAll(Collections.singletonMap(record, fields));
+    }
+
+    @Override
+    public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+        boolean saved = repository.saveAll(records);
+
+        for (Map.Entry<SkinRecord, Set<SkinField>> entry : records.entrySet()){
+            // Saved record always contains current state of the player, so it can be cached as is
+            if (saved){
+                cache.put(entry.getKey());
+            } else {
+                cache.invalidate(entry.getKey().getUUID());
+            }
+
+            if (entry.getValue().contains(SkinField.CUSTOM_SKIN)) cache.invalidateGallery();
+        }
+
+        return saved;
+    }
+
+    @Override
+    public void resetCustomSkin(UUID uuid) {
+        repository.resetCustomSkin(uuid);
+        cache.invalidate(uuid);
+        cache.invalidateGallery();
+    }
+
+    @Override
+    public void updateLastSeen(Collection<UUID> uuids, long time) {
+        repository.updateLastSeen(uuids, time);
+        // Records of the joined players are used soon, so they are evicted last
+        cache.touch(uuids);
+    }
+
+    @Override
+    public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+        List<SkinRecord> page = cache.getGalleryPage(offset, limit);
+        if (page != null) return page;
+
+        long token = cache.startLoad();
+        page = Collections.emptyList();
+
+        try {
+            page = repository.loadGalleryPage(offset, limit);
+        } finally {
+            // Empty page is also returned on error, so it is not cached
+            cache.putLoadedGalleryPage(offset, limit, page.isEmpty() ? null : page, token);
+        }
+
+        return page;
+    }
+
+    @Override
+    public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) throws SQLException {
+        repository.forEachRecord(after, consumer);
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Log of the changed records shared by all servers which use the same database.
+ * Every write appends UUIDs of the changed records, and other servers read new entries by increasing id
+ */
+public class ChangeLog {
+
+    // Transactions may be committed not in order of their ids, so recent ids are read again
+    private static final int LOOKBACK = 100;
+    private static final int POLL_LIMIT = 1000;
+
+    private static final String INSERT = "INSERT INTO " + Tables.CHANGES + " (uuid,node,changed_at) VALUES (?,?,?)";
+    private static final String SELECT_LAST = "SELECT MAX(id) FROM " + Tables.CHANGES;
+    private static final String SELECT_NEW = "SELECT id,uuid,node FROM " + Tables.CHANGES
+            + " WHERE id>? ORDER BY id LIMIT " + POLL_LIMIT;
+    private static final String DELETE_OLD = "DELETE FROM " + Tables.CHANGES + " WHERE changed_at<?";
+
+    private final Database database;
+    private final String node = UUID.randomUUID().toString();
+    private final Set<Long> recent = new HashSet<>();
+
+    private long start = -1;
+    private long lastSeen;
+
+    public ChangeLog(Database database){
+        this.database = database;
+    }
+
+    /**
+     * Append changed records to the log. Should be called in the same transaction as the change
+     * @param connection Connection which is used to change records
+     * @param uuids UUIDs of the changed records
+     */
+    public void append(Connection connection, Collection<UUID> uuids) throws SQLException {
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)){
+            for (UUID uuid : uuids){
+                statement.setString(1, uuid.toString());
+                statement.setString(2, node);
+                statement.setLong(3, now);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Read records changed by other servers since previous call.
+     * First call only remembers current position of the log
+     * @return UUIDs of the changed records
+     */
+    public synchronized Set<UUID> poll() throws SQLException {
+        Set<UUID> changed = new LinkedHashSet<>();
+
+        try (Connection connection = database.getReadConnection()){
+            if (start < 0){
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_LAST);
+                     ResultSet result = statement.executeQuery()){
+                    start = result.next() ? result.getLong(1) : 0;
+                    lastSeen = start;
+                }
+                return changed;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_NEW)){
+                statement.setLong(1, Math.max(0, lastSeen - LOOKBACK));
+
+                try (ResultSet result = statement.executeQuery()){
+                    while (result.next()){
+                        long id = result.getLong(1);
+
+                        if (id > start && id > lastSeen - LOOKBACK && recent.add(id)){
+                            lastSeen = Math.max(lastSeen, id);
+                            if (!node.equals(result.getString(3))) changed.add(UUID.fromString(result.getString(2)));
+                        }
+                    }
+                }
+            }
+        }
+
+        recent.removeIf(id -> id <= lastSeen - LOOKBACK);
+        return changed;
+    }
+
+    /**
+     * Remove entries older than specified age
+     * @param maxAge Age in milliseconds
+     */
+    public void cleanup(long maxAge) throws SQLException {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DELETE_OLD)){
+            statement.setLong(1, System.currentTimeMillis() - maxAge);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of the JDBC connections used by all database types.
+ * Connections returned by pool must be closed by caller, closing returns physical connection back to the pool
+ */
+public class ConnectionPool {
+
+    private static final long HOUSEKEEPING_PERIOD = 5000;
+    private static final long VALIDATION_INTERVAL = 1000;
+
+    private final ConnectionFactory factory;
+    private final PoolSettings settings;
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private final Map<Connection, Borrow> active = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, PoolSettings settings){
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "CSM Connection Pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::houseKeep,
+                HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public PoolSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Get free connection from pool or open new one.
+     * Waits for free connection until connection timeout is reached
+     * @return Connection which must be closed after use
+     * @throws SQLException if pool is closed, timeout is reached or connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        long start = System.nanoTime();
+
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(settings.getConnectionTimeout(), TimeUnit.MILLISECONDS)){
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Cannot get database connection in "
+                        + settings.getConnectionTimeout() + " ms (" + getStats() + ")");
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        try {
+            Connection connection = takeConnection();
+            Connection proxy = wrap(connection);
+
+            long wait = System.nanoTime() - start;
+            borrowed.incrementAndGet();
+            totalWait.addAndGet(wait);
+            maxWait.accumulateAndGet(wait, Math::max);
+
+            return proxy;
+        } catch (SQLException | RuntimeException e){
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Current pool statistics
+     */
+    public PoolStats getStats(){
+        int idleCount;
+
+        synchronized (idle){
+            idleCount = idle.size();
+        }
+
+        long count = borrowed.get();
+        double avg = count > 0 ? totalWait.get() / (double) count / 1_000_000D : 0;
+
+        return new PoolStats(active.size(), idleCount, settings.getMaxSize(), waiting.get(),
+                count, timeouts.get(), avg, maxWait.get() / 1_000_000D);
+    }
+
+    /**
+     * Close all idle connections. Used connections will be closed when returned to pool
+     */
+    public void close(){
+        closed = true;
+        housekeeper.shutdownNow();
+
+        synchronized (idle){
+            for (IdleConnection connection : idle){
+                closeQuietly(connection.connection);
+            }
+            idle.clear();
+        }
+    }
+
+    private Connection takeConnection() throws SQLException {
+        while (true){
+            IdleConnection candidate;
+
+            synchronized (idle){
+                candidate = idle.pollFirst();
+            }
+
+            if (candidate == null) return factory.create();
+
+            long idleTime = System.currentTimeMillis() - candidate.lastUsed;
+
+            if (idleTime < VALIDATION_INTERVAL || isValid(candidate.connection)){
+                return candidate.connection;
+            }
+
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    private boolean isValid(Connection connection){
+        int timeout = (int) Math.max(1, settings.getConnectionTimeout() / 1000);
+
+        try {
+            String query = settings.getValidationQuery();
+
+            if (query == null || query.isEmpty()){
+                return connection.isValid(timeout);
+            }
+
+            try (Statement statement = connection.createStatement()){
+                statement.setQueryTimeout(timeout);
+                statement.execute(query);
+                return true;
+            }
+        } catch (SQLException e){
+            return false;
+        }
+    }
+
+    private Connection wrap(Connection connection){
+        Borrow borrow = new Borrow(connection);
+
+        Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (p, method, args) -> {
+                    switch (method.getName()){
+                        case "close":
+                            release((Connection) p, borrow);
+                            return null;
+                        case "isClosed":
+                            if (borrow.released) return true;
+                            break;
+                        case "equals":
+                            return p == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(p);
+                        case "toString":
+                            return "Pooled" + connection;
+                    }
+
+                    if (borrow.released) throw new SQLException("Connection is closed");
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e){
+                        Throwable cause = e.getCause();
+
+                        if (cause instanceof SQLException){
+                            String state = ((SQLException) cause).getSQLState();
+                            // SQL state class 08 means connection exception
+                            if (state != null && state.startsWith("08")) borrow.broken = true;
+                        }
+
+                        throw cause;
+                    }
+                });
+
+        active.put(proxy, borrow);
+        return proxy;
+    }
+
+    private void release(Connection proxy, Borrow borrow){
+        synchronized (borrow){
+            if (borrow.released) return;
+            borrow.released = true;
+        }
+
+        active.remove(proxy);
+
+        try {
+            Connection connection = borrow.connection;
+
+            if (closed || borrow.broken || connection.isClosed()){
+                closeQuietly(connection);
+                return;
+            }
+
+            try {
+                if (!connection.getAutoCommit()){
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e){
+                closeQuietly(connection);
+                return;
+            }
+
+            synchronized (idle){
+                idle.addFirst(new IdleConnection(connection));
+            }
+        } catch (SQLException e){
+            closeQuietly(borrow.connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void houseKeep(){
+        long now = System.currentTimeMillis();
+        long leakThreshold = settings.getLeakDetectionThreshold();
+
+        if (leakThreshold > 0){
+            for (Borrow borrow : active.values()){
+                if (!borrow.reported && now - borrow.borrowedAt > leakThreshold){
+                    borrow.reported = true;
+                    Logger.warning("Database connection is used for %s ms, possible connection leak", now - borrow.borrowedAt);
+                    borrow.trace.printStackTrace();
+                }
+            }
+        }
+
+        if (settings.getIdleTimeout() > 0){
+            synchronized (idle){
+                Iterator<IdleConnection> iterator = idle.iterator();
+
+                while (iterator.hasNext()){
+                    IdleConnection connection = iterator.next();
+
+                    if (now - connection.lastUsed > settings.getIdleTimeout()){
+                        iterator.remove();
+                        closeQuietly(connection.connection);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection){
+        try {
+            connection.close();
+        } catch (SQLException e){
+            // Connection is already broken
+        }
+    }
+
+    /**
+     * Opens new physical connections to the database
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+
+        Connection create() throws SQLException;
+
+    }
+
+    private static class IdleConnection {
+
+        private final Connection connection;
+        private final long lastUsed = System.currentTimeMillis();
+
+        IdleConnection(Connection connection){
+            this.connection = connection;
+        }
+    }
+
+    private class Borrow {
+
+        private final Connection connection;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable trace;
+
+        private volatile boolean released;
+        private volatile boolean broken;
+        private volatile boolean reported;
+
+        Borrow(Connection connection){
+            this.connection = connection;
+            this.trace = settings.getLeakDetectionThreshold() > 0
+                    ? new Throwable("Connection was borrowed here") : null;
+        }
+    }
+}
@@ -20,24 +20,60 @@ package ru.csm.api.storage;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.function.Consumer;
 
 public interface Database {
 
     Connection getConnection() throws SQLException;
 
+    /**
+     * Get connection for queries which do not modify data.
+     * Database may return read-only connection from separate pool
+     */
+    default Connection getReadConnection() throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * @return Time in milliseconds after write, while read connection may return old data.
+     * Reads of the just written data use {@link #getConnection()} during this time. 0 if reads are never stale
+     */
+    default long getReplicaLag(){
+        return 0;
+    }
+
+    /**
+     * @return true if {@link #getReadConnection()} returns connection to read replica, which may have old data
+     */
+    default boolean hasReplica(){
+        return false;
+    }
+
+    DatabaseType getType();
+
+    /**
+     * @return Maximum amount of the connections, which can be used at the same time
+     */
+    int getMaxConnections();
+
+    /**
+     * @return Statistics of the connection pool
+     */
+    PoolStats getPoolStats();
+
     void closeConnection();
 
     Row getRow(String table, String key, Object value);
 
     Row getRow(String table, String key1, Object value1, String key2, Object value2);
 
-    Row[] getAllRows(String table);
-
-    Row[] getRows(String table, String key, Object value);
-
-    Row[] getRows(String table, String key1, Object value1, String key2, Object value2);
-
-    Row[] getRowsWithRequest(String request);
+    /**
+     * Execute query and pass result rows to consumer one by one, without loading whole result into memory.
+     * Connection is held until all rows are consumed
+     * @param request SQL query
+     * @param consumer Consumer of the rows
+     */
+    void forEachRow(String request, Consumer<Row> consumer);
 
     void createRow(String table, Row row);
 
@@ -0,0 +1,46 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+public enum DatabaseType {
+
+    H2("h2"),
+    SQLITE("sqlite"),
+    MYSQL("mysql");
+
+    private final String name;
+
+    DatabaseType(String name){
+        this.name = name;
+    }
+
+    /**
+     * @return Name of the type, used in config and as resources folder name
+     */
+    public String getName(){
+        return name;
+    }
+
+    public static DatabaseType fromName(String name){
+        for (DatabaseType type : values()){
+            if (type.name.equalsIgnoreCase(name)) return type;
+        }
+        return null;
+    }
+}
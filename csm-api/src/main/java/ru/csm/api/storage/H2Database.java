@@ -18,19 +18,22 @@
 
 package ru.csm.api.storage;
 
-import org.h2.jdbcx.JdbcConnectionPool;
-
 import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class H2Database implements Database {
 
-    private final JdbcConnectionPool pool;
+    private static final int FETCH_SIZE = 1000;
+
+    private final ConnectionPool pool;
 
-    public H2Database(Path path, String user, String password) throws SQLException {
-        pool = JdbcConnectionPool.create("jdbc:h2:file:" + path.toString(), user, password);
+    public H2Database(Path path, String user, String password, PoolSettings settings) throws SQLException {
+        String url = "jdbc:h2:file:" + path.toString();
+        pool = new ConnectionPool(() -> DriverManager.getConnection(url, user, password), settings);
         pool.getConnection().close(); // Just check connection
     }
 
@@ -39,9 +42,24 @@ public class H2Database implements Database {
         return pool.getConnection();
     }
 
+    @Override
+    public DatabaseType getType() {
+        return DatabaseType.H2;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return pool.getSettings().getMaxSize();
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
     @Override
     public void closeConnection(){
-        pool.dispose();
+        pool.close();
     }
 
     @Override
@@ -98,149 +116,55 @@ public class H2Database implements Database {
     }
 
     @Override
-    public Row[] getRows(String table, String key, Object value) {
-        List<Row> rows;
-
+    public void forEachRow(String request, Consumer<Row> consumer) {
         try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key+"=?")){
-            statement.setObject(1, value);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            rows = new ArrayList<>();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j).toLowerCase(), result.getObject(j));
+            PreparedStatement statement = connection.prepareStatement(request,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            statement.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet result = statement.executeQuery()){
+                ResultSetMetaData data = result.getMetaData();
+
+                while(result.next()) {
+                    Row row = new Row();
+                    for(int i = 1; i <= data.getColumnCount(); i++) {
+                        row.addField(data.getColumnName(i).toLowerCase(), result.getObject(i));
+                    }
+                    consumer.accept(row);
                 }
-
-                rows.add(row);
             }
-
-            return rows.toArray(new Row[rows.size()]);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getRows(String table, String key1, Object value1, String key2, Object value2) {
-        Row[] rows;
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key1+"=? AND "+key2+"=?")){
-            statement.setObject(1, value1);
-            statement.setObject(2, value2);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            rows = new Row[result.getFetchSize()];
-
-            int i = 0;
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j).toLowerCase(), result.getObject(j));
-                }
-
-                rows[i] = row;
-                i++;
-            }
-
-            return rows;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getAllRows(String table) {
-        List<Row> list = new ArrayList<>();
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table)){
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i).toLowerCase(), result.getObject(i));
-                }
-
-                list.add(row);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
-    }
-
-    @Override
-    public Row[] getRowsWithRequest(String request) {
-        List<Row> list = new ArrayList<>();
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement(request)){
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i).toLowerCase(), result.getObject(i));
-                }
-                list.add(row);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
     }
 
     @Override
     public void createRow(String table, Row row) {
-        String cols = new String();
-        String vals = new String();
-
-        String[] keys = row.getAllFields().keySet().toArray(new String[row.getAllFields().keySet().size()]);
-        Object[] values = row.getAllFields().values().toArray(new Object[row.getAllFields().values().size()]);
+        StringBuilder cols = new StringBuilder();
+        StringBuilder vals = new StringBuilder();
+        List<Object> values = new ArrayList<>();
 
+        for (Map.Entry<String, Object> entry : row.getAllFields().entrySet()){
+            if (entry.getValue() == null) continue;
 
-        for(int i = 0; i < keys.length; i++){
-            if(values[i] == null){
-                continue;
+            if (values.size() > 0){
+                cols.append(',');
+                vals.append(',');
             }
-            cols += (keys[i] + ",");
-        }
 
-        for(int i = 0; i < values.length; i++){
-            if(values[i] == null){
-                continue;
-            }
-            vals += ("'" + values[i].toString() + "',");
+            cols.append(entry.getKey());
+            vals.append('?');
+            values.add(entry.getValue());
         }
 
-        cols = cols.substring(0, cols.length()-1);
-        vals = vals.substring(0, vals.length()-1);
-
         String request = "INSERT INTO " + table + "(" + cols + ") VALUES (" + vals + ");";
         try (Connection connection = getConnection();
             PreparedStatement statement = connection.prepareStatement(request)){
 
+            for (int i = 0; i < values.size(); i++){
+                statement.setObject(i+1, values.get(i));
+            }
+
             statement.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
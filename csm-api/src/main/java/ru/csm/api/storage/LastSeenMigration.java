@@ -0,0 +1,57 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Add time of the last join to the skins table.
+ * Existing players get current time, so they are not removed by retention right after update
+ */
+public class LastSeenMigration implements Migration {
+
+    private final int version;
+
+    public LastSeenMigration(int version){
+        this.version = version;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return "last_seen";
+    }
+
+    @Override
+    public void apply(Connection connection, DatabaseType type) throws SQLException {
+        SqlMigration.executeScript(connection, type, version + "_last_seen");
+
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE " + Tables.SKINS
+                + " SET last_seen=? WHERE last_seen IS NULL")){
+            statement.setLong(1, System.currentTimeMillis());
+            statement.executeUpdate();
+        }
+    }
+}
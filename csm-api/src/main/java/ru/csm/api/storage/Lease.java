@@ -0,0 +1,98 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Named lease stored in database, which is held by at most one server at the same time.
+ * Holder renews the lease by heartbeat, and if it stops, any other server can take the lease after expiry
+ */
+public class Lease {
+
+    private static final String RENEW = "UPDATE " + Tables.LEASES + " SET node=?, expires_at=? WHERE name=? AND (node=? OR expires_at<?)";
+    private static final String EXISTS = "SELECT node FROM " + Tables.LEASES + " WHERE name=?";
+    private static final String INSERT = "INSERT INTO " + Tables.LEASES + " (name,node,expires_at) VALUES (?,?,?)";
+
+    private final Database database;
+    private final String name;
+    private final String node;
+    private final long duration;
+
+    public Lease(Database database, String name, String node, long duration){
+        this.database = database;
+        this.name = name;
+        this.node = node;
+        this.duration = duration;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Take the lease if it's free or expired, or renew it if it's already held by this server.
+     * Should be called more often than lease duration
+     * @return true if this server holds the lease
+     */
+    public boolean acquire() throws SQLException {
+        try (Connection connection = database.getConnection()){
+            return acquire(connection);
+        }
+    }
+
+    /**
+     * Take or renew the lease using already opened connection
+     * @see #acquire()
+     */
+    public boolean acquire(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement statement = connection.prepareStatement(RENEW)){
+            statement.setString(1, node);
+            statement.setLong(2, now + duration);
+            statement.setString(3, name);
+            statement.setString(4, node);
+            statement.setLong(5, now);
+
+            if (statement.executeUpdate() > 0) return true;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(EXISTS)){
+            statement.setString(1, name);
+
+            try (ResultSet result = statement.executeQuery()){
+                if (result.next()) return false;
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)){
+            statement.setString(1, name);
+            statement.setString(2, node);
+            statement.setLong(3, now + duration);
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException e){
+            return false; // Another server created the lease at the same time
+        }
+    }
+}
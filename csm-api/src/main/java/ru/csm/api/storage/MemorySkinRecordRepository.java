@@ -0,0 +1,538 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+import ru.csm.api.player.SkinField;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Storage which keeps all records in memory. Textures are interned, so every texture is stored once
+ * even if many players use it. Every change is appended to the journal file, and the journal is
+ * compacted into snapshot file when it becomes larger than the snapshot. Every written batch is synced to disk,
+ * and every entry has checksum, so the journal is replayed until the first damaged entry.
+ * On start records are loaded from the snapshot, and the journal is replayed over them
+ */
+public class MemorySkinRecordRepository implements SkinRecordRepository {
+
+    private static final int SNAPSHOT_MAGIC = 0x43534D53; // CSMS
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int JOURNAL_MAGIC = 0x43534D4A; // CSMJ
+    private static final int JOURNAL_VERSION = 1;
+    private static final int JOURNAL_HEADER_SIZE = 8;
+    private static final int ENTRY_HEADER_SIZE = 8; // Payload length and checksum
+    private static final int MIN_ENTRY_SIZE = 16 + 5 * 4; // UUID and lengths of 5 strings
+    private static final int MIN_COMPACT_ENTRIES = 10000;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, SkinRecord> records = new HashMap<>();
+    private final Map<String, UUID> names = new HashMap<>();
+    private Map<String, String> textures = new HashMap<>();
+    private volatile List<SkinRecord> gallery;
+
+    private FileChannel journal;
+    private int journalEntries;
+
+    /**
+     * Load records from the files in the specified folder
+     * @param folder Folder of the snapshot and journal files. Created if not exists
+     */
+    public MemorySkinRecordRepository(Path folder) throws IOException {
+        this.snapshotFile = folder.resolve("skins.snapshot");
+        this.journalFile = folder.resolve("skins.journal");
+
+        Files.createDirectories(folder);
+
+        long start = System.currentTimeMillis();
+
+        readSnapshot();
+        replayJournal();
+        openJournal(false);
+
+        Logger.info("Loaded %d skin records into memory in %d ms", records.size(), System.currentTimeMillis() - start);
+    }
+
+    public int size(){
+        lock.readLock().lock();
+
+        try {
+            return records.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SkinRecord loadByUUID(UUID uuid) {
+        lock.readLock().lock();
+
+        try {
+            return records.get(uuid);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SkinRecord loadByName(String name) {
+        lock.readLock().lock();
+
+        try {
+            UUID uuid = names.get(name.toLowerCase(Locale.ROOT));
+            return uuid != null ? records.get(uuid) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(SkinRecord record) {
+        save(record, EnumSet.allOf(SkinField.class));
+    }
+
+    @Override
+    public void save(SkinRecord record, Set<SkinField> fields) {
+        saveAll(Collections.singletonMap(record, fields));
+    }
+
+    @Override
+    public boolean saveAll(Map<SkinRecord, Set<SkinField>> changes) {
+        lock.writeLock().lock();
+
+        try {
+            List<SkinRecord> merged = new ArrayList<>(changes.size());
+
+            for (Map.Entry<SkinRecord, Set<SkinField>> entry : changes.entrySet()){
+                if (entry.getValue().isEmpty()) continue;
+                merged.add(merge(records.get(entry.getKey().getUUID()), entry.getKey(), entry.getValue()));
+            }
+
+            if (!write(merged)) return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public void resetCustomSkin(UUID uuid) {
+        lock.writeLock().lock();
+
+        try {
+            SkinRecord record = records.get(uuid);
+            if (record == null || !record.hasCustomSkin()) return;
+
+            write(Collections.singletonList(new SkinRecord(uuid, record.getName(),
+                    record.getDefaultValue(), record.getDefaultSignature(), null, null)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    @Override
+    public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+        lock.readLock().lock();
+
+        try {
+            List<SkinRecord> list = gallery;
+
+            if (list == null){
+                list = new ArrayList<>();
+
+                for (SkinRecord record : records.values()){
+                    if (record.hasCustomSkin()) list.add(record);
+                }
+
+                gallery = list;
+            }
+
+            if (offset >= list.size()) return Collections.emptyList();
+            return new ArrayList<>(list.subList(offset, Math.min(list.size(), offset + limit)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) {
+        List<SkinRecord> sorted;
+
+        lock.readLock().lock();
+
+        try {
+            sorted = new ArrayList<>(records.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Same order as in SQL storages, where UUID is compared as string
+        sorted.sort(Comparator.comparing(record -> record.getUUID().toString()));
+        String start = after != null ? after.toString() : "";
+
+        for (SkinRecord record : sorted){
+            if (record.getUUID().toString().compareTo(start) > 0) consumer.accept(record);
+        }
+    }
+
+    /**
+     * Write snapshot of all records and clear the journal
+     */
+    public synchronized void compact() throws IOException {
+        lock.readLock().lock();
+
+        try {
+            // Writers are blocked by read lock, so the snapshot matches the journal
+            writeSnapshot();
+            journal.close();
+            openJournal(true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            compact();
+            journal.close();
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    private void compactIfNeeded(){
+        if (journalEntries < Math.max(MIN_COMPACT_ENTRIES, records.size())) return;
+
+        try {
+            compact();
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    private boolean write(List<SkinRecord> changed){
+        long start = -1;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(2048 * changed.size());
+            DataOutputStream batch = new DataOutputStream(bytes);
+
+            for (SkinRecord record : changed){
+                byte[] payload = encode(record);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+
+                batch.writeInt(payload.length);
+                batch.writeInt((int) crc.getValue());
+                batch.write(payload);
+            }
+
+            start = journal.position();
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+
+            while (data.hasRemaining()){
+                journal.write(data);
+            }
+
+            journal.force(false);
+        } catch (IOException e){
+            e.printStackTrace();
+            if (start >= 0) truncateJournal(start);
+            return false;
+        }
+
+        for (SkinRecord record : changed){
+            put(record);
+        }
+
+        journalEntries += changed.size();
+        return true;
+    }
+
+    /**
+     * Remove partly written batch, so next entries are not appended after damaged one
+     */
+    private void truncateJournal(long size){
+        try {
+            journal.truncate(size);
+            journal.position(size);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    private void put(SkinRecord record){
+        SkinRecord interned = new SkinRecord(record.getUUID(), record.getName(),
+                intern(record.getDefaultValue()), intern(record.getDefaultSignature()),
+                intern(record.getCustomValue()), intern(record.getCustomSignature()));
+        SkinRecord old = records.put(interned.getUUID(), interned);
+
+        if (old != null && old.getName() != null){
+            names.remove(old.getName().toLowerCase(Locale.ROOT));
+        }
+
+        if (interned.getName() != null){
+            names.put(interned.getName().toLowerCase(Locale.ROOT), interned.getUUID());
+        }
+
+        if (interned.hasCustomSkin() || (old != null && old.hasCustomSkin())){
+            gallery = null;
+        }
+    }
+
+    private String intern(String value){
+        if (value == null) return null;
+        String interned = textures.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+
+    private static SkinRecord merge(SkinRecord stored, SkinRecord record, Set<SkinField> fields){
+        if (stored == null || fields.containsAll(EnumSet.allOf(SkinField.class))) return record;
+
+        boolean name = fields.contains(SkinField.NAME);
+        boolean def = fields.contains(SkinField.DEFAULT_SKIN);
+        boolean custom = fields.contains(SkinField.CUSTOM_SKIN);
+
+        return new SkinRecord(record.getUUID(),
+                name ? record.getName() : stored.getName(),
+                def ? record.getDefaultValue() : stored.getDefaultValue(),
+                def ? record.getDefaultSignature() : stored.getDefaultSignature(),
+                custom ? record.getCustomValue() : stored.getCustomValue(),
+                custom ? record.getCustomSignature() : stored.getCustomSignature());
+    }
+
+    private void readSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))){
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION){
+                throw new IOException("Unsupported snapshot file " + snapshotFile);
+            }
+
+            String[] table = new String[in.readInt()];
+
+            for (int i = 0; i < table.length; i++){
+                table[i] = readString(in);
+                textures.put(table[i], table[i]);
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++){
+                UUID uuid = readUUID(in);
+                String name = readString(in);
+                put(new SkinRecord(uuid, name, texture(table, in.readInt()), texture(table, in.readInt()),
+                        texture(table, in.readInt()), texture(table, in.readInt())));
+            }
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> table = new ArrayList<>();
+
+        for (SkinRecord record : records.values()){
+            index(indexes, table, record.getDefaultValue());
+            index(indexes, table, record.getDefaultSignature());
+            index(indexes, table, record.getCustomValue());
+            index(indexes, table, record.getCustomSignature());
+        }
+
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))){
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(table.size());
+
+            for (String texture : table){
+                writeString(out, texture);
+            }
+
+            out.writeInt(records.size());
+
+            for (SkinRecord record : records.values()){
+                writeUUID(out, record.getUUID());
+                writeString(out, record.getName());
+                out.writeInt(indexes.getOrDefault(record.getDefaultValue(), -1));
+                out.writeInt(indexes.getOrDefault(record.getDefaultSignature(), -1));
+                out.writeInt(indexes.getOrDefault(record.getCustomValue(), -1));
+                out.writeInt(indexes.getOrDefault(record.getCustomSignature(), -1));
+            }
+
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Textures of removed and changed records are not referenced anymore
+        Map<String, String> pool = new HashMap<>(table.size() * 2);
+        for (String texture : table) pool.put(texture, texture);
+        textures = pool;
+    }
+
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalFile)) return;
+
+        long size = Files.size(journalFile);
+        long valid = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))){
+            if (size >= JOURNAL_HEADER_SIZE){
+                if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION){
+                    throw new IOException("Unsupported journal file " + journalFile);
+                }
+
+                valid = JOURNAL_HEADER_SIZE;
+            }
+
+            while (valid > 0 && valid + ENTRY_HEADER_SIZE <= size){
+                int length = in.readInt();
+                int checksum = in.readInt();
+
+                // Damaged length is checked before the entry is read, so it cannot allocate huge array
+                if (length < MIN_ENTRY_SIZE || length > size - valid - ENTRY_HEADER_SIZE) break;
+
+                byte[] data = new byte[length];
+                in.readFully(data);
+
+                CRC32 crc = new CRC32();
+                crc.update(data);
+
+                if ((int) crc.getValue() != checksum) break;
+
+                put(decode(data));
+
+                valid += ENTRY_HEADER_SIZE + length;
+                journalEntries++;
+            }
+        }
+
+        if (valid < size){
+            // Last entries were not written completely before server stopped
+            Logger.warning("Skins journal has damaged entries at the end. They were removed");
+
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)){
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private void openJournal(boolean truncate) throws IOException {
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        if (truncate){
+            journal.truncate(0);
+            journalEntries = 0;
+        }
+
+        if (journal.size() == 0){
+            ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+            header.putInt(JOURNAL_MAGIC).putInt(JOURNAL_VERSION).flip();
+
+            while (header.hasRemaining()){
+                journal.write(header);
+            }
+
+            journal.force(false);
+        }
+
+        journal.position(journal.size());
+    }
+
+    private static byte[] encode(SkinRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2048);
+        DataOutputStream entry = new DataOutputStream(bytes);
+        writeUUID(entry, record.getUUID());
+        writeString(entry, record.getName());
+        writeString(entry, record.getDefaultValue());
+        writeString(entry, record.getDefaultSignature());
+        writeString(entry, record.getCustomValue());
+        writeString(entry, record.getCustomSignature());
+        return bytes.toByteArray();
+    }
+
+    private static SkinRecord decode(byte[] data) throws IOException {
+        DataInputStream entry = new DataInputStream(new ByteArrayInputStream(data));
+        return new SkinRecord(readUUID(entry), readString(entry), readString(entry),
+                readString(entry), readString(entry), readString(entry));
+    }
+
+    private static void index(Map<String, Integer> indexes, List<String> table, String texture){
+        if (texture != null && !indexes.containsKey(texture)){
+            indexes.put(texture, table.size());
+            table.add(texture);
+        }
+    }
+
+    private static String texture(String[] table, int index){
+        return index >= 0 ? table[index] : null;
+    }
+
+    private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null){
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
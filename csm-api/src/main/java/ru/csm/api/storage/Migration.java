@@ -0,0 +1,47 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Single versioned change of the database schema
+ */
+public interface Migration {
+
+    /**
+     * @return Version of the schema after this migration. Migrations are applied in ascending order
+     */
+    int getVersion();
+
+    /**
+     * @return Short description, which is saved into schema version table
+     */
+    String getDescription();
+
+    /**
+     * Apply migration. Connection is in transaction if database supports transactional DDL
+     * @param connection Connection to the database
+     * @param type Type of the database
+     * @throws SQLException if migration cannot be applied
+     */
+    void apply(Connection connection, DatabaseType type) throws SQLException;
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Applies missing schema migrations. Applied versions are stored in the schema version table,
+ * so every migration is applied only once
+ */
+public class MigrationRunner {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + Tables.SCHEMA_VERSION
+            + "(version INT PRIMARY KEY, description VARCHAR(255) NOT NULL, applied_at BIGINT NOT NULL)";
+    private static final String SELECT_VERSIONS = "SELECT version FROM " + Tables.SCHEMA_VERSION;
+    private static final String INSERT_VERSION = "INSERT INTO " + Tables.SCHEMA_VERSION
+            + " (version,description,applied_at) VALUES (?,?,?)";
+    // Servers with the shared MySQL database may start at the same time, and MySQL commits DDL implicitly,
+    // so migrations are applied under named lock. H2 and SQLite files are used by one server
+    private static final String LOCK = "SELECT GET_LOCK(?,?)";
+    private static final String UNLOCK = "SELECT RELEASE_LOCK(?)";
+    private static final String LOCK_NAME = "csm_schema_migration";
+    private static final int LOCK_TIMEOUT = 60; // seconds
+
+    private final Database database;
+    private final List<Migration> migrations;
+
+    public MigrationRunner(Database database, List<Migration> migrations){
+        this.database = database;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    /**
+     * Apply all migrations which are not applied yet
+     * @throws SQLException if some migration failed. Next migrations are not applied in this case
+     */
+    public void migrate() throws SQLException {
+        try (Connection connection = database.getConnection()){
+            lock(connection);
+
+            try {
+                try (Statement statement = connection.createStatement()){
+                    statement.execute(CREATE_TABLE);
+                }
+
+                // Versions are read under the lock, so migrations applied by other server are skipped
+                Set<Integer> applied = getAppliedVersions(connection);
+
+                for (Migration migration : migrations){
+                    if (!applied.contains(migration.getVersion())){
+                        apply(connection, migration);
+                    }
+                }
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        if (database.getType() != DatabaseType.MYSQL) return;
+
+        try (PreparedStatement statement = connection.prepareStatement(LOCK)){
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_TIMEOUT);
+
+            try (ResultSet result = statement.executeQuery()){
+                if (!result.next() || result.getInt(1) != 1){
+                    throw new SQLException("Timed out waiting for database migrations of other server");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        if (database.getType() != DatabaseType.MYSQL) return;
+
+        // Lock belongs to the session, which stays open in the pool after the connection is closed
+        try (PreparedStatement statement = connection.prepareStatement(UNLOCK)){
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        Logger.info("Applying database migration %s (%s)", migration.getVersion(), migration.getDescription());
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try {
+            migration.apply(connection, database.getType());
+
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_VERSION)){
+                statement.setInt(1, migration.getVersion());
+                statement.setString(2, migration.getDescription());
+                statement.setLong(3, System.currentTimeMillis());
+                statement.executeUpdate();
+            }
+
+            connection.commit();
+        } catch (SQLException e){
+            connection.rollback();
+            throw new SQLException("Cannot apply migration " + migration.getVersion() + ": " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(SELECT_VERSIONS)){
+            while (result.next()){
+                versions.add(result.getInt(1));
+            }
+        }
+
+        return versions;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * All migrations of the plugin schema. New migrations must be added to the end of list with the next version
+ */
+public final class Migrations {
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new SqlMigration(1, "create_skins"),
+            new UniqueUuidMigration(2),
+            new SqlMigration(3, "name_index"),
+            // MySQL and H2 have no partial indexes, so their index of custom skins is created
+            // on the short texture id column by migration 6 instead of the full texture value
+            new SqlMigration(4, "custom_skin_index", EnumSet.of(DatabaseType.SQLITE)),
+            new SqlMigration(5, "name_lower"),
+            new TexturesMigration(6),
+            new SqlMigration(7, "changes"),
+            new SqlMigration(8, "lookups"),
+            new SqlMigration(9, "packed_textures"),
+            new LastSeenMigration(10),
+            new SqlMigration(11, "uuids"),
+            new SqlMigration(12, "premium_skins"),
+            new SqlMigration(13, "lookups_pending_name")
+    ));
+
+    private Migrations(){}
+
+    public static List<Migration> list(){
+        return MIGRATIONS;
+    }
+}
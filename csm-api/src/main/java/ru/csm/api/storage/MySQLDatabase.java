@@ -18,49 +18,117 @@
 
 package ru.csm.api.storage;
 
-import org.apache.commons.dbcp2.BasicDataSource;
-
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
 
 public class MySQLDatabase implements Database {
 
-    private final BasicDataSource dataSource;
-
-    public MySQLDatabase(String url, int port, String database, String user, String password) throws SQLException {
-        dataSource = new BasicDataSource();
-        dataSource.setUrl("jdbc:mysql://" + url + ":" + port + "/" + database);
-        dataSource.setUsername(user);
-        dataSource.setPassword(password);
-        dataSource.setMinIdle(5);
-        dataSource.setMaxIdle(10);
-        dataSource.setMaxOpenPreparedStatements(100);
-        dataSource.addConnectionProperty("autoReconnect", "true");
-        dataSource.addConnectionProperty("useSSL", "false");
-        dataSource.addConnectionProperty("characterEncoding", "UTF-8");
-        dataSource.addConnectionProperty("serverTimezone", "UTC");
-
-        if(dataSource.getConnection() == null) throw new SQLException();
+    private static final int FETCH_SIZE = 1000;
+
+    private final ConnectionPool pool;
+    private final ConnectionPool replicaPool;
+    private final long replicaLag;
+
+    public MySQLDatabase(String url, int port, String database, String user, String password, PoolSettings settings) throws SQLException {
+        this(url, port, database, user, password, settings, null, 0, 0);
+    }
+
+    /**
+     * @param replicaUrl Host of the read replica, or null if all queries use primary database
+     * @param replicaPort Port of the read replica
+     * @param replicaLag Maximum delay of the replication in milliseconds
+     */
+    public MySQLDatabase(String url, int port, String database, String user, String password, PoolSettings settings,
+                         String replicaUrl, int replicaPort, long replicaLag) throws SQLException {
+        Properties props = getProperties(user, password);
+        String jdbcUrl = "jdbc:mysql://" + url + ":" + port + "/" + database;
+
+        pool = new ConnectionPool(() -> DriverManager.getConnection(jdbcUrl, props), settings);
+        pool.getConnection().close(); // Just check connection
+
+        if (replicaUrl != null && !replicaUrl.isEmpty()){
+            String replicaJdbcUrl = "jdbc:mysql://" + replicaUrl + ":" + replicaPort + "/" + database;
+
+            replicaPool = new ConnectionPool(() -> {
+                Connection connection = DriverManager.getConnection(replicaJdbcUrl, props);
+                connection.setReadOnly(true);
+                return connection;
+            }, settings);
+            replicaPool.getConnection().close();
+            this.replicaLag = replicaLag;
+        } else {
+            replicaPool = null;
+            this.replicaLag = 0;
+        }
+    }
+
+    private static Properties getProperties(String user, String password){
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        props.setProperty("autoReconnect", "true");
+        props.setProperty("useSSL", "false");
+        props.setProperty("characterEncoding", "UTF-8");
+        props.setProperty("serverTimezone", "UTC");
+        props.setProperty("cachePrepStmts", "true");
+        props.setProperty("prepStmtCacheSize", "250");
+        props.setProperty("prepStmtCacheSqlLimit", "2048");
+        props.setProperty("useServerPrepStmts", "true");
+        props.setProperty("useCursorFetch", "true");
+        props.setProperty("rewriteBatchedStatements", "true");
+        return props;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
     }
 
     @Override
-    public Connection getConnection() {
-        try{
-            return dataSource.getConnection();
+    public Connection getReadConnection() throws SQLException {
+        if (replicaPool == null) return pool.getConnection();
+
+        try {
+            return replicaPool.getConnection();
         } catch (SQLException e){
-            e.printStackTrace();
-            return null;
+            // Replica is unavailable, but primary database can answer the same query
+            return pool.getConnection();
         }
     }
 
+    @Override
+    public long getReplicaLag() {
+        return replicaLag;
+    }
+
+    @Override
+    public boolean hasReplica() {
+        return replicaPool != null;
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return DatabaseType.MYSQL;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return pool.getSettings().getMaxSize();
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return replicaPool != null ? pool.getStats().merge(replicaPool.getStats()) : pool.getStats();
+    }
+
     @Override
     public void closeConnection(){
-        try{
-            dataSource.close();
-        } catch (SQLException e){
-            e.printStackTrace();
-        }
+        if (replicaPool != null) replicaPool.close();
+        pool.close();
     }
 
     @Override
@@ -68,7 +136,7 @@ public class MySQLDatabase implements Database {
         Row row = null;
 
         try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key+") LIKE LOWER(?)")){
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key+"=?")){
             statement.setObject(1, value);
 
             ResultSet result = statement.executeQuery();
@@ -94,7 +162,7 @@ public class MySQLDatabase implements Database {
         Row row = null;
 
         try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key1+") LIKE LOWER(?) AND LOWER("+key2+") LIKE LOWER(?)")){
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key1+"=? AND "+key2+"=?")){
             statement.setObject(1, value1);
             statement.setObject(2, value2);
 
@@ -117,149 +185,56 @@ public class MySQLDatabase implements Database {
     }
 
     @Override
-    public Row[] getRows(String table, String key, Object value) {
-        List<Row> rows;
-
+    public void forEachRow(String request, Consumer<Row> consumer) {
         try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key+") LIKE LOWER(?)")){
-            statement.setObject(1, value);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            rows = new ArrayList<>();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j), result.getObject(j));
+            PreparedStatement statement = connection.prepareStatement(request,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            // Rows are fetched by server side cursor, because useCursorFetch is enabled
+            statement.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet result = statement.executeQuery()){
+                ResultSetMetaData data = result.getMetaData();
+
+                while(result.next()) {
+                    Row row = new Row();
+                    for(int i = 1; i <= data.getColumnCount(); i++) {
+                        row.addField(data.getColumnName(i), result.getObject(i));
+                    }
+                    consumer.accept(row);
                 }
-
-                rows.add(row);
             }
-
-            return rows.toArray(new Row[rows.size()]);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getRows(String table, String key1, Object value1, String key2, Object value2) {
-        Row[] rows;
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key1+") LIKE LOWER(?) AND LOWER("+key2+") LIKE LOWER(?)")){
-            statement.setObject(1, value1);
-            statement.setObject(2, value2);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            rows = new Row[result.getFetchSize()];
-
-            int i = 0;
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j), result.getObject(j));
-                }
-
-                rows[i] = row;
-                i++;
-            }
-
-            return rows;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getAllRows(String table) {
-        List<Row> list = new ArrayList<>();
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table)){
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i), result.getObject(i));
-                }
-
-                list.add(row);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
-    }
-
-    @Override
-    public Row[] getRowsWithRequest(String request) {
-        List<Row> list = new ArrayList<>();
-
-        try (Connection connection = getConnection();
-            PreparedStatement statement = connection.prepareStatement(request)){
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i), result.getObject(i));
-                }
-                list.add(row);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
     }
 
     @Override
     public void createRow(String table, Row row) {
-        String cols = new String();
-        String vals = new String();
+        StringBuilder cols = new StringBuilder();
+        StringBuilder vals = new StringBuilder();
+        List<Object> values = new ArrayList<>();
 
-        String[] keys = row.getAllFields().keySet().toArray(new String[row.getAllFields().keySet().size()]);
-        Object[] values = row.getAllFields().values().toArray(new Object[row.getAllFields().values().size()]);
+        for (Map.Entry<String, Object> entry : row.getAllFields().entrySet()){
+            if (entry.getValue() == null) continue;
 
-
-        for(int i = 0; i < keys.length; i++){
-            if(values[i] == null){
-                continue;
+            if (values.size() > 0){
+                cols.append(',');
+                vals.append(',');
             }
-            cols += (keys[i] + ",");
-        }
 
-        for(int i = 0; i < values.length; i++){
-            if(values[i] == null){
-                continue;
-            }
-            vals += ("'" + values[i].toString() + "',");
+            cols.append(entry.getKey());
+            vals.append('?');
+            values.add(entry.getValue());
         }
 
-        cols = cols.substring(0, cols.length()-1);
-        vals = vals.substring(0, vals.length()-1);
-
         String request = "INSERT INTO " + table + "(" + cols + ") VALUES (" + vals + ");";
         try (Connection connection = getConnection();
             PreparedStatement statement = connection.prepareStatement(request)){
 
+            for (int i = 0; i < values.size(); i++){
+                statement.setObject(i+1, values.get(i));
+            }
+
             statement.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -0,0 +1,791 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+import ru.csm.api.player.SkinField;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * File storage without SQL database. Records are appended to the log file, which is mapped into memory,
+ * and found by UUID with the hash index. Only the index, names and UUIDs of the gallery are kept in heap,
+ * textures are read from the mapped file. Header of the log keeps its end, which is updated on every flush,
+ * and every entry has checksum, so on start the log is replayed up to the end until the first damaged entry.
+ * When most of the log is taken by overwritten entries, live entries are copied into the new log file in background.
+ * Replaced mappings are released at once, so the file is not mapped several times until garbage collection
+ */
+public class NativeSkinRecordRepository implements SkinRecordRepository {
+
+    private static final int LOG_MAGIC = 0x43534D4C; // CSML
+    private static final int LOG_VERSION = 2;
+    // Version 1 had no end offset in the header. Such log is scanned to the first damaged entry and compacted
+    private static final int LEGACY_VERSION = 1;
+    private static final int LEGACY_HEADER_SIZE = 8;
+    private static final int END_OFFSET = 8;
+    private static final int HEADER_SIZE = 16; // Magic, version, end of the log and reserved int
+    private static final int ENTRY_HEADER_SIZE = 8; // Payload length and checksum
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int MIN_COMPACT_SIZE = 4 << 20;
+    private static final String LOG_PREFIX = "skins-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path folder;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // Mappings replaced while compaction reads the old one. Released when compaction is finished
+    private final List<MappedByteBuffer> retired = new ArrayList<>();
+
+    private final Map<String, UUID> names = new HashMap<>();
+    private final Set<UUID> customSkins = new LinkedHashSet<>();
+    private volatile List<UUID> gallery;
+
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private boolean legacy;
+    private long liveBytes;
+    private UUIDIndex index = new UUIDIndex();
+    private volatile Thread compactor;
+
+    /**
+     * Open the log in the specified folder and read the index
+     * @param folder Folder of the log files. Created if not exists
+     */
+    public NativeSkinRecordRepository(Path folder) throws IOException {
+        this.folder = folder;
+
+        Files.createDirectories(folder);
+
+        long start = System.currentTimeMillis();
+
+        generation = findGeneration();
+        openLog(logFile(generation));
+        replay();
+
+        if (legacy){
+            compact();
+        }
+
+        Logger.info("Indexed %d skin records in %d ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    public int size(){
+        lock.readLock().lock();
+
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SkinRecord loadByUUID(UUID uuid) {
+        lock.readLock().lock();
+
+        try {
+            int offset = index.get(uuid);
+            return offset >= 0 ? read(buffer, offset) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SkinRecord loadByName(String name) {
+        lock.readLock().lock();
+
+        try {
+            UUID uuid = names.get(name.toLowerCase(Locale.ROOT));
+            return uuid != null ? read(buffer, index.get(uuid)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(SkinRecord record) {
+        save(record, EnumSet.allOf(SkinField.class));
+    }
+
+    @Override
+    public void save(SkinRecord record, Set<SkinField> fields) {
+        saveAll(Collections.singletonMap(record, fields));
+    }
+
+    @Override
+    public boolean saveAll(Map<SkinRecord, Set<SkinField>> changes) {
+        lock.writeLock().lock();
+
+        try {
+            List<SkinRecord> merged = new ArrayList<>(changes.size());
+
+            for (Map.Entry<SkinRecord, Set<SkinField>> entry : changes.entrySet()){
+                if (entry.getValue().isEmpty()) continue;
+                merged.add(merge(loadStored(entry.getKey().getUUID()), entry.getKey(), entry.getValue()));
+            }
+
+            if (!write(merged)) return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public void resetCustomSkin(UUID uuid) {
+        lock.writeLock().lock();
+
+        try {
+            SkinRecord record = loadStored(uuid);
+            if (record == null || !record.hasCustomSkin()) return;
+
+            write(Collections.singletonList(new SkinRecord(uuid, record.getName(),
+                    record.getDefaultValue(), record.getDefaultSignature(), null, null)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactIfNeeded();
+    }
+
+    @Override
+    public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+        lock.readLock().lock();
+
+        try {
+            List<UUID> list = gallery;
+
+            if (list == null){
+                list = new ArrayList<>(customSkins);
+                gallery = list;
+            }
+
+            if (offset >= list.size()) return Collections.emptyList();
+
+            List<SkinRecord> page = new ArrayList<>();
+
+            for (UUID uuid : list.subList(offset, Math.min(list.size(), offset + limit))){
+                page.add(read(buffer, index.get(uuid)));
+            }
+
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) {
+        List<UUID> sorted;
+
+        lock.readLock().lock();
+
+        try {
+            sorted = index.keys();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Same order as in SQL storages, where UUID is compared as string
+        sorted.sort(Comparator.comparing(UUID::toString));
+        String start = after != null ? after.toString() : "";
+
+        for (UUID uuid : sorted){
+            if (uuid.toString().compareTo(start) > 0){
+                SkinRecord record = loadByUUID(uuid);
+                if (record != null) consumer.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Copy live entries into the new log file. Entries written during the copy are moved after it.
+     * Does nothing if compaction is already running
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) return;
+
+        try {
+            copyLog();
+        } finally {
+            finishCompaction();
+        }
+    }
+
+    private void copyLog() throws IOException {
+        MappedByteBuffer source;
+        int end;
+        int[] offsets;
+
+        lock.readLock().lock();
+
+        try {
+            source = buffer;
+            end = position;
+            offsets = index.offsets();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Entries are copied in the order of the old log to read it sequentially
+        Arrays.sort(offsets);
+
+        Path temp = folder.resolve(LOG_PREFIX + (generation + 1) + LOG_SUFFIX + ".tmp");
+        UUIDIndex newIndex = new UUIDIndex();
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            out.write(header(HEADER_SIZE));
+
+            for (int offset : offsets){
+                copy(source, offset, out, newIndex);
+            }
+
+            lock.writeLock().lock();
+
+            try {
+                // Tail of the log was written after the index was copied
+                for (int offset = end; offset < position; offset += ENTRY_HEADER_SIZE + buffer.getInt(offset)){
+                    copy(buffer, offset, out, newIndex);
+                }
+
+                int newEnd = (int) out.position();
+                out.write(header(newEnd), 0);
+                out.force(true);
+
+                Path file = logFile(generation + 1);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                FileChannel oldChannel = channel;
+                MappedByteBuffer oldBuffer = buffer;
+                Path oldFile = logFile(generation);
+
+                generation++;
+                openLog(file);
+                retired.add(oldBuffer);
+                position = newEnd;
+                index = newIndex;
+                liveBytes = 0;
+
+                for (int offset : newIndex.offsets()){
+                    liveBytes += ENTRY_HEADER_SIZE + buffer.getInt(offset);
+                }
+
+                oldChannel.close();
+                // Nothing reads old mappings now, and file cannot be deleted on some systems while it's mapped
+                releaseRetired();
+                deleteLog(oldFile);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void finishCompaction(){
+        lock.writeLock().lock();
+
+        try {
+            compacting.set(false);
+            releaseRetired();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void releaseRetired(){
+        for (MappedByteBuffer old : retired){
+            unmap(old);
+        }
+
+        retired.clear();
+    }
+
+    @Override
+    public void close() {
+        Thread thread = compactor;
+
+        try {
+            if (thread != null) thread.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e){
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded(){
+        lock.readLock().lock();
+
+        try {
+            if (position < MIN_COMPACT_SIZE || position - HEADER_SIZE < liveBytes * 2) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!compacting.compareAndSet(false, true)) return;
+
+        compactor = new Thread(() -> {
+            try {
+                copyLog();
+            } catch (IOException e){
+                e.printStackTrace();
+            } finally {
+                finishCompaction();
+            }
+        }, "CSM Storage Compaction");
+
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    private SkinRecord loadStored(UUID uuid){
+        int offset = index.get(uuid);
+        return offset >= 0 ? read(buffer, offset) : null;
+    }
+
+    private boolean write(List<SkinRecord> changed){
+        try {
+            for (SkinRecord record : changed){
+                byte[] payload = encode(record);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+
+                ensureCapacity(ENTRY_HEADER_SIZE + payload.length);
+
+                ByteBuffer entry = buffer.duplicate();
+                entry.position(position);
+                entry.putInt(payload.length);
+                entry.putInt((int) crc.getValue());
+                entry.put(payload);
+
+                put(record, position);
+                position = entry.position();
+            }
+
+            buffer.putInt(END_OFFSET, position);
+            buffer.force();
+            return true;
+        } catch (IOException e){
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void put(SkinRecord record, int offset){
+        UUID uuid = record.getUUID();
+        int oldOffset = index.put(uuid, offset);
+
+        liveBytes += ENTRY_HEADER_SIZE + buffer.getInt(offset);
+
+        if (oldOffset >= 0){
+            liveBytes -= ENTRY_HEADER_SIZE + buffer.getInt(oldOffset);
+
+            String oldName = readName(buffer, oldOffset);
+            if (oldName != null) names.remove(oldName.toLowerCase(Locale.ROOT));
+        }
+
+        if (record.getName() != null){
+            names.put(record.getName().toLowerCase(Locale.ROOT), uuid);
+        }
+
+        boolean changed = record.hasCustomSkin() ? customSkins.add(uuid) : customSkins.remove(uuid);
+        if (changed) gallery = null;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if ((long) position + length <= buffer.capacity()) return;
+
+        long size = Math.max((long) buffer.capacity() * 2, (long) position + length);
+
+        if (size > Integer.MAX_VALUE){
+            if ((long) position + length > Integer.MAX_VALUE) throw new IOException("Skins log is full");
+            size = Integer.MAX_VALUE;
+        }
+
+        MappedByteBuffer old = buffer;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        // Compaction may still copy entries from the old mapping
+        if (compacting.get()){
+            retired.add(old);
+        } else {
+            unmap(old);
+        }
+    }
+
+    private void openLog(Path file) throws IOException {
+        boolean exists = Files.exists(file);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+
+        if (!exists){
+            buffer.duplicate().put(header(HEADER_SIZE));
+            buffer.force();
+        } else if (buffer.getInt(0) != LOG_MAGIC
+                || (buffer.getInt(4) != LOG_VERSION && buffer.getInt(4) != LEGACY_VERSION)){
+            channel.close();
+            throw new IOException("Unsupported skins log file " + file);
+        }
+
+        legacy = buffer.getInt(4) == LEGACY_VERSION;
+        position = legacy ? LEGACY_HEADER_SIZE : HEADER_SIZE;
+    }
+
+    private void replay(){
+        int end = legacy ? buffer.capacity() : buffer.getInt(END_OFFSET);
+        int limit = end >= position && end <= buffer.capacity() ? end : buffer.capacity();
+
+        while (position + ENTRY_HEADER_SIZE <= limit){
+            int length = buffer.getInt(position);
+
+            if (length <= 0 || length > limit - position - ENTRY_HEADER_SIZE) break;
+
+            ByteBuffer payload = slice(buffer, position + ENTRY_HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) break;
+
+            put(read(buffer, position), position);
+            position += ENTRY_HEADER_SIZE + length;
+        }
+
+        // Legacy log is rewritten by compaction, which copies only replayed entries
+        if (legacy || position == end) return;
+
+        // Last entries were not written completely before server stopped.
+        // Their bytes are cleared, so they are not read if the next flush is interrupted too
+        Logger.warning("Skins log has damaged entry at the end. It was removed");
+
+        for (int i = position; i < limit; i++){
+            buffer.put(i, (byte) 0);
+        }
+
+        buffer.putInt(END_OFFSET, position);
+        buffer.force();
+    }
+
+    private static ByteBuffer header(int end){
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putInt(LOG_VERSION).putInt(end).putInt(0).flip();
+        return header;
+    }
+
+    private void copy(ByteBuffer source, int offset, FileChannel out, UUIDIndex target) throws IOException {
+        int length = ENTRY_HEADER_SIZE + source.getInt(offset);
+        UUID uuid = new UUID(source.getLong(offset + ENTRY_HEADER_SIZE), source.getLong(offset + ENTRY_HEADER_SIZE + 8));
+
+        target.put(uuid, (int) out.position());
+
+        ByteBuffer entry = slice(source, offset, length);
+
+        while (entry.hasRemaining()){
+            out.write(entry);
+        }
+    }
+
+    private long findGeneration() throws IOException {
+        long last = 0;
+        List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, LOG_PREFIX + "*")){
+            for (Path file : stream){
+                String name = file.getFileName().toString();
+
+                if (name.endsWith(".tmp")){
+                    // Compaction was not finished
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+
+                try {
+                    long gen = Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+                    last = Math.max(last, gen);
+                    files.add(file);
+                } catch (NumberFormatException | IndexOutOfBoundsException e){
+                    // Not a log file
+                }
+            }
+        }
+
+        // Old logs which were not deleted after compaction, because they were still mapped
+        for (Path file : files){
+            if (!file.equals(logFile(last))) deleteLog(file);
+        }
+
+        return last;
+    }
+
+    private Path logFile(long generation){
+        return folder.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private static void deleteLog(Path file){
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e){
+            // File is deleted on the next start
+        }
+    }
+
+    private static SkinRecord merge(SkinRecord stored, SkinRecord record, Set<SkinField> fields){
+        if (stored == null || fields.containsAll(EnumSet.allOf(SkinField.class))) return record;
+
+        boolean name = fields.contains(SkinField.NAME);
+        boolean def = fields.contains(SkinField.DEFAULT_SKIN);
+        boolean custom = fields.contains(SkinField.CUSTOM_SKIN);
+
+        return new SkinRecord(record.getUUID(),
+                name ? record.getName() : stored.getName(),
+                def ? record.getDefaultValue() : stored.getDefaultValue(),
+                def ? record.getDefaultSignature() : stored.getDefaultSignature(),
+                custom ? record.getCustomValue() : stored.getCustomValue(),
+                custom ? record.getCustomSignature() : stored.getCustomSignature());
+    }
+
+    private static byte[] encode(SkinRecord record){
+        byte[][] strings = {
+                bytes(record.getName()),
+                bytes(record.getDefaultValue()),
+                bytes(record.getDefaultSignature()),
+                bytes(record.getCustomValue()),
+                bytes(record.getCustomSignature())
+        };
+
+        int size = 16;
+
+        for (byte[] value : strings){
+            size += 4 + (value != null ? value.length : 0);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putLong(record.getUUID().getMostSignificantBits());
+        payload.putLong(record.getUUID().getLeastSignificantBits());
+
+        for (byte[] value : strings){
+            if (value == null){
+                payload.putInt(-1);
+            } else {
+                payload.putInt(value.length);
+                payload.put(value);
+            }
+        }
+
+        return payload.array();
+    }
+
+    private static SkinRecord read(ByteBuffer source, int offset){
+        ByteBuffer entry = slice(source, offset + ENTRY_HEADER_SIZE, source.getInt(offset));
+        UUID uuid = new UUID(entry.getLong(), entry.getLong());
+
+        return new SkinRecord(uuid, readString(entry), readString(entry),
+                readString(entry), readString(entry), readString(entry));
+    }
+
+    private static String readName(ByteBuffer source, int offset){
+        ByteBuffer entry = slice(source, offset + ENTRY_HEADER_SIZE + 16, source.getInt(offset) - 16);
+        return readString(entry);
+    }
+
+    /**
+     * Release the mapping without waiting for garbage collection. The buffer must not be used after that.
+     * If the JVM does not allow it, the mapping is released by garbage collector
+     */
+    private static void unmap(MappedByteBuffer mapping){
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+
+            try {
+                // Java 9 and newer
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                invokeCleaner.invoke(field.get(null), mapping);
+            } catch (NoSuchMethodException e){
+                // Java 8
+                Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mapping);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e){
+            // Mapping is released by garbage collector
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer source, int offset, int length){
+        ByteBuffer slice = source.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return slice;
+    }
+
+    private static byte[] bytes(String value){
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String readString(ByteBuffer entry){
+        int length = entry.getInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        entry.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hash table with open addressing, which maps UUID to offset of the entry in the log.
+     * UUIDs are kept as pairs of longs, so the index does not create object per record
+     */
+    private static final class UUIDIndex {
+
+        private static final int EMPTY = -1;
+
+        private long[] keys = new long[2 * 1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        UUIDIndex(){
+            Arrays.fill(values, EMPTY);
+        }
+
+        int size(){
+            return size;
+        }
+
+        int get(UUID uuid){
+            int mask = values.length - 1;
+            long most = uuid.getMostSignificantBits();
+            long least = uuid.getLeastSignificantBits();
+
+            for (int slot = hash(most, least) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask){
+                if (keys[slot * 2] == most && keys[slot * 2 + 1] == least) return values[slot];
+            }
+
+            return EMPTY;
+        }
+
+        /**
+         * @return Previous offset of the entry or -1 if UUID was not in the index
+         */
+        int put(UUID uuid, int offset){
+            if (size * 4 >= values.length * 3) resize();
+
+            int mask = values.length - 1;
+            long most = uuid.getMostSignificantBits();
+            long least = uuid.getLeastSignificantBits();
+            int slot = hash(most, least) & mask;
+
+            while (values[slot] != EMPTY){
+                if (keys[slot * 2] == most && keys[slot * 2 + 1] == least){
+                    int old = values[slot];
+                    values[slot] = offset;
+                    return old;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot * 2] = most;
+            keys[slot * 2 + 1] = least;
+            values[slot] = offset;
+            size++;
+            return EMPTY;
+        }
+
+        int[] offsets(){
+            int[] offsets = new int[size];
+            int i = 0;
+
+            for (int value : values){
+                if (value != EMPTY) offsets[i++] = value;
+            }
+
+            return offsets;
+        }
+
+        List<UUID> keys(){
+            List<UUID> list = new ArrayList<>(size);
+
+            for (int slot = 0; slot < values.length; slot++){
+                if (values[slot] != EMPTY) list.add(new UUID(keys[slot * 2], keys[slot * 2 + 1]));
+            }
+
+            return list;
+        }
+
+        private void resize(){
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(values, EMPTY);
+            size = 0;
+
+            for (int slot = 0; slot < oldValues.length; slot++){
+                if (oldValues[slot] != EMPTY){
+                    put(new UUID(oldKeys[slot * 2], oldKeys[slot * 2 + 1]), oldValues[slot]);
+                }
+            }
+        }
+
+        private static int hash(long most, long least){
+            long hash = most ^ least;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary format of the textures table. Texture value is base64 of JSON, so it is decoded and compressed.
+ * Signature is base64 of RSA signature, so only decoded bytes are stored.
+ * Values which cannot be restored to the same base64 string are stored as text
+ */
+public final class PackedTextures {
+
+    private static final byte FORMAT_TEXT = 0;
+    private static final byte FORMAT_BINARY = 1;
+    private static final int BATCH_SIZE = 500;
+
+    private PackedTextures(){}
+
+    /**
+     * Pack texture value
+     * @param value Base64 texture value
+     * @return Format byte and compressed JSON of the texture
+     */
+    public static byte[] packValue(String value){
+        byte[] decoded = decode(value);
+        if (decoded == null) return text(value);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+
+        try {
+            deflater.setInput(decoded);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(decoded.length);
+            byte[] chunk = new byte[512];
+
+            out.write(FORMAT_BINARY);
+
+            while (!deflater.finished()){
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Pack texture signature
+     * @param signature Base64 signature. May be null
+     * @return Format byte and raw bytes of the signature, or null if signature is null
+     */
+    public static byte[] packSignature(String signature){
+        if (signature == null) return null;
+
+        byte[] decoded = decode(signature);
+        if (decoded == null) return text(signature);
+
+        byte[] packed = new byte[decoded.length + 1];
+        packed[0] = FORMAT_BINARY;
+        System.arraycopy(decoded, 0, packed, 1, decoded.length);
+        return packed;
+    }
+
+    public static String unpackValue(byte[] packed) throws SQLException {
+        if (packed == null) return null;
+        if (packed[0] == FORMAT_TEXT) return new String(packed, 1, packed.length - 1, StandardCharsets.UTF_8);
+
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(packed, 1, packed.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length * 3);
+            byte[] chunk = new byte[1024];
+
+            while (!inflater.finished()){
+                int length = inflater.inflate(chunk);
+                if (length == 0 && inflater.needsInput()) throw new SQLException("Packed texture is truncated");
+                out.write(chunk, 0, length);
+            }
+
+            return Base64.getEncoder().encodeToString(out.toByteArray());
+        } catch (DataFormatException e){
+            throw new SQLException("Packed texture is damaged", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static String unpackSignature(byte[] packed){
+        if (packed == null) return null;
+        if (packed[0] == FORMAT_TEXT) return new String(packed, 1, packed.length - 1, StandardCharsets.UTF_8);
+        return Base64.getEncoder().encodeToString(Arrays.copyOfRange(packed, 1, packed.length));
+    }
+
+    /**
+     * Move textures stored in other format into the table of the used format.
+     * Records refer textures by id, so they are not changed
+     * @param database Database to convert
+     * @param packed true if textures should be packed, false if they should be stored as text
+     */
+    public static void convert(Database database, boolean packed) throws SQLException {
+        String source = packed ? Tables.TEXTURES : Tables.PACKED_TEXTURES;
+        String select = "SELECT id,value,signature FROM " + source + " LIMIT " + BATCH_SIZE;
+        String delete = "DELETE FROM " + source + " WHERE id=?";
+        String insert = packed
+                ? SqlSkinRecordRepository.getInsertTexture(database.getType(), Tables.PACKED_TEXTURES)
+                : SqlSkinRecordRepository.getInsertTexture(database.getType(), Tables.TEXTURES);
+        long converted = 0;
+
+        try (Connection connection = database.getConnection()){
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement selectRows = connection.prepareStatement(select);
+                 PreparedStatement insertRows = connection.prepareStatement(insert);
+                 PreparedStatement deleteRows = connection.prepareStatement(delete)){
+                while (true){
+                    List<String> ids = new ArrayList<>(BATCH_SIZE);
+
+                    try (ResultSet result = selectRows.executeQuery()){
+                        while (result.next()){
+                            String id = result.getString(1);
+                            ids.add(id);
+                            insertRows.setString(1, id);
+
+                            if (packed){
+                                insertRows.setBytes(2, packValue(result.getString(2)));
+                                insertRows.setBytes(3, packSignature(result.getString(3)));
+                            } else {
+                                insertRows.setString(2, unpackValue(result.getBytes(2)));
+                                insertRows.setString(3, unpackSignature(result.getBytes(3)));
+                            }
+
+                            insertRows.addBatch();
+                        }
+                    }
+
+                    if (ids.isEmpty()) break;
+
+                    for (String id : ids){
+                        deleteRows.setString(1, id);
+                        deleteRows.addBatch();
+                    }
+
+                    insertRows.executeBatch();
+                    deleteRows.executeBatch();
+                    connection.commit();
+                    converted += ids.size();
+                }
+            } catch (SQLException e){
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        if (converted > 0){
+            Logger.info("Converted %d textures to %s format", converted, packed ? "packed" : "text");
+        }
+    }
+
+    private static byte[] decode(String base64){
+        try {
+            byte[] decoded = Base64.getDecoder().decode(base64);
+
+            // Texture id is hash of the original string, so it must be restored exactly
+            return Base64.getEncoder().encodeToString(decoded).equals(base64) ? decoded : null;
+        } catch (IllegalArgumentException e){
+            return null;
+        }
+    }
+
+    private static byte[] text(String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] packed = new byte[bytes.length + 1];
+        packed[0] = FORMAT_TEXT;
+        System.arraycopy(bytes, 0, packed, 1, bytes.length);
+        return packed;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+/**
+ * Settings of the connection pool
+ */
+public class PoolSettings {
+
+    private final int maxSize;
+    private final long connectionTimeout;
+    private final long idleTimeout;
+    private final String validationQuery;
+    private final long leakDetectionThreshold;
+
+    /**
+     * @param maxSize Maximum amount of the opened connections
+     * @param connectionTimeout Time in milliseconds to wait for free connection
+     * @param idleTimeout Time in milliseconds after which unused connection is closed. 0 to keep connections opened
+     * @param validationQuery Query to check that connection is alive. Null or empty to use JDBC driver check
+     * @param leakDetectionThreshold Time in milliseconds after which used connection is reported as leaked. 0 to disable
+     */
+    public PoolSettings(int maxSize, long connectionTimeout, long idleTimeout,
+                        String validationQuery, long leakDetectionThreshold){
+        this.maxSize = Math.max(1, maxSize);
+        this.connectionTimeout = connectionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.validationQuery = validationQuery;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public long getLeakDetectionThreshold() {
+        return leakDetectionThreshold;
+    }
+
+    /**
+     * Copy settings with other pool size
+     * @param maxSize Maximum amount of the opened connections
+     * @return New settings object
+     */
+    public PoolSettings withMaxSize(int maxSize){
+        return new PoolSettings(maxSize, connectionTimeout, idleTimeout, validationQuery, leakDetectionThreshold);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+/**
+ * Snapshot of the connection pool statistics
+ */
+public class PoolStats {
+
+    private final int active;
+    private final int idle;
+    private final int maxSize;
+    private final int waiting;
+    private final long borrowed;
+    private final long timeouts;
+    private final double averageWait;
+    private final double maxWait;
+
+    public PoolStats(int active, int idle, int maxSize, int waiting,
+                     long borrowed, long timeouts, double averageWait, double maxWait){
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.waiting = waiting;
+        this.borrowed = borrowed;
+        this.timeouts = timeouts;
+        this.averageWait = averageWait;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @return Amount of the connections used right now
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return Amount of the opened connections waiting for use
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Amount of the threads waiting for free connection
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * @return Total amount of the borrowed connections
+     */
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * @return Amount of the requests failed because there were no free connections
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return Average time in milliseconds spent to get connection
+     */
+    public double getAverageWait() {
+        return averageWait;
+    }
+
+    /**
+     * @return Maximum time in milliseconds spent to get connection
+     */
+    public double getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Combine statistics of two pools used by the same database
+     */
+    public PoolStats merge(PoolStats other){
+        long total = borrowed + other.borrowed;
+        double avg = total > 0 ? (averageWait * borrowed + other.averageWait * other.borrowed) / total : 0;
+
+        return new PoolStats(active + other.active, idle + other.idle, maxSize + other.maxSize,
+                waiting + other.waiting, total, timeouts + other.timeouts, avg, Math.max(maxWait, other.maxWait));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, max=%d, waiting=%d, borrowed=%d, timeouts=%d, avgWait=%.2fms, maxWait=%.2fms",
+                active, idle, maxSize, waiting, borrowed, timeouts, averageWait, maxWait);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import com.google.gson.JsonParseException;
+import ru.csm.api.player.Skin;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache of the signed premium skins by UUID of the account. Recently used skins are kept in memory,
+ * and all received skins are stored in database, so they are shared by servers and survive restart.
+ * Callers decide how old skin may be. Timestamp of the texture is stored too, so caller which knows
+ * when skin was changed can skip cached texture signed before the change
+ */
+public class PremiumSkinCache {
+
+    private static final long PURGE_INTERVAL = 3600000L; // 1 hour
+    private static final String SELECT = "SELECT value,signature,texture_time,fetched_at FROM " + Tables.PREMIUM_SKINS + " WHERE uuid=?";
+    private static final String PURGE = "DELETE FROM " + Tables.PREMIUM_SKINS + " WHERE fetched_at<?";
+
+    private final Database database;
+    private final int maxSize;
+    private final long expireAfter;
+    private final LinkedHashMap<UUID, CacheEntry> entries;
+
+    private long nextPurge;
+
+    /**
+     * @param database Database to store skins. May be null, then skins are kept only in memory
+     * @param maxSize Maximum amount of the skins in memory
+     * @param expireAfter Time in milliseconds after which stored skin is removed from database
+     */
+    public PremiumSkinCache(Database database, int maxSize, long expireAfter){
+        this.database = database;
+        this.maxSize = maxSize;
+        this.expireAfter = expireAfter;
+        this.entries = new LinkedHashMap<UUID, CacheEntry>(64, 0.75F, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CacheEntry> eldest) {
+                return size() > PremiumSkinCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get premium skin from cache, or load it if cached skin is missing or too old
+     * @param uuid UUID of the premium account
+     * @param maxAge Maximum time in milliseconds since cached skin was received from Mojang
+     * @param changedAfter Cached texture signed before this time is loaded again. 0 to accept any texture
+     * @param loader Requests skin if cached one is not acceptable. Returns null if account has no skin
+     * @return Skin of the account or null if account has no skin
+     */
+    public Skin get(UUID uuid, long maxAge, long changedAfter, Loader loader) throws IOException {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = getEntry(uuid);
+
+        if (entry == null || !entry.isAcceptable(now, maxAge, changedAfter)){
+            CacheEntry stored = loadEntry(uuid);
+
+            if (stored != null && stored.isAcceptable(now, maxAge, changedAfter)){
+                putEntry(uuid, stored);
+                return stored.skin;
+            }
+
+            Skin skin = loader.load(uuid);
+            if (skin == null) return null;
+
+            entry = new CacheEntry(skin, getTextureTime(skin), now);
+            putEntry(uuid, entry);
+            storeEntry(uuid, entry);
+        }
+
+        return entry.skin;
+    }
+
+    public synchronized void invalidate(UUID uuid){
+        entries.remove(uuid);
+    }
+
+    private synchronized CacheEntry getEntry(UUID uuid){
+        return entries.get(uuid);
+    }
+
+    private synchronized void putEntry(UUID uuid, CacheEntry entry){
+        if (maxSize > 0) entries.put(uuid, entry);
+    }
+
+    private CacheEntry loadEntry(UUID uuid){
+        if (database == null) return null;
+
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)){
+            statement.setString(1, uuid.toString());
+
+            try (ResultSet result = statement.executeQuery()){
+                if (result.next()){
+                    Skin skin = Skin.of(result.getString(1), result.getString(2));
+                    return new CacheEntry(skin, result.getLong(3), result.getLong(4));
+                }
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private void storeEntry(UUID uuid, CacheEntry entry){
+        if (database == null) return;
+
+        try (Connection connection = database.getConnection()){
+            try (PreparedStatement statement = connection.prepareStatement(getUpsert(database.getType()))){
+                statement.setString(1, uuid.toString());
+                statement.setString(2, entry.skin.getValue());
+                statement.setString(3, entry.skin.getSignature());
+                statement.setLong(4, entry.textureTime);
+                statement.setLong(5, entry.fetchedAt);
+                statement.executeUpdate();
+            }
+
+            if (entry.fetchedAt >= nextPurge){
+                nextPurge = entry.fetchedAt + PURGE_INTERVAL;
+
+                try (PreparedStatement statement = connection.prepareStatement(PURGE)){
+                    statement.setLong(1, entry.fetchedAt - expireAfter);
+                    statement.executeUpdate();
+                }
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    private static long getTextureTime(Skin skin){
+        try {
+            return skin.getTimestamp();
+        } catch (JsonParseException | IllegalArgumentException | IllegalStateException e){
+            return 0;
+        }
+    }
+
+    private static String getUpsert(DatabaseType type){
+        String columns = " (uuid,value,signature,texture_time,fetched_at)";
+
+        switch (type){
+            case MYSQL:
+                return "REPLACE INTO " + Tables.PREMIUM_SKINS + columns + " VALUES (?,?,?,?,?)";
+            case SQLITE:
+                return "INSERT OR REPLACE INTO " + Tables.PREMIUM_SKINS + columns + " VALUES (?,?,?,?,?)";
+            case H2:
+                return "MERGE INTO " + Tables.PREMIUM_SKINS + columns + " KEY(uuid) VALUES (?,?,?,?,?)";
+            default:
+                throw new IllegalArgumentException("Unsupported database type: " + type);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Skin load(UUID uuid) throws IOException;
+    }
+
+    private static class CacheEntry {
+
+        private final Skin skin;
+        private final long textureTime;
+        private final long fetchedAt;
+
+        CacheEntry(Skin skin, long textureTime, long fetchedAt){
+            this.skin = skin;
+            this.textureTime = textureTime;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isAcceptable(long now, long maxAge, long changedAfter){
+            return now - fetchedAt <= maxAge && textureTime >= changedAfter;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+import ru.csm.api.services.SkinsAPI;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodic task which removes players who did not join for a long time and have no custom skin.
+ * Every run removes one small batch, so the database is not loaded by long delete.
+ * When all inactive players are removed, the task waits for the next cycle.
+ * Only one server with the same database runs the task at the same time.
+ * After a cycle which removed many players, the skins table is compacted to return the freed space.
+ * Textures of the removed players are kept, because every server skips insert of the textures in its
+ * {@link TextureCache}, so a deleted texture could be referenced again by the next save.
+ * The task is paused during storage switch, because its deletes don't go through the switched repository
+ */
+public class RetentionTask implements Runnable {
+
+    private static final long CYCLE_INTERVAL = 3600000L; // 1 hour
+    private static final int LOG_BATCHES = 20;
+    // Lease is held for several pauses, so a single slow run does not let other server start the same batch.
+    // Short pauses still get a minute, so the lease survives a short lag of the owner server
+    private static final int LEASE_PAUSES = 3;
+    private static final long MIN_LEASE_TIME = 60000L; // 1 minute
+    // Table is rebuilt by compaction, so it is done only when enough space is freed
+    private static final long MIN_COMPACT_REMOVED = 10000;
+    private static final String COLUMNS = "uuid,name,default_texture,last_seen";
+    private static final String SELECT = "SELECT uuid FROM " + Tables.SKINS
+            + " WHERE last_seen<? AND custom_texture IS NULL LIMIT ?";
+    // Conditions are checked again, because player could join after select
+    private static final String DELETE = "DELETE FROM " + Tables.SKINS
+            + " WHERE uuid=? AND last_seen<? AND custom_texture IS NULL";
+    private static final String DELETE_ARCHIVED = "DELETE FROM " + Tables.ARCHIVE + " WHERE uuid=?";
+    private static final String ARCHIVE = "INSERT INTO " + Tables.ARCHIVE + " (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM " + Tables.SKINS + " WHERE uuid=? AND last_seen<? AND custom_texture IS NULL";
+
+    private final SkinsAPI<?> api;
+    private final Database database;
+    private final ChangeLog changeLog;
+    private final Lease lease;
+    private final long maxAge;
+    private final int batchSize;
+    private final boolean archive;
+
+    private final AtomicLong removedTotal = new AtomicLong();
+    private final AtomicInteger removedSincePoll = new AtomicInteger();
+
+    private long nextCycle;
+    private long cycleRemoved;
+    private int cycleBatches;
+    private boolean paused;
+
+    /**
+     * @param maxAge Time in milliseconds after the last join, when player is removed
+     * @param batchSize Maximum amount of the players removed by one run
+     * @param changeLog Log of the changes for other servers, or null if synchronization is disabled
+     * @param archive true if removed players should be copied into archive table
+     * @param pause Time in milliseconds between runs of the task
+     */
+    public RetentionTask(SkinsAPI<?> api, Database database, ChangeLog changeLog,
+                         long maxAge, int batchSize, boolean archive, long pause){
+        this.api = api;
+        this.database = database;
+        this.changeLog = changeLog;
+        this.lease = new Lease(database, "retention", UUID.randomUUID().toString(),
+                Math.max(MIN_LEASE_TIME, pause * LEASE_PAUSES));
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.archive = archive;
+    }
+
+    /**
+     * @return Amount of the players removed since the plugin start
+     */
+    public long getRemovedTotal() {
+        return removedTotal.get();
+    }
+
+    /**
+     * @return Amount of the players removed in the current cycle. 0 if task waits for the next cycle
+     */
+    public synchronized long getCycleRemoved() {
+        return cycleRemoved;
+    }
+
+    /**
+     * Get amount of the players removed since the previous call. Used by metrics, which sum sent values
+     */
+    public int pollRemoved(){
+        return removedSincePoll.getAndSet(0);
+    }
+
+    @Override
+    public synchronized void run() {
+        long now = System.currentTimeMillis();
+        if (now < nextCycle) return;
+
+        if (api.getSwitchableRepository().isMirroring()){
+            // Removed players would stay in the new storage. Task works with the new storage after restart
+            if (!paused) Logger.info("Removing of inactive players is paused until restart, because storage is switched");
+            paused = true;
+            return;
+        }
+
+        // Failed switch is stopped without restart
+        paused = false;
+
+        try {
+            if (!lease.acquire()){
+                nextCycle = now + CYCLE_INTERVAL;
+                return;
+            }
+
+            List<UUID> removed = removeBatch(now - maxAge);
+
+            for (UUID uuid : removed){
+                api.getRecordCache().invalidate(uuid);
+            }
+
+            removedTotal.addAndGet(removed.size());
+            removedSincePoll.addAndGet(removed.size());
+            cycleRemoved += removed.size();
+            cycleBatches++;
+
+            if (removed.size() < batchSize){
+                if (cycleRemoved > 0){
+                    Logger.info("Removed %d inactive players", cycleRemoved);
+                }
+
+                if (cycleRemoved >= MIN_COMPACT_REMOVED){
+                    compact();
+                }
+
+                cycleRemoved = 0;
+                cycleBatches = 0;
+                nextCycle = now + CYCLE_INTERVAL;
+            } else if (cycleBatches % LOG_BATCHES == 0){
+                Logger.info("Removing inactive players. Removed %d players in this cycle", cycleRemoved);
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rebuild the skins table and its indexes to return space of the removed rows.
+     * H2 compacts its file in background, so nothing is done there
+     */
+    private void compact() throws SQLException {
+        String sql;
+
+        switch (database.getType()){
+            case MYSQL:
+                // InnoDB rebuilds the table online, so writes are not blocked
+                sql = "OPTIMIZE TABLE " + Tables.SKINS;
+                break;
+            case SQLITE:
+                sql = "VACUUM";
+                break;
+            default:
+                return;
+        }
+
+        long start = System.currentTimeMillis();
+
+        try (Connection connection = database.getConnection();
+             Statement statement = connection.createStatement()){
+            statement.execute(sql);
+        }
+
+        Logger.info("Compacted skins table in %d ms", System.currentTimeMillis() - start);
+    }
+
+    private List<UUID> removeBatch(long seenBefore) throws SQLException {
+        List<UUID> removed = new ArrayList<>(batchSize);
+
+        try (Connection connection = database.getConnection()){
+            List<String> uuids = new ArrayList<>(batchSize);
+
+            try (PreparedStatement statement = connection.prepareStatement(SELECT)){
+                statement.setLong(1, seenBefore);
+                statement.setInt(2, batchSize);
+
+                try (ResultSet result = statement.executeQuery()){
+                    while (result.next()){
+                        uuids.add(result.getString(1));
+                    }
+                }
+            }
+
+            if (uuids.isEmpty()) return removed;
+
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                if (archive){
+                    try (PreparedStatement deleteArchived = connection.prepareStatement(DELETE_ARCHIVED);
+                         PreparedStatement insert = connection.prepareStatement(ARCHIVE)){
+                        for (String uuid : uuids){
+                            deleteArchived.setString(1, uuid);
+                            deleteArchived.addBatch();
+                            insert.setString(1, uuid);
+                            insert.setLong(2, seenBefore);
+                            insert.addBatch();
+                        }
+
+                        deleteArchived.executeBatch();
+                        insert.executeBatch();
+                    }
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(DELETE)){
+                    for (String uuid : uuids){
+                        statement.setString(1, uuid);
+                        statement.setLong(2, seenBefore);
+                        statement.addBatch();
+                    }
+
+                    int[] counts = statement.executeBatch();
+
+                    for (int i = 0; i < counts.length; i++){
+                        // Some drivers don't return counts of the batch statements
+                        if (counts[i] != 0) removed.add(UUID.fromString(uuids.get(i)));
+                    }
+                }
+
+                // Other servers invalidate removed players in their caches
+                if (changeLog != null && !removed.isEmpty()){
+                    changeLog.append(connection, removed);
+                }
+
+                connection.commit();
+            } catch (SQLException e){
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        return removed;
+    }
+}
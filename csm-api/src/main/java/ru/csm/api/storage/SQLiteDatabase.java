@@ -22,41 +22,92 @@ import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class SQLiteDatabase implements Database {
 
-    private Connection connection;
+    private static final int FETCH_SIZE = 1000;
 
-    public SQLiteDatabase(String url, String database, String user, String password) throws SQLException {
+    private static final int BUSY_TIMEOUT = 5000;
+
+    private final ConnectionPool writePool;
+    private final ConnectionPool readPool;
+
+    public SQLiteDatabase(String url, String database, String user, String password, PoolSettings settings) throws SQLException {
         try{
             Class.forName("org.sqlite.JDBC");
         }catch (ClassNotFoundException e){
             e.printStackTrace();
         }
 
-        connection = DriverManager.getConnection("jdbc:sqlite:" + url + File.separator + database + ".db", user, password);
+        String jdbcUrl = "jdbc:sqlite:" + url + File.separator + database + ".db";
+        // SQLite allows only one writer, so all writes use single connection.
+        // Writers from any thread wait for it in the pool, not on the database lock,
+        // so busy timeout is reached only if database is locked by another process.
+        // In WAL mode readers are not blocked by writer and use own read-only connections
+        writePool = new ConnectionPool(() -> open(jdbcUrl, user, password, false), settings.withMaxSize(1));
+        readPool = new ConnectionPool(() -> open(jdbcUrl, user, password, true), settings);
+        writePool.getConnection().close(); // Just check connection and enable WAL
     }
 
     @Override
-    public Connection getConnection() {
-        return connection;
+    public Connection getConnection() throws SQLException {
+        return writePool.getConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        return readPool.getConnection();
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return DatabaseType.SQLITE;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return readPool.getSettings().getMaxSize();
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return readPool.getStats().merge(writePool.getStats());
     }
 
     @Override
     public void closeConnection(){
-        try {
+        readPool.close();
+        writePool.close();
+    }
+
+    private static Connection open(String url, String user, String password, boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+
+        try (Statement statement = connection.createStatement()){
+            if (readOnly){
+                statement.execute("PRAGMA query_only=ON");
+            } else {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT);
+        } catch (SQLException e){
             connection.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            throw e;
         }
+
+        return connection;
     }
 
     @Override
     public Row getRow(String table, String key, Object value) {
         Row row = null;
 
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key+") LIKE LOWER(?)");
+        try (Connection connection = getReadConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key+"=?")){
             statement.setObject(1, value);
 
             ResultSet result = statement.executeQuery();
@@ -81,8 +132,8 @@ public class SQLiteDatabase implements Database {
     public Row getRow(String table, String key1, Object value1, String key2, Object value2) {
         Row row = null;
 
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key1+") LIKE LOWER(?) AND LOWER("+key2+") LIKE LOWER(?)");
+        try (Connection connection = getReadConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE "+key1+"=? AND "+key2+"=?")){
             statement.setObject(1, value1);
             statement.setObject(2, value2);
 
@@ -105,141 +156,54 @@ public class SQLiteDatabase implements Database {
     }
 
     @Override
-    public Row[] getRows(String table, String key, Object value) {
-        List<Row> rows = new ArrayList<Row>();
-
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key+") LIKE LOWER(?)");
-            statement.setObject(1, value);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j), result.getObject(j));
+    public void forEachRow(String request, Consumer<Row> consumer) {
+        try (Connection connection = getReadConnection();
+            PreparedStatement statement = connection.prepareStatement(request,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            statement.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet result = statement.executeQuery()){
+                ResultSetMetaData data = result.getMetaData();
+
+                while(result.next()) {
+                    Row row = new Row();
+                    for(int i = 1; i <= data.getColumnCount(); i++) {
+                        row.addField(data.getColumnName(i), result.getObject(i));
+                    }
+                    consumer.accept(row);
                 }
-
-                rows.add(row);
             }
-
-            return rows.toArray(new Row[rows.size()]);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getRows(String table, String key1, Object value1, String key2, Object value2) {
-        List<Row> rows = new ArrayList<Row>();
-
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE LOWER("+key1+") LIKE LOWER(?) AND LOWER("+key2+") LIKE LOWER(?)");
-            statement.setObject(1, value1);
-            statement.setObject(2, value2);
-
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int j = 1; j <= data.getColumnCount(); j++) {
-                    row.addField(data.getColumnName(j), result.getObject(j));
-                }
-
-                rows.add(row);
-            }
-
-            return rows.toArray(new Row[rows.size()]);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    @Override
-    public Row[] getAllRows(String table) {
-        List<Row> list = new ArrayList<Row>();
-
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table);
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i), result.getObject(i));
-                }
-
-                list.add(row);
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
-    }
-
-    @Override
-    public Row[] getRowsWithRequest(String request) {
-        List<Row> list = new ArrayList<>();
-
-        try {
-            PreparedStatement statement = connection.prepareStatement(request);
-            ResultSet result = statement.executeQuery();
-            ResultSetMetaData data = result.getMetaData();
-
-            while(result.next()) {
-                Row row = new Row();
-                for(int i = 1; i <= data.getColumnCount(); i++) {
-                    row.addField(data.getColumnName(i), result.getObject(i));
-                }
-                list.add(row);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return list.toArray(new Row[list.size()]);
     }
 
     @Override
     public void createRow(String table, Row row) {
-        String cols = new String();
-        String vals = new String();
+        StringBuilder cols = new StringBuilder();
+        StringBuilder vals = new StringBuilder();
+        List<Object> values = new ArrayList<>();
 
-        String[] keys = row.getAllFields().keySet().toArray(new String[row.getAllFields().keySet().size()]);
-        Object[] values = row.getAllFields().values().toArray(new Object[row.getAllFields().values().size()]);
+        for (Map.Entry<String, Object> entry : row.getAllFields().entrySet()){
+            if (entry.getValue() == null) continue;
 
-        for(int i = 0; i < keys.length; i++){
-            if(values[i] == null){
-                continue;
+            if (values.size() > 0){
+                cols.append(',');
+                vals.append(',');
             }
-            cols += (keys[i] + ",");
-        }
 
-        for(int i = 0; i < values.length; i++){
-            if(values[i] == null){
-                continue;
-            }
-            vals += ("'" + values[i].toString() + "',");
+            cols.append(entry.getKey());
+            vals.append('?');
+            values.add(entry.getValue());
         }
 
-        cols = cols.substring(0, cols.length()-1);
-        vals = vals.substring(0, vals.length()-1);
+        String request = "INSERT INTO " + table + "(" + cols + ") VALUES (" + vals + ");";
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement(request)){
 
-        try {
-            String request = "INSERT INTO " + table + "(" + cols + ") VALUES (" + vals + ");";
-            PreparedStatement statement = connection.prepareStatement(request);
+            for (int i = 0; i < values.size(); i++){
+                statement.setObject(i+1, values.get(i));
+            }
 
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -260,9 +224,9 @@ public class SQLiteDatabase implements Database {
 
         elements = elements.substring(0, elements.length()-1);
 
-        try {
-            String request = "UPDATE " + table + " SET " + elements + " WHERE `" + key + "`='" + value + "'";
-            PreparedStatement statement = connection.prepareStatement(request);
+        String request = "UPDATE " + table + " SET " + elements + " WHERE `" + key + "`='" + value + "'";
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement(request)){
 
             for(int i = 0; i < values.length; i++){
                 int index = i+1;
@@ -279,8 +243,8 @@ public class SQLiteDatabase implements Database {
     public Object getObject(String table, String column, String key, String value) {
         Object obj = null;
 
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE " + key + "=?");
+        try (Connection connection = getReadConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE " + key + "=?")){
             statement.setObject(1, value);
 
             ResultSet result = statement.executeQuery();
@@ -297,8 +261,8 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public void setObject(String table, String column, Object content, String key, Object value) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET "+column+"=? WHERE "+key+"=?");
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET "+column+"=? WHERE "+key+"=?")){
             statement.setObject(1, content);
             statement.setObject(2, value);
 
@@ -310,8 +274,8 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public void setObject(String table, String column, Object content, String key1, Object value1, String key2, Object value2) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET "+column+"=? WHERE "+key1+"=? AND "+key2+"=?");
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET "+column+"=? WHERE "+key1+"=? AND "+key2+"=?")){
             statement.setObject(1, content);
             statement.setObject(2, value1);
             statement.setObject(3, value2);
@@ -324,8 +288,8 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public void removeRow(String table, String key, String value) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE " + key + "=?");
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE " + key + "=?")){
             statement.setObject(1, value);
 
             statement.execute();
@@ -336,8 +300,8 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public void executeSQL(String request) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(request);
+        try (Connection connection = getConnection();
+            PreparedStatement statement = connection.prepareStatement(request)){
             statement.execute();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -346,8 +310,8 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public boolean existsRow(String table, String key, Object value) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE " + key + "=?");
+        try (Connection connection = getReadConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table + " WHERE " + key + "=?")){
             statement.setObject(1, value);
 
             ResultSet result = statement.executeQuery();
@@ -0,0 +1,149 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.SkinField;
+
+import java.util.*;
+
+/**
+ * Write-behind buffer of the player saves.
+ * Only the latest record of every player is kept until buffer is flushed,
+ * so several saves of the same player between flushes cause single write
+ */
+public class SaveBuffer {
+
+    private final SkinRecordRepository repository;
+    private final int maxSize;
+    private final Object flushLock = new Object();
+
+    private Map<UUID, PendingSave> pending = new LinkedHashMap<>();
+    private Map<UUID, PendingSave> flushing = Collections.emptyMap();
+    private Set<UUID> seen = new HashSet<>();
+
+    public SaveBuffer(SkinRecordRepository repository, int maxSize){
+        this.repository = repository;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Add record to the buffer. Previous pending record of the same player is replaced
+     * @param record Current state of the player
+     * @param fields Changed fields
+     * @return true if buffer reached its size limit and should be flushed
+     */
+    public synchronized boolean add(SkinRecord record, Set<SkinField> fields){
+        if (fields.isEmpty()) return false;
+
+        PendingSave save = pending.get(record.getUUID());
+
+        if (save != null){
+            save.record = record;
+            save.fields.addAll(fields);
+        } else {
+            pending.put(record.getUUID(), new PendingSave(record, fields));
+        }
+
+        return pending.size() >= maxSize;
+    }
+
+    /**
+     * Remember that player joined the server. Time of the join is written with the next flush
+     * @param uuid UUID of the player
+     */
+    public synchronized void markSeen(UUID uuid){
+        seen.add(uuid);
+    }
+
+    /**
+     * Get record which is not written into storage yet
+     * @param uuid UUID of the player
+     * @return Pending record or null if there are no unsaved changes
+     */
+    public synchronized SkinRecord getPending(UUID uuid){
+        PendingSave save = pending.get(uuid);
+        if (save == null) save = flushing.get(uuid);
+        return save != null ? save.record : null;
+    }
+
+    public synchronized int size(){
+        return pending.size();
+    }
+
+    /**
+     * Write all pending records into storage as one batch.
+     * If write fails, records returned into buffer and will be written on next flush
+     */
+    public void flush(){
+        synchronized (flushLock){
+            Map<UUID, PendingSave> batch;
+            Set<UUID> joined;
+
+            synchronized (this){
+                if (pending.isEmpty() && seen.isEmpty()) return;
+                batch = pending;
+                joined = seen;
+                flushing = batch;
+                pending = new LinkedHashMap<>();
+                seen = new HashSet<>();
+            }
+
+            if (!joined.isEmpty()){
+                repository.updateLastSeen(joined, System.currentTimeMillis());
+            }
+
+            if (batch.isEmpty()) return;
+
+            Map<SkinRecord, Set<SkinField>> records = new LinkedHashMap<>();
+
+            for (PendingSave save : batch.values()){
+                records.put(save.record, save.fields);
+            }
+
+            boolean saved = repository.saveAll(records);
+
+            synchronized (this){
+                flushing = Collections.emptyMap();
+
+                if (!saved){
+                    for (Map.Entry<UUID, PendingSave> entry : batch.entrySet()){
+                        PendingSave newer = pending.get(entry.getKey());
+
+                        if (newer != null){
+                            newer.fields.addAll(entry.getValue().fields);
+                        } else {
+                            pending.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static class PendingSave {
+
+        private SkinRecord record;
+        private final Set<SkinField> fields;
+
+        PendingSave(SkinRecord record, Set<SkinField> fields){
+            this.record = record;
+            this.fields = EnumSet.copyOf(fields);
+        }
+    }
+}
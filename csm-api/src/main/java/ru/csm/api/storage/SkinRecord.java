@@ -0,0 +1,106 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinPlayer;
+
+import java.util.UUID;
+
+/**
+ * Compact snapshot of a single row of the skins table
+ */
+public class SkinRecord {
+
+    private final UUID uuid;
+    private final String name;
+    private final String defaultValue;
+    private final String defaultSignature;
+    private final String customValue;
+    private final String customSignature;
+
+    public SkinRecord(UUID uuid, String name, String defaultValue, String defaultSignature,
+                      String customValue, String customSignature){
+        this.uuid = uuid;
+        this.name = name;
+        this.defaultValue = defaultValue;
+        this.defaultSignature = defaultSignature;
+        this.customValue = customValue;
+        this.customSignature = customSignature;
+    }
+
+    public UUID getUUID() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    public String getDefaultSignature() {
+        return defaultSignature;
+    }
+
+    public String getCustomValue() {
+        return customValue;
+    }
+
+    public String getCustomSignature() {
+        return customSignature;
+    }
+
+    public boolean hasCustomSkin(){
+        return customValue != null && customSignature != null;
+    }
+
+    /**
+     * @return Default skin, or null if record was loaded without default skin columns
+     */
+    public Skin getDefaultSkin(){
+        return defaultValue != null ? Skin.of(defaultValue, defaultSignature) : null;
+    }
+
+    /**
+     * @return Custom skin, or null if player not have custom skin
+     */
+    public Skin getCustomSkin(){
+        return hasCustomSkin() ? Skin.of(customValue, customSignature) : null;
+    }
+
+    /**
+     * @return Texture value of the custom skin if present, or default otherwise
+     */
+    public String getCurrentValue(){
+        return customValue != null ? customValue : defaultValue;
+    }
+
+    public static SkinRecord of(SkinPlayer player){
+        Skin defaultSkin = player.getDefaultSkin();
+        Skin customSkin = player.hasCustomSkin() ? player.getCustomSkin() : null;
+
+        return new SkinRecord(player.getUUID(), player.getName(),
+                defaultSkin.getValue(), defaultSkin.getSignature(),
+                customSkin != null ? customSkin.getValue() : null,
+                customSkin != null ? customSkin.getSignature() : null);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory cache of the stored skin records by UUID and by case insensitive name.
+ * Cache is limited by approximate size of the records in memory. Records expire after fixed time,
+ * so changes made by other servers become visible even without explicit invalidation.
+ * Loaded records are cached only if the same record was not written or invalidated during the load,
+ * so old data read from storage does not replace newer cached data
+ */
+public class SkinRecordCache {
+
+    private static final int MAX_GALLERY_PAGES = 16;
+    // Approximate size of the record object with UUID and string headers
+    private static final int RECORD_OVERHEAD = 256;
+
+    private final long maxWeight;
+    private final long expireAfter;
+
+    private final LinkedHashMap<UUID, Entry> records = new LinkedHashMap<>(64, 0.75F, true);
+    private final Map<String, UUID> names = new HashMap<>();
+    private final LinkedHashMap<Long, GalleryPage> gallery = new LinkedHashMap<Long, GalleryPage>(16, 0.75F, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, GalleryPage> eldest) {
+            return size() > MAX_GALLERY_PAGES;
+        }
+    };
+
+    private long weight;
+
+    // Every write and invalidation increases generation. Changes are remembered only while some load is running
+    private final Map<UUID, Long> changedAt = new HashMap<>();
+    private long generation;
+    private long clearedAt;
+    private long galleryChangedAt;
+    private int loads;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxWeight Maximum size of the cached records in bytes
+     * @param expireAfter Time in milliseconds after which cached record is loaded again
+     */
+    public SkinRecordCache(long maxWeight, long expireAfter){
+        this.maxWeight = maxWeight;
+        this.expireAfter = expireAfter;
+    }
+
+    /**
+     * Get cached record. Hit is counted if record found
+     * @return Cached record or null if record not cached or expired
+     */
+    public synchronized SkinRecord get(UUID uuid){
+        Entry entry = records.get(uuid);
+
+        if (entry == null) return null;
+
+        if (entry.isExpired()){
+            remove(uuid);
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.record;
+    }
+
+    /**
+     * Get cached record by case insensitive name. Hit is counted if record found
+     * @return Cached record or null if record not cached or expired
+     */
+    public synchronized SkinRecord getByName(String name){
+        UUID uuid = names.get(normalize(name));
+        return uuid != null ? get(uuid) : null;
+    }
+
+    /**
+     * Cache written record or replace cached record with the same UUID
+     * @param record Record with UUID
+     */
+    public synchronized void put(SkinRecord record){
+        if (record.getUUID() == null) return;
+
+        markChanged(record.getUUID());
+        store(record);
+    }
+
+    /**
+     * Start loading of the record or gallery page from storage. Miss is counted
+     * @return Token of the load, which is passed to {@link #putLoaded(SkinRecord, long)}
+     * or {@link #putLoadedGalleryPage(int, int, List, long)} after the load
+     */
+    public synchronized long startLoad(){
+        misses.incrementAndGet();
+        loads++;
+        return generation;
+    }
+
+    /**
+     * Finish the load and cache loaded record, if it was not written or invalidated since the load was started
+     * @param record Loaded record or null if record not found
+     * @param token Token returned by {@link #startLoad()}
+     */
+    public synchronized void putLoaded(SkinRecord record, long token){
+        if (record != null && record.getUUID() != null && !isChangedSince(record.getUUID(), token)){
+            store(record);
+        }
+
+        finishLoad();
+    }
+
+    /**
+     * Move cached records to the end of eviction order without counting hits. Used when players join
+     */
+    public synchronized void touch(Collection<UUID> uuids){
+        for (UUID uuid : uuids){
+            records.get(uuid);
+        }
+    }
+
+    private void store(SkinRecord record){
+        remove(record.getUUID());
+
+        Entry entry = new Entry(record);
+
+        records.put(record.getUUID(), entry);
+        if (record.getName() != null) names.put(normalize(record.getName()), record.getUUID());
+        weight += entry.weight;
+
+        Iterator<Map.Entry<UUID, Entry>> iterator = records.entrySet().iterator();
+
+        while (weight > maxWeight && iterator.hasNext()){
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            removeName(eldest.record);
+            weight -= eldest.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized List<SkinRecord> getGalleryPage(int offset, int limit){
+        GalleryPage page = gallery.get(getPageKey(offset, limit));
+
+        if (page == null || page.isExpired()) return null;
+
+        hits.incrementAndGet();
+        return page.records;
+    }
+
+    /**
+     * Finish the load and cache loaded gallery page, if gallery was not invalidated since the load was started
+     * @param records Loaded page or null if it should not be cached
+     * @param token Token returned by {@link #startLoad()}
+     */
+    public synchronized void putLoadedGalleryPage(int offset, int limit, List<SkinRecord> records, long token){
+        if (records != null && galleryChangedAt <= token && clearedAt <= token){
+            gallery.put(getPageKey(offset, limit), new GalleryPage(Collections.unmodifiableList(records)));
+        }
+
+        finishLoad();
+    }
+
+    /**
+     * Remove record of the player from cache. Used when record is changed outside of this cache
+     */
+    public synchronized void invalidate(UUID uuid){
+        markChanged(uuid);
+        remove(uuid);
+    }
+
+    /**
+     * Remove cached gallery pages. Used when custom skin of any player is changed
+     */
+    public synchronized void invalidateGallery(){
+        galleryChangedAt = ++generation;
+        gallery.clear();
+    }
+
+    /**
+     * Remove all cached records and gallery pages
+     */
+    public synchronized void invalidateAll(){
+        clearedAt = ++generation;
+        changedAt.clear();
+        records.clear();
+        names.clear();
+        gallery.clear();
+        weight = 0;
+    }
+
+    public synchronized int size(){
+        return records.size();
+    }
+
+    /**
+     * @return Approximate size of the cached records in bytes
+     */
+    public synchronized long getWeight(){
+        return weight;
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    private void markChanged(UUID uuid){
+        generation++;
+        if (loads > 0) changedAt.put(uuid, generation);
+    }
+
+    private boolean isChangedSince(UUID uuid, long token){
+        return clearedAt > token || changedAt.getOrDefault(uuid, 0L) > token;
+    }
+
+    private void finishLoad(){
+        if (--loads == 0) changedAt.clear();
+    }
+
+    private void remove(UUID uuid){
+        Entry entry = records.remove(uuid);
+
+        if (entry != null){
+            removeName(entry.record);
+            weight -= entry.weight;
+        }
+    }
+
+    private void removeName(SkinRecord record){
+        if (record.getName() != null){
+            names.remove(normalize(record.getName()), record.getUUID());
+        }
+    }
+
+    private static long getPageKey(int offset, int limit){
+        return ((long) offset << 32) | limit;
+    }
+
+    private static String normalize(String name){
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static int getWeight(SkinRecord record){
+        return RECORD_OVERHEAD + 2 * (length(record.getName())
+                + length(record.getDefaultValue()) + length(record.getDefaultSignature())
+                + length(record.getCustomValue()) + length(record.getCustomSignature()));
+    }
+
+    private static int length(String str){
+        return str != null ? str.length() : 0;
+    }
+
+    private class Entry {
+
+        private final SkinRecord record;
+        private final int weight;
+        private final long expiresAt;
+
+        Entry(SkinRecord record){
+            this.record = record;
+            this.weight = getWeight(record);
+            this.expiresAt = System.currentTimeMillis() + expireAfter;
+        }
+
+        boolean isExpired(){
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private class GalleryPage {
+
+        private final List<SkinRecord> records;
+        private final long expiresAt;
+
+        GalleryPage(List<SkinRecord> records){
+            this.records = records;
+            this.expiresAt = System.currentTimeMillis() + expireAfter;
+        }
+
+        boolean isExpired(){
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
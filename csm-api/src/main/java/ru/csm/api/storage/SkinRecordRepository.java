@@ -0,0 +1,103 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.SkinField;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface SkinRecordRepository {
+
+    /**
+     * Load skin record of the player
+     * @param uuid UUID of the player
+     * @return Loaded record or null if player not exists in storage
+     */
+    SkinRecord loadByUUID(UUID uuid);
+
+    /**
+     * Load skin record of the player. Name is case insensitive
+     * @param name Name of the player
+     * @return Loaded record or null if player not exists in storage
+     */
+    SkinRecord loadByName(String name);
+
+    /**
+     * Insert new record or update all fields of existing one with the same UUID
+     * @param record Record to save
+     */
+    void save(SkinRecord record);
+
+    /**
+     * Insert new record or update specified fields of existing one with the same UUID
+     * @param record Record to save
+     * @param fields Fields to update if record already exists
+     */
+    void save(SkinRecord record, Set<SkinField> fields);
+
+    /**
+     * Save several records in one transaction
+     * @param records Records with fields to update if record already exists
+     * @return true if all records saved and false if transaction was rolled back
+     */
+    boolean saveAll(Map<SkinRecord, Set<SkinField>> records);
+
+    /**
+     * Remove custom skin of the player
+     * @param uuid UUID of the player
+     */
+    void resetCustomSkin(UUID uuid);
+
+    /**
+     * Set time of the last join of the players. Storages which never remove inactive players ignore it
+     * @param uuids UUIDs of the players
+     * @param time Time of the join in milliseconds
+     */
+    default void updateLastSeen(Collection<UUID> uuids, long time){}
+
+    /**
+     * Load page of the players who have custom skin.
+     * Returned records contains only name and custom skin
+     * @param offset Amount of skipped records
+     * @param limit Maximum amount of records on page
+     * @return List of records. Empty if page not exists
+     */
+    List<SkinRecord> loadGalleryPage(int offset, int limit);
+
+    /**
+     * Pass all records ordered by UUID to consumer one by one, without loading them into memory.
+     * Used by maintenance tasks and exports
+     * @param after UUID after which records are passed, or null to start from the first record
+     * @param consumer Consumer of the records
+     * @throws SQLException if records cannot be read
+     */
+    void forEachRecord(UUID after, Consumer<SkinRecord> consumer) throws SQLException;
+
+    /**
+     * Save pending data and release resources of the storage. Database connections are closed separately
+     */
+    default void close(){}
+
+}
@@ -25,10 +25,36 @@ public class SkinsConfig {
     private String dbDatabase;
     private String dbUser;
     private String dbPassword;
+    private int saveInterval;
+    private int saveBatchSize;
+    private int queueSize;
+    private PoolSettings poolSettings;
+    private int cacheMaxMemory;
+    private int cacheExpireAfter;
+    private boolean syncEnabled;
+    private int syncPeriod;
+    private int syncRetention;
+    private boolean clusterEnabled;
+    private int clusterLeaseTime;
+    private boolean packTextures;
+    private String replicaHost;
+    private int replicaPort;
+    private int replicaMaxLag;
+    private boolean retentionEnabled;
+    private int retentionMaxAge;
+    private int retentionBatchSize;
+    private int retentionPause;
+    private boolean retentionArchive;
+    private Path dataFolder;
     // End database credentials
 
     private boolean restoreSkins;
     private boolean updateDefaultSkin;
+    private int uuidCacheSize;
+    private int uuidCacheTtl;
+    private int uuidCacheNegativeTtl;
+    private int skinCacheSize;
+    private int skinCacheMaxAge;
     private List<Skin> defaultSkins;
     private boolean enableMojangAccounts;
     private int mojangQueryPeriod;
@@ -44,6 +70,7 @@ public class SkinsConfig {
     }
 
     public void load(Path dataFolder) throws Exception {
+        this.dataFolder = dataFolder;
         String langPath = "/lang/" + conf.getNode("language").getString() + ".yml";
 
         this.language = YamlLanguage.builder()
@@ -59,9 +86,40 @@ public class SkinsConfig {
         this.dbDatabase = conf.getNode("database", "database").getString();
         this.dbUser = conf.getNode("database", "user").getString();
         this.dbPassword = conf.getNode("database", "password").getString();
+        this.saveInterval = conf.getNode("database", "saveInterval").getInt(5);
+        this.saveBatchSize = conf.getNode("database", "saveBatchSize").getInt(100);
+        this.queueSize = conf.getNode("database", "queueSize").getInt(1000);
+        this.poolSettings = new PoolSettings(
+                conf.getNode("database", "pool", "maxSize").getInt(10),
+                conf.getNode("database", "pool", "connectionTimeout").getLong(5000),
+                conf.getNode("database", "pool", "idleTimeout").getLong(600000),
+                conf.getNode("database", "pool", "validationQuery").getString(""),
+                conf.getNode("database", "pool", "leakDetectionThreshold").getLong(0)
+        );
+        this.cacheMaxMemory = conf.getNode("database", "cache", "maxMemory").getInt(16);
+        this.cacheExpireAfter = conf.getNode("database", "cache", "expireAfter").getInt(600);
+        this.syncEnabled = conf.getNode("database", "sync", "enable").getBoolean(false);
+        this.syncPeriod = conf.getNode("database", "sync", "period").getInt(2);
+        this.syncRetention = conf.getNode("database", "sync", "retention").getInt(24);
+        this.clusterEnabled = conf.getNode("database", "cluster", "enable").getBoolean(false);
+        this.clusterLeaseTime = conf.getNode("database", "cluster", "leaseTime").getInt(10);
+        this.packTextures = conf.getNode("database", "packTextures").getBoolean(false);
+        this.replicaHost = conf.getNode("database", "replica", "host").getString("");
+        this.replicaPort = conf.getNode("database", "replica", "port").getInt(3306);
+        this.replicaMaxLag = conf.getNode("database", "replica", "maxLag").getInt(5);
+        this.retentionEnabled = conf.getNode("database", "retention", "enable").getBoolean(false);
+        this.retentionMaxAge = conf.getNode("database", "retention", "maxAge").getInt(90);
+        this.retentionBatchSize = conf.getNode("database", "retention", "batchSize").getInt(500);
+        this.retentionPause = conf.getNode("database", "retention", "pause").getInt(2);
+        this.retentionArchive = conf.getNode("database", "retention", "archive").getBoolean(false);
 
         this.restoreSkins = conf.getNode("restoreSkins").getBoolean();
         this.updateDefaultSkin = conf.getNode("updateDefaultSkin").getBoolean();
+        this.uuidCacheSize = conf.getNode("uuidCache", "size").getInt(10000);
+        this.uuidCacheTtl = conf.getNode("uuidCache", "ttl").getInt(1440);
+        this.uuidCacheNegativeTtl = conf.getNode("uuidCache", "negativeTtl").getInt(30);
+        this.skinCacheSize = conf.getNode("skinCache", "size").getInt(1000);
+        this.skinCacheMaxAge = conf.getNode("skinCache", "maxAge").getInt(60);
         this.defaultSkins = conf.getNode("defaultSkins").getList(Skin.class);
         this.enableMojangAccounts = conf.getNode("mojang", "enable").getBoolean();
         this.mojangQueryPeriod = conf.getNode("mojang", "period").getInt();
@@ -100,6 +158,102 @@ public class SkinsConfig {
         return dbPassword;
     }
 
+    public int getSaveInterval() {
+        return saveInterval;
+    }
+
+    public int getSaveBatchSize() {
+        return saveBatchSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public PoolSettings getPoolSettings() {
+        return poolSettings;
+    }
+
+    public int getCacheMaxMemory() {
+        return cacheMaxMemory;
+    }
+
+    public int getCacheExpireAfter() {
+        return cacheExpireAfter;
+    }
+
+    public boolean isSyncEnabled() {
+        return syncEnabled;
+    }
+
+    public int getSyncPeriod() {
+        return syncPeriod;
+    }
+
+    public int getSyncRetention() {
+        return syncRetention;
+    }
+
+    /**
+     * @return Host of the MySQL read replica or empty string if replica is not used
+     */
+    public String getReplicaHost() {
+        return replicaHost;
+    }
+
+    public int getReplicaPort() {
+        return replicaPort;
+    }
+
+    /**
+     * @return Maximum delay of the replication in seconds
+     */
+    public int getReplicaMaxLag() {
+        return replicaMaxLag;
+    }
+
+    public boolean isRetentionEnabled() {
+        return retentionEnabled;
+    }
+
+    /**
+     * @return Time in days after the last join, when player without custom skin is removed
+     */
+    public int getRetentionMaxAge() {
+        return retentionMaxAge;
+    }
+
+    public int getRetentionBatchSize() {
+        return retentionBatchSize;
+    }
+
+    /**
+     * @return Pause in seconds between removed batches
+     */
+    public int getRetentionPause() {
+        return retentionPause;
+    }
+
+    public boolean isRetentionArchive() {
+        return retentionArchive;
+    }
+
+    public boolean isPackTextures() {
+        return packTextures;
+    }
+
+    public Path getDataFolder() {
+        return dataFolder;
+    }
+
+    public boolean isClusterEnabled() {
+        return clusterEnabled;
+    }
+
+    public int getClusterLeaseTime() {
+        return clusterLeaseTime;
+    }
+
     public boolean isRestoreSkins() {
         return restoreSkins;
     }
@@ -108,6 +262,35 @@ public class SkinsConfig {
         return updateDefaultSkin;
     }
 
+    public int getUuidCacheSize() {
+        return uuidCacheSize;
+    }
+
+    /**
+     * @return Time in minutes after which premium UUID is requested again
+     */
+    public int getUuidCacheTtl() {
+        return uuidCacheTtl;
+    }
+
+    /**
+     * @return Time in minutes after which name without premium account is requested again
+     */
+    public int getUuidCacheNegativeTtl() {
+        return uuidCacheNegativeTtl;
+    }
+
+    public int getSkinCacheSize() {
+        return skinCacheSize;
+    }
+
+    /**
+     * @return Time in minutes after which premium skin is requested again
+     */
+    public int getSkinCacheMaxAge() {
+        return skinCacheMaxAge;
+    }
+
     public List<Skin> getDefaultSkins() {
         return defaultSkins;
     }
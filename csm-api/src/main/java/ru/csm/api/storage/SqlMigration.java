@@ -0,0 +1,91 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.utils.FileUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Migration from the SQL script. Every database type has own script in /migrations/{type}/{version}_{name}.sql
+ * Script can contain several statements separated by semicolon
+ */
+public class SqlMigration implements Migration {
+
+    private final int version;
+    private final String name;
+    private final Set<DatabaseType> types;
+
+    public SqlMigration(int version, String name){
+        this(version, name, EnumSet.allOf(DatabaseType.class));
+    }
+
+    /**
+     * @param types Database types which have script of this migration. On other types migration does nothing
+     */
+    public SqlMigration(int version, String name, Set<DatabaseType> types){
+        this.version = version;
+        this.name = name;
+        this.types = types;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return name;
+    }
+
+    @Override
+    public void apply(Connection connection, DatabaseType type) throws SQLException {
+        if (types.contains(type)) executeScript(connection, type, version + "_" + name);
+    }
+
+    /**
+     * Execute migration script of the specified database type
+     * @param connection Connection to the database
+     * @param type Type of the database
+     * @param script Name of the script without extension
+     * @throws SQLException if script not found or some statement failed
+     */
+    public static void executeScript(Connection connection, DatabaseType type, String script) throws SQLException {
+        String path = "/migrations/" + type.getName() + "/" + script + ".sql";
+
+        if (SqlMigration.class.getResource(path) == null){
+            throw new SQLException("Cannot find migration script " + path);
+        }
+
+        String content = FileUtil.readResourceContent(path);
+
+        try (Statement statement = connection.createStatement()){
+            for (String sql : content.split(";")){
+                if (!sql.trim().isEmpty()){
+                    statement.execute(sql.trim());
+                }
+            }
+        }
+    }
+}
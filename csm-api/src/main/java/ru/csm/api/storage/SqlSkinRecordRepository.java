@@ -0,0 +1,645 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinField;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Skin records repository with fixed set of the prepared statements.
+ * Statements are the same for every call, so they are cached by the driver or connection pool.
+ * Saving is done by single dialect specific upsert statement, which updates only changed columns.
+ * SQLite older than 3.24 has no upsert, so there the row is replaced and unchanged columns are copied from it.
+ * Textures are stored once in the textures table by their content hash and resolved through texture cache.
+ * If textures are packed, they are written into the packed textures table. Textures are read from both tables,
+ * so records are available while textures are converted between formats.
+ * Reads use read connection of the database, which may be a replica. Records saved by this server are read
+ * from primary database until replication delay is over, so player never loads own data in the old state
+ */
+public class SqlSkinRecordRepository implements SkinRecordRepository {
+
+    private static final int TEXTURE_CACHE_SIZE = 4096;
+
+    private static final String SELECT_BY_UUID = "SELECT name,default_texture,custom_texture FROM "
+            + Tables.SKINS + " WHERE uuid=?";
+    private static final String SELECT_BY_NAME = "SELECT uuid,name,default_texture,custom_texture FROM "
+            + Tables.SKINS + " WHERE name_lower=?";
+    private static final String SELECT_TEXTURE = "SELECT value,signature FROM " + Tables.TEXTURES + " WHERE id=?";
+    private static final String SELECT_PACKED_TEXTURE = "SELECT value,signature FROM " + Tables.PACKED_TEXTURES + " WHERE id=?";
+    // Time of the last save is written with every record, so saved players are not removed by retention
+    private static final String[] COLUMNS = {"uuid", "name", "name_lower", "default_texture", "custom_texture", "last_seen"};
+    private static final String UPDATE_LAST_SEEN = "UPDATE " + Tables.SKINS + " SET last_seen=? WHERE uuid=?";
+    private static final String RESET_CUSTOM = "UPDATE " + Tables.SKINS + " SET custom_texture=NULL WHERE uuid=?";
+    // Texture id is never empty, so comparison is used instead of IS NOT NULL. H2 cannot use index for IS NOT NULL
+    private static final String SELECT_GALLERY = "SELECT name,custom_texture FROM "
+            + Tables.SKINS + " WHERE custom_texture>'' LIMIT ? OFFSET ?";
+    // Textures are joined to avoid query per record. Ordering by uuid uses unique index, so no sorting is needed
+    private static final String SELECT_ALL = "SELECT s.uuid,s.name,d.value,d.signature,c.value,c.signature,"
+            + "dp.value,dp.signature,cp.value,cp.signature,s.default_texture,s.custom_texture FROM "
+            + Tables.SKINS + " s LEFT JOIN " + Tables.TEXTURES + " d ON d.id=s.default_texture"
+            + " LEFT JOIN " + Tables.TEXTURES + " c ON c.id=s.custom_texture"
+            + " LEFT JOIN " + Tables.PACKED_TEXTURES + " dp ON dp.id=s.default_texture"
+            + " LEFT JOIN " + Tables.PACKED_TEXTURES + " cp ON cp.id=s.custom_texture"
+            + " WHERE s.uuid>? ORDER BY s.uuid";
+    private static final int FETCH_SIZE = 1000;
+    private static final int MAX_RECENT_WRITES = 10000;
+
+    private final Database database;
+    private final ChangeLog changeLog;
+    private final TextureCache textureCache;
+    private final boolean packTextures;
+    private final String insertTexture;
+    private final String[] upserts;
+    private final Map<Object, Long> recentWrites = new ConcurrentHashMap<>();
+
+    public SqlSkinRecordRepository(Database database){
+        this(database, null);
+    }
+
+    /**
+     * @param database Database to store records
+     * @param changeLog Log where changed records are written. Null if other servers do not use the same database
+     */
+    public SqlSkinRecordRepository(Database database, ChangeLog changeLog){
+        this(database, changeLog, false);
+    }
+
+    /**
+     * @param database Database to store records
+     * @param changeLog Log where changed records are written. Null if other servers do not use the same database
+     * @param packTextures true if new textures are written in binary format of {@link PackedTextures}
+     */
+    public SqlSkinRecordRepository(Database database, ChangeLog changeLog, boolean packTextures){
+        this(database, changeLog, packTextures, isUpsertSupported(database));
+    }
+
+    /**
+     * @param upsertSupported false to replace rows instead of upsert on SQLite
+     */
+    SqlSkinRecordRepository(Database database, ChangeLog changeLog, boolean packTextures, boolean upsertSupported){
+        this.database = database;
+        this.changeLog = changeLog;
+        this.textureCache = new TextureCache(TEXTURE_CACHE_SIZE);
+        this.packTextures = packTextures;
+        this.insertTexture = getInsertTexture(database.getType(), packTextures ? Tables.PACKED_TEXTURES : Tables.TEXTURES);
+        this.upserts = new String[1 << SkinField.values().length];
+
+        for (int mask = 1; mask < upserts.length; mask++){
+            upserts[mask] = buildUpsert(database.getType(), mask, upsertSupported);
+        }
+    }
+
+    @Override
+    public SkinRecord loadByUUID(UUID uuid) {
+        try (Connection connection = getReadConnection(uuid);
+             PreparedStatement statement = connection.prepareStatement(SELECT_BY_UUID)){
+            statement.setString(1, uuid.toString());
+
+            String name, defaultId, customId;
+
+            try (ResultSet result = statement.executeQuery()){
+                if (!result.next()) return null;
+
+                name = result.getString(1);
+                defaultId = result.getString(2);
+                customId = result.getString(3);
+            }
+
+            return createRecord(connection, uuid, name, defaultId, customId);
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    @Override
+    public SkinRecord loadByName(String name) {
+        String nameLower = name.toLowerCase(Locale.ROOT);
+
+        try (Connection connection = getReadConnection(nameLower);
+             PreparedStatement statement = connection.prepareStatement(SELECT_BY_NAME)){
+            statement.setString(1, nameLower);
+
+            UUID uuid;
+            String realName, defaultId, customId;
+
+            try (ResultSet result = statement.executeQuery()){
+                if (!result.next()) return null;
+
+                uuid = UUID.fromString(result.getString(1));
+                realName = result.getString(2);
+                defaultId = result.getString(3);
+                customId = result.getString(4);
+            }
+
+            return createRecord(connection, uuid, realName, defaultId, customId);
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    @Override
+    public void save(SkinRecord record) {
+        save(record, EnumSet.allOf(SkinField.class));
+    }
+
+    @Override
+    public void save(SkinRecord record, Set<SkinField> fields) {
+        int mask = toMask(fields);
+        if (mask == 0) return;
+
+        try (Connection connection = database.getConnection()){
+            Map<String, Skin> textures = saveTextures(connection, Collections.singletonList(record));
+
+            try (PreparedStatement statement = connection.prepareStatement(upserts[mask])){
+                setRecord(statement, record);
+                statement.executeUpdate();
+            }
+
+            appendChanges(connection, Collections.singletonList(record.getUUID()));
+            textures.forEach(textureCache::put);
+            markWritten(Collections.singletonList(record));
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+        Map<Integer, List<SkinRecord>> groups = new TreeMap<>();
+
+        for (Map.Entry<SkinRecord, Set<SkinField>> entry : records.entrySet()){
+            int mask = toMask(entry.getValue());
+            if (mask != 0) groups.computeIfAbsent(mask, m -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        if (groups.isEmpty()) return true;
+
+        try (Connection connection = database.getConnection()){
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                Map<String, Skin> textures = new HashMap<>();
+
+                for (List<SkinRecord> group : groups.values()){
+                    textures.putAll(saveTextures(connection, group));
+                }
+
+                for (Map.Entry<Integer, List<SkinRecord>> group : groups.entrySet()){
+                    try (PreparedStatement statement = connection.prepareStatement(upserts[group.getKey()])){
+                        for (SkinRecord record : group.getValue()){
+                            setRecord(statement, record);
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+                    }
+                }
+
+                List<UUID> changed = new ArrayList<>(records.size());
+                for (List<SkinRecord> group : groups.values()){
+                    for (SkinRecord record : group) changed.add(record.getUUID());
+                }
+                appendChanges(connection, changed);
+
+                connection.commit();
+                textures.forEach(textureCache::put);
+                markWritten(records.keySet());
+                return true;
+            } catch (SQLException e){
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    @Override
+    public void resetCustomSkin(UUID uuid) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(RESET_CUSTOM)){
+            statement.setString(1, uuid.toString());
+            statement.executeUpdate();
+            appendChanges(connection, Collections.singletonList(uuid));
+            markWritten(Collections.singletonList(new SkinRecord(uuid, null, null, null, null, null)));
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void updateLastSeen(Collection<UUID> uuids, long time) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(UPDATE_LAST_SEEN)){
+            for (UUID uuid : uuids){
+                statement.setLong(1, time);
+                statement.setString(2, uuid.toString());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_GALLERY)){
+            statement.setInt(1, limit);
+            statement.setInt(2, offset);
+
+            List<String> names = new ArrayList<>(limit);
+            List<String> textureIds = new ArrayList<>(limit);
+
+            try (ResultSet result = statement.executeQuery()){
+                while (result.next()){
+                    names.add(result.getString(1));
+                    textureIds.add(result.getString(2));
+                }
+            }
+
+            List<SkinRecord> records = new ArrayList<>(names.size());
+
+            for (int i = 0; i < names.size(); i++){
+                SkinRecord record = createRecord(connection, null, names.get(i), null, textureIds.get(i));
+                if (record != null) records.add(record);
+            }
+
+            return records;
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) throws SQLException {
+        // Maintenance tasks compare and copy the latest data, so replica is not used
+        try (Connection connection = database.hasReplica() ? database.getConnection() : database.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_ALL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setString(1, after != null ? after.toString() : "");
+
+            try (ResultSet result = statement.executeQuery()){
+                while (result.next()){
+                    Skin defaultSkin = readTexture(result, 3, 7);
+                    Skin customSkin = readTexture(result, 5, 9);
+
+                    if (isMissing(defaultSkin, result.getString(11)) || isMissing(customSkin, result.getString(12))){
+                        logMissingTexture(result.getString(1), result.getString(2));
+                        continue;
+                    }
+
+                    consumer.accept(new SkinRecord(UUID.fromString(result.getString(1)), result.getString(2),
+                            defaultSkin != null ? defaultSkin.getValue() : null,
+                            defaultSkin != null ? defaultSkin.getSignature() : null,
+                            customSkin != null ? customSkin.getValue() : null,
+                            customSkin != null ? customSkin.getSignature() : null));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get connection for reading of the record by UUID or lower case name.
+     * Primary database is used if the record was saved recently and replica may not have it yet
+     */
+    private Connection getReadConnection(Object key) throws SQLException {
+        long lag = database.getReplicaLag();
+
+        if (lag > 0){
+            Long time = recentWrites.get(key);
+
+            if (time != null){
+                if (System.currentTimeMillis() - time < lag) return database.getConnection();
+                recentWrites.remove(key, time);
+            }
+        }
+
+        return database.getReadConnection();
+    }
+
+    private void markWritten(Collection<SkinRecord> records){
+        long lag = database.getReplicaLag();
+        if (lag <= 0) return;
+
+        long now = System.currentTimeMillis();
+
+        if (recentWrites.size() > MAX_RECENT_WRITES){
+            recentWrites.values().removeIf(time -> now - time >= lag);
+        }
+
+        for (SkinRecord record : records){
+            recentWrites.put(record.getUUID(), now);
+            if (record.getName() != null) recentWrites.put(record.getName().toLowerCase(Locale.ROOT), now);
+        }
+    }
+
+    /**
+     * Create record with textures by their ids
+     * @return Created record, or null if some of its textures does not exist anymore.
+     * Such record is handled as not stored, so the skin is fetched and saved again
+     */
+    private SkinRecord createRecord(Connection connection, UUID uuid, String name,
+                                    String defaultId, String customId) throws SQLException {
+        Skin defaultSkin = getTexture(connection, defaultId);
+        Skin customSkin = getTexture(connection, customId);
+
+        if (isMissing(defaultSkin, defaultId) || isMissing(customSkin, customId)){
+            logMissingTexture(uuid, name);
+            return null;
+        }
+
+        return new SkinRecord(uuid, name,
+                defaultSkin != null ? defaultSkin.getValue() : null,
+                defaultSkin != null ? defaultSkin.getSignature() : null,
+                customSkin != null ? customSkin.getValue() : null,
+                customSkin != null ? customSkin.getSignature() : null);
+    }
+
+    private Skin getTexture(Connection connection, String id) throws SQLException {
+        if (id == null) return null;
+
+        Skin texture = textureCache.get(id);
+        if (texture != null) return texture;
+
+        // Texture is searched in other format only if it is not converted yet
+        texture = selectTexture(connection, id, packTextures);
+        if (texture == null) texture = selectTexture(connection, id, !packTextures);
+        if (texture != null) textureCache.put(id, texture);
+
+        return texture;
+    }
+
+    private static Skin selectTexture(Connection connection, String id, boolean packed) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(packed ? SELECT_PACKED_TEXTURE : SELECT_TEXTURE)){
+            statement.setString(1, id);
+
+            try (ResultSet result = statement.executeQuery()){
+                if (!result.next()) return null;
+
+                if (packed){
+                    return new Skin(PackedTextures.unpackValue(result.getBytes(1)),
+                            PackedTextures.unpackSignature(result.getBytes(2)));
+                }
+
+                return new Skin(result.getString(1), result.getString(2));
+            }
+        }
+    }
+
+    /**
+     * @return true if record refers to the texture, which was not found in textures tables
+     */
+    private static boolean isMissing(Skin texture, String id){
+        return texture == null && id != null;
+    }
+
+    private static void logMissingTexture(Object uuid, String name){
+        Logger.warning("Skin record of %s (%s) refers to missing texture. It will be loaded again", name, uuid);
+    }
+
+    /**
+     * Read texture from the joined columns of text and packed textures tables
+     */
+    private static Skin readTexture(ResultSet result, int textColumn, int packedColumn) throws SQLException {
+        String value = result.getString(textColumn);
+        if (value != null) return new Skin(value, result.getString(textColumn + 1));
+
+        byte[] packed = result.getBytes(packedColumn);
+        if (packed == null) return null;
+
+        return new Skin(PackedTextures.unpackValue(packed), PackedTextures.unpackSignature(result.getBytes(packedColumn + 1)));
+    }
+
+    /**
+     * Insert textures of the records, which are not known as stored
+     * @return Inserted textures by their ids. They should be cached after commit
+     */
+    private Map<String, Skin> saveTextures(Connection connection, Collection<SkinRecord> records) throws SQLException {
+        Map<String, Skin> textures = new LinkedHashMap<>();
+
+        for (SkinRecord record : records){
+            addTexture(textures, record.getDefaultValue(), record.getDefaultSignature());
+            addTexture(textures, record.getCustomValue(), record.getCustomSignature());
+        }
+
+        if (textures.isEmpty()) return textures;
+
+        try (PreparedStatement statement = connection.prepareStatement(insertTexture)){
+            for (Map.Entry<String, Skin> entry : textures.entrySet()){
+                statement.setString(1, entry.getKey());
+
+                if (packTextures){
+                    statement.setBytes(2, PackedTextures.packValue(entry.getValue().getValue()));
+                    statement.setBytes(3, PackedTextures.packSignature(entry.getValue().getSignature()));
+                } else {
+                    statement.setString(2, entry.getValue().getValue());
+                    statement.setString(3, entry.getValue().getSignature());
+                }
+
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+
+        return textures;
+    }
+
+    private void appendChanges(Connection connection, Collection<UUID> uuids) throws SQLException {
+        if (changeLog != null) changeLog.append(connection, uuids);
+    }
+
+    private void addTexture(Map<String, Skin> textures, String value, String signature){
+        String id = TextureCache.getId(value, signature);
+
+        if (id != null && !textureCache.contains(id)){
+            textures.put(id, new Skin(value, signature));
+        }
+    }
+
+    private void setRecord(PreparedStatement statement, SkinRecord record) throws SQLException {
+        statement.setString(1, record.getUUID().toString());
+        statement.setString(2, record.getName());
+        statement.setString(3, record.getName() != null ? record.getName().toLowerCase(Locale.ROOT) : null);
+        statement.setString(4, TextureCache.getId(record.getDefaultValue(), record.getDefaultSignature()));
+        statement.setString(5, TextureCache.getId(record.getCustomValue(), record.getCustomSignature()));
+        statement.setLong(6, System.currentTimeMillis());
+    }
+
+    private static int toMask(Set<SkinField> fields){
+        int mask = 0;
+        for (SkinField field : fields){
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * @return Names of the columns, which stores specified fields
+     */
+    private static List<String> getColumns(int mask){
+        List<String> columns = new ArrayList<>();
+
+        if ((mask & (1 << SkinField.NAME.ordinal())) != 0){
+            columns.add("name");
+            columns.add("name_lower");
+        }
+
+        if ((mask & (1 << SkinField.DEFAULT_SKIN.ordinal())) != 0){
+            columns.add("default_texture");
+        }
+
+        if ((mask & (1 << SkinField.CUSTOM_SKIN.ordinal())) != 0){
+            columns.add("custom_texture");
+        }
+
+        columns.add("last_seen");
+        return columns;
+    }
+
+    /**
+     * Build statement which inserts texture if texture with the same id not exists
+     */
+    static String getInsertTexture(DatabaseType type){
+        return getInsertTexture(type, Tables.TEXTURES);
+    }
+
+    static String getInsertTexture(DatabaseType type, String table){
+        switch (type){
+            case MYSQL:
+                return "INSERT IGNORE INTO " + table + " (id,value,signature) VALUES (?,?,?)";
+            case SQLITE:
+                return "INSERT OR IGNORE INTO " + table + " (id,value,signature) VALUES (?,?,?)";
+            case H2:
+                return "MERGE INTO " + table + " (id,value,signature) KEY(id) VALUES (?,?,?)";
+            default:
+                throw new IllegalArgumentException("Unsupported database type: " + type);
+        }
+    }
+
+    /**
+     * @return false if database is SQLite older than 3.24, which has no ON CONFLICT DO UPDATE
+     */
+    private static boolean isUpsertSupported(Database database){
+        if (database.getType() != DatabaseType.SQLITE) return true;
+
+        try (Connection connection = database.getReadConnection()){
+            String[] version = connection.getMetaData().getDatabaseProductVersion().split("\\.");
+            int major = Integer.parseInt(version[0]);
+            int minor = Integer.parseInt(version[1]);
+            return major > 3 || (major == 3 && minor >= 24);
+        } catch (SQLException | RuntimeException e){
+            // Replacing works on every version
+            return false;
+        }
+    }
+
+    /**
+     * Build statement which inserts all columns of the new record,
+     * or updates only specified columns if record with the same UUID exists
+     */
+    private static String buildUpsert(DatabaseType type, int mask, boolean upsertSupported){
+        String columns = String.join(",", COLUMNS);
+        String params = String.join(",", Collections.nCopies(COLUMNS.length, "?"));
+        StringJoiner updates = new StringJoiner(",");
+
+        if (type == DatabaseType.SQLITE && !upsertSupported){
+            return buildReplace(mask);
+        }
+
+        switch (type){
+            case MYSQL:
+                for (String column : getColumns(mask)){
+                    updates.add(column + "=VALUES(" + column + ")");
+                }
+                return "INSERT INTO " + Tables.SKINS + " (" + columns + ") VALUES (" + params + ")"
+                        + " ON DUPLICATE KEY UPDATE " + updates;
+            case SQLITE:
+                for (String column : getColumns(mask)){
+                    updates.add(column + "=excluded." + column);
+                }
+                return "INSERT INTO " + Tables.SKINS + " (" + columns + ") VALUES (" + params + ")"
+                        + " ON CONFLICT(uuid) DO UPDATE SET " + updates;
+            case H2:
+                StringJoiner source = new StringJoiner(",");
+                StringJoiner values = new StringJoiner(",");
+
+                for (String column : COLUMNS){
+                    source.add("CAST(? AS " + (column.equals("last_seen") ? "BIGINT" : "VARCHAR") + ") " + column);
+                    values.add("s." + column);
+                }
+
+                for (String column : getColumns(mask)){
+                    updates.add(column + "=s." + column);
+                }
+
+                return "MERGE INTO " + Tables.SKINS + " t USING (SELECT " + source + ") s ON t.uuid=s.uuid"
+                        + " WHEN MATCHED THEN UPDATE SET " + updates
+                        + " WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + values + ")";
+            default:
+                throw new IllegalArgumentException("Unsupported database type: " + type);
+        }
+    }
+
+    /**
+     * Build SQLite statement which replaces the row. Values of not specified columns and row id are selected
+     * from the existing row. Numbered parameters are used, so parameters are the same as in upsert
+     */
+    private static String buildReplace(int mask){
+        List<String> changed = getColumns(mask);
+        String existing = " FROM " + Tables.SKINS + " WHERE uuid=?1)";
+        StringJoiner values = new StringJoiner(",");
+
+        values.add("(SELECT id" + existing);
+
+        for (int i = 0; i < COLUMNS.length; i++){
+            String param = "?" + (i + 1);
+
+            if (i == 0 || changed.contains(COLUMNS[i])){
+                values.add(param);
+            } else {
+                values.add("CASE WHEN EXISTS(SELECT 1" + existing + " THEN (SELECT " + COLUMNS[i] + existing
+                        + " ELSE " + param + " END");
+            }
+        }
+
+        return "INSERT OR REPLACE INTO " + Tables.SKINS + " (id," + String.join(",", COLUMNS) + ") VALUES (" + values + ")";
+    }
+}
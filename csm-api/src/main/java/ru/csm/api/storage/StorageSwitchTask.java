@@ -0,0 +1,166 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.services.SkinsAPI;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Task of the storage switch command. Moves the live storage to another database type without downtime.
+ * All writes go to both databases while existing records are copied with limited speed.
+ * After the copy is verified, reads are switched to the new database.
+ * Must be run asynchronously
+ */
+public class StorageSwitchTask implements Runnable {
+
+    public static final int DEFAULT_RATE = 1000;
+
+    private static final int BATCH_SIZE = 500;
+    private static final int VERIFY_ATTEMPTS = 3;
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+    private final SkinsAPI<?> api;
+    private final SkinsConfig conf;
+    private final String to;
+    private final int rate;
+    private final Consumer<String> output;
+
+    /**
+     * @param to Type of the new storage
+     * @param rate Maximum amount of copied records per second
+     * @param output Receiver of the progress messages
+     */
+    public StorageSwitchTask(SkinsAPI<?> api, SkinsConfig conf, String to,
+                             int rate, Consumer<String> output){
+        this.api = api;
+        this.conf = conf;
+        this.to = to;
+        this.rate = rate;
+        this.output = output;
+    }
+
+    @Override
+    public void run() {
+        SwitchableSkinRecordRepository repository = api.getSwitchableRepository();
+
+        if (to.equalsIgnoreCase(conf.getDbType())){
+            output.accept("Storage already uses " + to);
+            return;
+        }
+
+        if (repository.isMirroring()){
+            output.accept("Storage is already switched. Restart the server to finish previous switch");
+            return;
+        }
+
+        if (!RUNNING.compareAndSet(false, true)){
+            output.accept("Storage switch is already running");
+            return;
+        }
+
+        SkinRecordRepository target = null;
+        boolean switched = false;
+
+        try {
+            target = Storages.open(conf, to, repository.getChangeLog());
+
+            // Records waiting in buffer are written to both storages after the mirror is set
+            repository.startMirror(target);
+            output.accept(String.format("Writes go to %s and %s. Copying existing records at %d records/s",
+                    conf.getDbType(), to, rate));
+
+            StorageTransfer transfer = new StorageTransfer(BATCH_SIZE, null,
+                    (records, elapsed) -> output.accept(String.format("Copied %d records in %d s",
+                            records, elapsed / 1000)));
+            transfer.setRateLimit(rate);
+            transfer.copy(repository.getCurrent(), repository.getCopyTarget());
+
+            if (!verify(repository)){
+                output.accept("Switch failed: records in " + to + " differ from " + conf.getDbType()
+                        + ". Reads are not switched");
+                return;
+            }
+
+            repository.cutover();
+            api.getRecordCache().invalidateAll();
+            switched = true;
+
+            output.accept(String.format("Reads are switched to %s. Set database type to '%s' in config " +
+                    "and restart the server to finish the switch", to, to));
+        } catch (SQLException | IOException e){
+            output.accept("Switch failed: " + e.getMessage() + ". Reads are not switched");
+            e.printStackTrace();
+        } finally {
+            if (!switched){
+                repository.stopMirror();
+                if (target != null) target.close();
+            }
+
+            RUNNING.set(false);
+        }
+    }
+
+    private boolean verify(SwitchableSkinRecordRepository repository) throws SQLException {
+        for (int i = 0; i < VERIFY_ATTEMPTS; i++){
+            if (repository.isMirrorFailed()) return false;
+
+            // Records may be changed during calculation, so check is repeated if checksums differ
+            byte[] source = checksum(repository.getCurrent());
+            byte[] target = checksum(repository.getCopyTarget());
+
+            if (Arrays.equals(source, target)) return true;
+        }
+
+        return false;
+    }
+
+    private static byte[] checksum(SkinRecordRepository repository) throws SQLException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+
+        repository.forEachRecord(null, record -> {
+            update(digest, record.getUUID().toString());
+            update(digest, record.getName());
+            update(digest, record.getDefaultValue());
+            update(digest, record.getDefaultSignature());
+            update(digest, record.getCustomValue());
+            update(digest, record.getCustomSignature());
+        });
+
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String value){
+        if (value != null) digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.SkinPlayer;
+import ru.csm.api.services.SkinsAPI;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Periodic task which applies changes made by other servers with the same database.
+ * Changed records are removed from the cache, and online players get actual skin
+ */
+public class StorageSync implements Runnable {
+
+    // Old entries are removed once per this number of polls
+    private static final int CLEANUP_POLLS = 500;
+
+    private final SkinsAPI<?> api;
+    private final ChangeLog changeLog;
+    private final long retention;
+
+    private int polls;
+
+    public StorageSync(SkinsAPI<?> api, ChangeLog changeLog, long retention){
+        this.api = api;
+        this.changeLog = changeLog;
+        this.retention = retention;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Set<UUID> changed = changeLog.poll();
+
+            if (!changed.isEmpty()){
+                api.getRecordCache().invalidateGallery();
+            }
+
+            for (UUID uuid : changed){
+                api.getRecordCache().invalidate(uuid);
+
+                SkinPlayer player = api.getPlayer(uuid);
+
+                if (player != null){
+                    SkinRecord record = api.getSkinRepository().loadByUUID(uuid);
+                    if (record != null) api.updatePlayer(player, record);
+                }
+            }
+
+            if (++polls % CLEANUP_POLLS == 0){
+                changeLog.cleanup(retention);
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.JULHandler;
+import ru.csm.api.logging.Logger;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Offline tool to transfer skins between storages while server is stopped.
+ * JDBC drivers and Gson must be added to the classpath
+ */
+public final class StorageTool {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private StorageTool(){}
+
+    public static void main(String[] args) {
+        if (args.length != 2){
+            System.out.println("Usage: java -cp <classpath> " + StorageTool.class.getName() + " <from> <to>");
+            System.out.println("Storages:");
+            System.out.println("  h2:<path to database file without extension>");
+            System.out.println("  sqlite:<path to .db file>");
+            System.out.println("  mysql://<user>:<password>@<host>:<port>/<database>");
+            System.out.println("  <path to backup file>" + StorageTransfer.BACKUP_EXTENSION);
+            System.exit(1);
+            return;
+        }
+
+        Logger.set(new JULHandler(java.util.logging.Logger.getLogger("CustomSkinsManager")));
+
+        String from = args[0];
+        String to = args[1];
+        Database source = null;
+        Database target = null;
+
+        try {
+            StorageTransfer transfer = new StorageTransfer(BATCH_SIZE,
+                    StorageTransfer.getCheckpointFile(Paths.get("."), from, to),
+                    (records, elapsed) -> System.out.printf("Transferred %d records in %d s%n",
+                            records, elapsed / 1000));
+
+            long count;
+
+            if (StorageTransfer.isBackupFile(from)){
+                target = openDatabase(to);
+                count = transfer.restore(Paths.get(from), new SqlSkinRecordRepository(target));
+            } else if (StorageTransfer.isBackupFile(to)){
+                source = openDatabase(from);
+                count = transfer.backup(new SqlSkinRecordRepository(source), Paths.get(to));
+            } else {
+                source = openDatabase(from);
+                target = openDatabase(to);
+                count = transfer.copy(new SqlSkinRecordRepository(source), new SqlSkinRecordRepository(target));
+            }
+
+            System.out.printf("Transfer completed. Total records: %d%n", count);
+        } catch (Exception e){
+            System.err.println("Transfer failed: " + e.getMessage() + ". Run the same command again to continue");
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            if (source != null) source.closeConnection();
+            if (target != null) target.closeConnection();
+        }
+    }
+
+    private static Database openDatabase(String storage) throws SQLException {
+        PoolSettings settings = new PoolSettings(2, 30000, 0, null, 0);
+        Database database;
+
+        if (storage.startsWith("h2:")){
+            database = new H2Database(Paths.get(storage.substring(3)).toAbsolutePath(),
+                    "user", "password", settings);
+        } else if (storage.startsWith("sqlite:")){
+            Path file = Paths.get(storage.substring(7)).toAbsolutePath();
+            String name = file.getFileName().toString().replaceFirst("\\.db$", "");
+            database = new SQLiteDatabase(file.getParent().toString(), name, "", "", settings);
+        } else if (storage.startsWith("mysql:")){
+            URI uri = URI.create(storage);
+            String[] credentials = uri.getUserInfo() != null ? uri.getUserInfo().split(":", 2) : new String[]{"root"};
+            database = new MySQLDatabase(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 3306,
+                    uri.getPath().substring(1), credentials[0],
+                    credentials.length > 1 ? credentials[1] : "", settings);
+        } else {
+            throw new SQLException("Unknown storage: " + storage);
+        }
+
+        new MigrationRunner(database, Migrations.list()).migrate();
+        return database;
+    }
+}
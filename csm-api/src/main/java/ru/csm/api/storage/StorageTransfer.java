@@ -0,0 +1,345 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import ru.csm.api.player.SkinField;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies skin records between storages in batches without loading them into memory.
+ * Supported storages are SQL repositories and compressed NDJSON backup files.
+ * Progress of the copying between repositories and of the restoring is saved
+ * to checkpoint file after each batch, so interrupted transfer continues from the last batch
+ */
+public class StorageTransfer {
+
+    public static final String BACKUP_EXTENSION = ".ndjson.gz";
+
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private final int batchSize;
+    private final Path checkpoint;
+    private final Progress progress;
+
+    private int rateLimit;
+    private long started;
+    private long lastReport;
+    private long written;
+
+    /**
+     * @param batchSize Amount of records written in one transaction
+     * @param checkpoint File to save progress, or null if transfer cannot be continued. Removed after successful transfer
+     * @param progress Listener of the transfer progress
+     */
+    public StorageTransfer(int batchSize, Path checkpoint, Progress progress){
+        this.batchSize = batchSize;
+        this.checkpoint = checkpoint;
+        this.progress = progress;
+    }
+
+    /**
+     * Limit speed of writing, so transfer does not slow down other queries to the same storage
+     * @param recordsPerSecond Maximum amount of records written per second, or 0 for no limit
+     */
+    public void setRateLimit(int recordsPerSecond){
+        this.rateLimit = recordsPerSecond;
+    }
+
+    /**
+     * Copy all records from one repository to another
+     * @return Amount of copied records including records copied before interruption
+     */
+    public long copy(SkinRecordRepository from, SkinRecordRepository to) throws SQLException, IOException {
+        String saved = readCheckpoint();
+        UUID after = null;
+        long copied = 0;
+
+        if (saved != null){
+            String[] parts = saved.split(" ");
+            copied = Long.parseLong(parts[0]);
+            after = UUID.fromString(parts[1]);
+        }
+
+        Batch batch = new Batch(copied);
+        start();
+
+        try {
+            from.forEachRecord(after, record -> {
+                batch.add(record);
+
+                if (batch.isFull()){
+                    writeBatch(to, batch);
+                    saveCheckpoint(batch.getCount() + " " + record.getUUID());
+                }
+            });
+        } catch (TransferException e){
+            throw e.rethrow();
+        }
+
+        writeBatch(to, batch);
+        finish(batch.getCount());
+        return batch.getCount();
+    }
+
+    /**
+     * Write all records of the repository into compressed NDJSON file.
+     * Backup is always created from the beginning
+     * @return Amount of written records
+     */
+    public long backup(SkinRecordRepository from, Path file) throws SQLException, IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".part");
+        long[] count = {0};
+
+        start();
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))){
+            from.forEachRecord(null, record -> {
+                try {
+                    writer.write(toJson(record).toString());
+                    writer.write('\n');
+                } catch (IOException e){
+                    throw new TransferException(e);
+                }
+
+                if (++count[0] % batchSize == 0) report(count[0]);
+            });
+        } catch (TransferException e){
+            throw e.rethrow();
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        finish(count[0]);
+        return count[0];
+    }
+
+    /**
+     * Save all records from compressed NDJSON file into repository
+     * @return Amount of restored records including records restored before interruption
+     */
+    public long restore(Path file, SkinRecordRepository to) throws SQLException, IOException {
+        String saved = readCheckpoint();
+        long skip = saved != null ? Long.parseLong(saved) : 0;
+        Batch batch = new Batch(skip);
+
+        start();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))){
+            JsonParser parser = new JsonParser();
+            String line;
+            long lineNumber = 0;
+
+            while ((line = reader.readLine()) != null){
+                if (line.isEmpty() || ++lineNumber <= skip) continue;
+
+                batch.add(fromJson(parser.parse(line).getAsJsonObject()));
+
+                if (batch.isFull()){
+                    writeBatch(to, batch);
+                    saveCheckpoint(String.valueOf(batch.getCount()));
+                }
+            }
+        } catch (TransferException e){
+            throw e.rethrow();
+        }
+
+        writeBatch(to, batch);
+        finish(batch.getCount());
+        return batch.getCount();
+    }
+
+    /**
+     * Get checkpoint file for transfer between two storages
+     * @param folder Folder where checkpoint is stored
+     * @param from Description of the source storage
+     * @param to Description of the target storage
+     */
+    public static Path getCheckpointFile(Path folder, String from, String to){
+        return folder.resolve("transfer-" + Integer.toHexString((from + " " + to).hashCode()) + ".checkpoint");
+    }
+
+    public static boolean isBackupFile(String name){
+        return name.toLowerCase(Locale.ROOT).endsWith(BACKUP_EXTENSION);
+    }
+
+    private void writeBatch(SkinRecordRepository to, Batch batch){
+        if (batch.isEmpty()) return;
+
+        if (!to.saveAll(batch.getRecords())){
+            throw new TransferException(new SQLException("Cannot write batch after " + batch.getCount() + " records"));
+        }
+
+        written += batch.getRecords().size();
+        batch.clear();
+        report(batch.getCount());
+        throttle();
+    }
+
+    private void throttle(){
+        if (rateLimit <= 0) return;
+
+        long delay = written * 1000 / rateLimit - (System.currentTimeMillis() - started);
+
+        if (delay > 0){
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new TransferException(new IOException("Transfer interrupted"));
+            }
+        }
+    }
+
+    private void start(){
+        started = System.currentTimeMillis();
+        lastReport = started;
+        written = 0;
+    }
+
+    private void report(long count){
+        long now = System.currentTimeMillis();
+
+        if (now - lastReport >= PROGRESS_INTERVAL){
+            lastReport = now;
+            progress.update(count, now - started);
+        }
+    }
+
+    private void finish(long count) throws IOException {
+        progress.update(count, System.currentTimeMillis() - started);
+        if (checkpoint != null) Files.deleteIfExists(checkpoint);
+    }
+
+    private String readCheckpoint() throws IOException {
+        if (checkpoint == null || !Files.exists(checkpoint)) return null;
+
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        return lines.isEmpty() ? null : lines.get(0);
+    }
+
+    private void saveCheckpoint(String value){
+        if (checkpoint == null) return;
+
+        try {
+            Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            Files.write(temp, Collections.singletonList(value), StandardCharsets.UTF_8);
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e){
+            throw new TransferException(e);
+        }
+    }
+
+    private static JsonObject toJson(SkinRecord record){
+        JsonObject json = new JsonObject();
+        json.addProperty("uuid", record.getUUID().toString());
+        json.addProperty("name", record.getName());
+        json.addProperty("defaultValue", record.getDefaultValue());
+        json.addProperty("defaultSignature", record.getDefaultSignature());
+        json.addProperty("customValue", record.getCustomValue());
+        json.addProperty("customSignature", record.getCustomSignature());
+        return json;
+    }
+
+    private static SkinRecord fromJson(JsonObject json){
+        return new SkinRecord(UUID.fromString(json.get("uuid").getAsString()),
+                getString(json, "name"),
+                getString(json, "defaultValue"),
+                getString(json, "defaultSignature"),
+                getString(json, "customValue"),
+                getString(json, "customSignature"));
+    }
+
+    private static String getString(JsonObject json, String key){
+        return json.has(key) && !json.get(key).isJsonNull() ? json.get(key).getAsString() : null;
+    }
+
+    /**
+     * Listener of the transfer progress. Called periodically and once after transfer is finished
+     */
+    @FunctionalInterface
+    public interface Progress {
+
+        void update(long records, long elapsedMillis);
+
+    }
+
+    private class Batch {
+
+        private final Map<SkinRecord, Set<SkinField>> records = new LinkedHashMap<>();
+        private long count;
+
+        Batch(long count){
+            this.count = count;
+        }
+
+        void add(SkinRecord record){
+            records.put(record, EnumSet.allOf(SkinField.class));
+            count++;
+        }
+
+        boolean isFull(){
+            return records.size() >= batchSize;
+        }
+
+        boolean isEmpty(){
+            return records.isEmpty();
+        }
+
+        void clear(){
+            records.clear();
+        }
+
+        long getCount(){
+            return count;
+        }
+
+        Map<SkinRecord, Set<SkinField>> getRecords(){
+            return records;
+        }
+    }
+
+    /**
+     * Carries checked exception out of the record consumer
+     */
+    private static class TransferException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TransferException(Exception cause){
+            super(cause);
+        }
+
+        IOException rethrow() throws SQLException {
+            if (getCause() instanceof SQLException) throw (SQLException) getCause();
+            return (IOException) getCause();
+        }
+    }
+}
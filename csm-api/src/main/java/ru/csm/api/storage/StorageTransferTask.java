@@ -0,0 +1,139 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.services.SkinsAPI;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Task of the storage migrate command. Transfers records between database types configured
+ * in the plugin config or backup files in the plugin folder. Must be run asynchronously
+ */
+public class StorageTransferTask implements Runnable {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+    private final SkinsAPI<?> api;
+    private final SkinsConfig conf;
+    private final Path dataFolder;
+    private final String from;
+    private final String to;
+    private final Consumer<String> output;
+
+    /**
+     * @param from Database type or backup file name
+     * @param to Database type or backup file name
+     * @param output Receiver of the progress messages
+     */
+    public StorageTransferTask(SkinsAPI<?> api, SkinsConfig conf, Path dataFolder,
+                               String from, String to, Consumer<String> output){
+        this.api = api;
+        this.conf = conf;
+        this.dataFolder = dataFolder;
+        this.from = from;
+        this.to = to;
+        this.output = output;
+    }
+
+    @Override
+    public void run() {
+        if (from.equalsIgnoreCase(to)){
+            output.accept("Source and target storages must be different");
+            return;
+        }
+
+        if (StorageTransfer.isBackupFile(from) && StorageTransfer.isBackupFile(to)){
+            output.accept("Cannot transfer from one backup file to another");
+            return;
+        }
+
+        if (api.getSwitchableRepository().isMirroring()){
+            output.accept("Storage is switched. Restart the server to finish the switch before transfer");
+            return;
+        }
+
+        if (!RUNNING.compareAndSet(false, true)){
+            output.accept("Storage transfer is already running");
+            return;
+        }
+
+        SkinRecordRepository source = null;
+        SkinRecordRepository target = null;
+
+        try {
+            // Live storage must contain all changes before it is copied
+            api.getSaveBuffer().flush();
+
+            StorageTransfer transfer = new StorageTransfer(BATCH_SIZE,
+                    StorageTransfer.getCheckpointFile(dataFolder, from, to),
+                    (records, elapsed) -> output.accept(String.format("Transferred %d records in %d s",
+                            records, elapsed / 1000)));
+
+            output.accept(String.format("Starting transfer from %s to %s", from, to));
+
+            long count;
+
+            if (StorageTransfer.isBackupFile(from)){
+                target = openStorage(to);
+                count = transfer.restore(dataFolder.resolve(from), target);
+            } else if (StorageTransfer.isBackupFile(to)){
+                source = openStorage(from);
+                count = transfer.backup(source, dataFolder.resolve(to));
+            } else {
+                source = openStorage(from);
+                target = openStorage(to);
+                count = transfer.copy(source, target);
+            }
+
+            output.accept(String.format("Transfer completed. Total records: %d", count));
+        } catch (SQLException | IOException e){
+            output.accept("Transfer failed: " + e.getMessage() + ". Run the same command again to continue");
+            e.printStackTrace();
+        } finally {
+            closeStorage(source);
+            closeStorage(target);
+            RUNNING.set(false);
+        }
+    }
+
+    private boolean isLive(SkinRecordRepository repository){
+        return repository == api.getSkinRepository();
+    }
+
+    private SkinRecordRepository openStorage(String type) throws SQLException, IOException {
+        if (type.equalsIgnoreCase(conf.getDbType())){
+            // Writes to live storage go through the cache and the change log, so all servers see them
+            return api.getSkinRepository();
+        }
+
+        return Storages.open(conf, type);
+    }
+
+    private void closeStorage(SkinRecordRepository repository){
+        if (repository != null && !isLive(repository)){
+            repository.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Opens storages by type from the database.type option of the plugin config
+ */
+public final class Storages {
+
+    public static final String MEMORY = "memory";
+    public static final String NATIVE = "native";
+
+    private Storages(){}
+
+    /**
+     * @return true if storage of this type is SQL database, which is opened as {@link Database}
+     */
+    public static boolean isSql(String type){
+        return !MEMORY.equalsIgnoreCase(type) && !NATIVE.equalsIgnoreCase(type);
+    }
+
+    /**
+     * Create repository of the storage used by the server
+     * @param database Opened database, or null if configured storage is not SQL database
+     * @param changeLog Log of the changes for other servers, or null if synchronization is disabled
+     */
+    public static SkinRecordRepository create(SkinsConfig conf, Database database, ChangeLog changeLog) throws IOException {
+        if (database != null) return new SqlSkinRecordRepository(database, changeLog, conf.isPackTextures());
+        return openRepository(conf.getDataFolder(), conf.getDbType());
+    }
+
+    /**
+     * Open storage of the specified type, which is not used by the server now.
+     * Closing of the returned repository also closes its database
+     */
+    public static SkinRecordRepository open(SkinsConfig conf, String type) throws SQLException, IOException {
+        return open(conf, type, null);
+    }
+
+    /**
+     * Open storage of the specified type, which is not used by the server now.
+     * Closing of the returned repository also closes its database
+     * @param changeLog Log of the changes for other servers, or null if synchronization is disabled.
+     *                  Needed if the server will use this storage without restart
+     */
+    public static SkinRecordRepository open(SkinsConfig conf, String type, ChangeLog changeLog) throws SQLException, IOException {
+        if (!isSql(type)) return openRepository(conf.getDataFolder(), type);
+
+        Database database = openDatabase(conf, conf.getDataFolder(), type);
+
+        return new SqlSkinRecordRepository(database, changeLog, conf.isPackTextures()){
+            @Override
+            public void close() {
+                database.closeConnection();
+            }
+        };
+    }
+
+    /**
+     * Open and migrate database of the specified type with connection settings from the plugin config
+     */
+    public static Database openDatabase(SkinsConfig conf, Path dataFolder, String type) throws SQLException {
+        Database database;
+
+        switch (type.toLowerCase()){
+            case "h2":
+                database = new H2Database(dataFolder.resolve("skins"),
+                        conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings());
+                break;
+            case "sqlite":
+                database = new SQLiteDatabase(dataFolder.toString(), conf.getDbName(),
+                        conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings());
+                break;
+            case "mysql":
+                database = new MySQLDatabase(conf.getDbHost(), conf.getDbPort(), conf.getDbName(),
+                        conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings(),
+                        conf.getReplicaHost(), conf.getReplicaPort(), conf.getReplicaMaxLag() * 1000L);
+                break;
+            default:
+                throw new SQLException("Undefined database type: " + type);
+        }
+
+        new MigrationRunner(database, Migrations.list()).migrate();
+        return database;
+    }
+
+    private static SkinRecordRepository openRepository(Path dataFolder, String type) throws IOException {
+        if (MEMORY.equalsIgnoreCase(type)){
+            return new MemorySkinRecordRepository(dataFolder.resolve("memory"));
+        }
+
+        if (NATIVE.equalsIgnoreCase(type)){
+            return new NativeSkinRecordRepository(dataFolder.resolve("native"));
+        }
+
+        throw new IOException("Undefined storage type: " + type);
+    }
+}
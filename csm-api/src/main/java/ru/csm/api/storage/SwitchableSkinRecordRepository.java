@@ -0,0 +1,258 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.SkinField;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Repository which allows to change storage without stopping the server.
+ * While the mirror is set, all writes are applied to both current and mirror repositories,
+ * and existing records are copied to the mirror through {@link #getCopyTarget()}.
+ * After cutover the mirror becomes current repository, and old one receives writes until restart
+ */
+public class SwitchableSkinRecordRepository implements SkinRecordRepository {
+
+    private final Object lock = new Object();
+    // UUIDs written to the mirror by live writes. Copied versions of these records are copied
+    private final Set<UUID> mirrored = ConcurrentHashMap.newKeySet();
+    private final CopyTarget copyTarget = new CopyTarget();
+    private final ChangeLog changeLog;
+
+    private volatile SkinRecordRepository current;
+    private volatile SkinRecordRepository mirror;
+    private volatile boolean mirrorFailed;
+
+    /**
+     * @param changeLog Log of the changes for other servers, or null if synchronization is disabled
+     */
+    public SwitchableSkinRecordRepository(SkinRecordRepository current, ChangeLog changeLog){
+        this.current = current;
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * @return Log of the changes used by current storage, which should be used by the new storage too
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    public SkinRecordRepository getCurrent() {
+        return current;
+    }
+
+    public boolean isMirroring(){
+        return mirror != null;
+    }
+
+    /**
+     * @return true if some write to the mirror was not saved, so the mirror may have different data
+     */
+    public boolean isMirrorFailed() {
+        return mirrorFailed;
+    }
+
+    /**
+     * Start writing all changes to the second repository
+     */
+    public void startMirror(SkinRecordRepository repository){
+        synchronized (lock){
+            mirrored.clear();
+            mirrorFailed = false;
+            mirror = repository;
+        }
+    }
+
+    public void stopMirror(){
+        synchronized (lock){
+            mirror = null;
+            mirrored.clear();
+        }
+    }
+
+    /**
+     * Read records from the mirror. Current repository becomes the mirror
+     */
+    public void cutover(){
+        synchronized (lock){
+            SkinRecordRepository old = current;
+            current = mirror;
+            mirror = old;
+            mirrored.clear();
+        }
+    }
+
+    /**
+     * Get repository for copying existing records into the mirror.
+     * Records changed by live writes since the mirror was set are skipped, so they are not overwritten by old data
+     */
+    public SkinRecordRepository getCopyTarget(){
+        return copyTarget;
+    }
+
+    @Override
+    public SkinRecord loadByUUID(UUID uuid) {
+        return current.loadByUUID(uuid);
+    }
+
+    @Override
+    public SkinRecord loadByName(String name) {
+        return current.loadByName(name);
+    }
+
+    @Override
+    public void save(SkinRecord record) {
+        synchronized (lock){
+            current.save(record);
+            mirror(Collections.singletonMap(record, EnumSet.allOf(SkinField.class)));
+        }
+    }
+
+    @Override
+    public void save(SkinRecord record, Set<SkinField> fields) {
+        synchronized (lock){
+            current.save(record, fields);
+            // Record contains current state of the player, but it may not exist in the mirror yet
+            mirror(Collections.singletonMap(record, EnumSet.allOf(SkinField.class)));
+        }
+    }
+
+    @Override
+    public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+        synchronized (lock){
+            boolean saved = current.saveAll(records);
+
+            if (saved && mirror != null){
+                Map<SkinRecord, Set<SkinField>> full = new LinkedHashMap<>();
+                for (SkinRecord record : records.keySet()) full.put(record, EnumSet.allOf(SkinField.class));
+                mirror(full);
+            }
+
+            return saved;
+        }
+    }
+
+    @Override
+    public void resetCustomSkin(UUID uuid) {
+        synchronized (lock){
+            current.resetCustomSkin(uuid);
+
+            if (mirror != null){
+                SkinRecord record = current.loadByUUID(uuid);
+                if (record != null) mirror(Collections.singletonMap(record, EnumSet.allOf(SkinField.class)));
+            }
+        }
+    }
+
+    @Override
+    public void updateLastSeen(Collection<UUID> uuids, long time) {
+        // Mirror gets the time of the copy with every record, so only current storage is updated
+        current.updateLastSeen(uuids, time);
+    }
+
+    @Override
+    public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+        return current.loadGalleryPage(offset, limit);
+    }
+
+    @Override
+    public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) throws SQLException {
+        current.forEachRecord(after, consumer);
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock){
+            current.close();
+            if (mirror != null) mirror.close();
+        }
+    }
+
+    private void mirror(Map<SkinRecord, Set<SkinField>> records){
+        if (mirror == null) return;
+
+        if (!mirror.saveAll(records)) mirrorFailed = true;
+
+        for (SkinRecord record : records.keySet()){
+            mirrored.add(record.getUUID());
+        }
+    }
+
+    private class CopyTarget implements SkinRecordRepository {
+
+        @Override
+        public SkinRecord loadByUUID(UUID uuid) {
+            return mirror.loadByUUID(uuid);
+        }
+
+        @Override
+        public SkinRecord loadByName(String name) {
+            return mirror.loadByName(name);
+        }
+
+        @Override
+        public void save(SkinRecord record) {
+            saveAll(Collections.singletonMap(record, EnumSet.allOf(SkinField.class)));
+        }
+
+        @Override
+        public void save(SkinRecord record, Set<SkinField> fields) {
+            saveAll(Collections.singletonMap(record, fields));
+        }
+
+        @Override
+        public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+            synchronized (lock){
+                if (mirror == null) return false;
+
+                Map<SkinRecord, Set<SkinField>> copied = new LinkedHashMap<>();
+
+                for (Map.Entry<SkinRecord, Set<SkinField>> entry : records.entrySet()){
+                    if (!mirrored.contains(entry.getKey().getUUID())){
+                        copied.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                return copied.isEmpty() || mirror.saveAll(copied);
+            }
+        }
+
+        @Override
+        public void resetCustomSkin(UUID uuid) {
+            synchronized (lock){
+                if (mirror != null) mirror.resetCustomSkin(uuid);
+            }
+        }
+
+        @Override
+        public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+            return mirror.loadGalleryPage(offset, limit);
+        }
+
+        @Override
+        public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) throws SQLException {
+            mirror.forEachRecord(after, consumer);
+        }
+    }
+}
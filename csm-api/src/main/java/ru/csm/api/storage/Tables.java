@@ -21,5 +21,14 @@ package ru.csm.api.storage;
 public class Tables {
 
     public static final String SKINS = "skins";
+    public static final String TEXTURES = "textures";
+    public static final String PACKED_TEXTURES = "textures_packed";
+    public static final String CHANGES = "skins_changes";
+    public static final String LOOKUPS = "skins_lookups";
+    public static final String LEASES = "skins_leases";
+    public static final String ARCHIVE = "skins_archive";
+    public static final String UUIDS = "skins_uuids";
+    public static final String PREMIUM_SKINS = "skins_premium";
+    public static final String SCHEMA_VERSION = "schema_version";
 
 }
@@ -0,0 +1,88 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.player.Skin;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the textures by their content hash.
+ * Texture with the same id is always the same, so cached textures are never invalidated
+ */
+public class TextureCache {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Skin> textures;
+
+    public TextureCache(int maxSize){
+        this.textures = new LinkedHashMap<String, Skin>(16, 0.75F, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Skin> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized Skin get(String id){
+        return textures.get(id);
+    }
+
+    public synchronized boolean contains(String id){
+        return textures.containsKey(id);
+    }
+
+    public synchronized void put(String id, Skin texture){
+        textures.put(id, texture);
+    }
+
+    /**
+     * Get id of the texture. Id is a SHA-256 hash of value and signature in hex format
+     * @param value Texture value
+     * @param signature Texture signature. May be null
+     * @return Texture id or null if value is null
+     */
+    public static String getId(String value, String signature){
+        if (value == null) return null;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            if (signature != null) digest.update(signature.getBytes(StandardCharsets.UTF_8));
+
+            byte[] hash = digest.digest();
+            char[] chars = new char[hash.length * 2];
+
+            for (int i = 0; i < hash.length; i++){
+                chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import ru.csm.api.logging.Logger;
+
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Move skin values and signatures into the textures table.
+ * Skins table is rebuilt with references to texture ids instead of the full textures
+ */
+public class TexturesMigration implements Migration {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_SKIN = "INSERT INTO skins_new (uuid,name,name_lower,default_texture,custom_texture) VALUES (?,?,?,?,?)";
+
+    private final int version;
+
+    public TexturesMigration(int version){
+        this.version = version;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return "textures";
+    }
+
+    @Override
+    public void apply(Connection connection, DatabaseType type) throws SQLException {
+        // MySQL and H2 commit DDL implicitly, so the table may be already swapped if the server stopped
+        // before the version was saved. Only the old table is left to remove then
+        if (isSwapped(connection)){
+            try (Statement statement = connection.createStatement()){
+                statement.execute("DROP TABLE IF EXISTS skins_old");
+            }
+
+            return;
+        }
+
+        SqlMigration.executeScript(connection, type, version + "_textures");
+        copyRows(connection, type);
+        SqlMigration.executeScript(connection, type, version + "_textures_swap");
+    }
+
+    private static boolean isSwapped(Connection connection){
+        try (Statement statement = connection.createStatement()){
+            statement.executeQuery("SELECT default_texture FROM " + Tables.SKINS + " WHERE 1=0").close();
+            return true;
+        } catch (SQLException e){
+            return false;
+        }
+    }
+
+    private void copyRows(Connection connection, DatabaseType type) throws SQLException {
+        // SQLite table does not fill id column, so rowid is used there
+        String id = type == DatabaseType.SQLITE ? "rowid" : "id";
+        String select = "SELECT " + id + ",uuid,name,name_lower,default_value,default_signature,custom_value,custom_signature FROM "
+                + Tables.SKINS + " WHERE " + id + ">? ORDER BY " + id + " LIMIT " + BATCH_SIZE;
+
+        Set<String> textures = new HashSet<>();
+        long lastId = Long.MIN_VALUE;
+        long copied = 0;
+
+        try (PreparedStatement selectSkins = connection.prepareStatement(select);
+             PreparedStatement insertSkin = connection.prepareStatement(INSERT_SKIN);
+             PreparedStatement insertTexture = connection.prepareStatement(SqlSkinRecordRepository.getInsertTexture(type))){
+            while (true){
+                int count = 0;
+
+                selectSkins.setLong(1, lastId);
+
+                // Rows are read by pages, so result set is closed before writing
+                try (ResultSet result = selectSkins.executeQuery()){
+                    while (result.next()){
+                        lastId = result.getLong(1);
+                        count++;
+
+                        insertSkin.setString(1, result.getString(2));
+                        insertSkin.setString(2, result.getString(3));
+                        insertSkin.setString(3, result.getString(4));
+                        insertSkin.setString(4, addTexture(insertTexture, textures, result.getString(5), result.getString(6)));
+                        insertSkin.setString(5, addTexture(insertTexture, textures, result.getString(7), result.getString(8)));
+                        insertSkin.addBatch();
+                    }
+                }
+
+                if (count == 0) break;
+
+                insertTexture.executeBatch();
+                insertSkin.executeBatch();
+                copied += count;
+            }
+        }
+
+        Logger.info("Moved %s players to %s unique textures", copied, textures.size());
+    }
+
+    private String addTexture(PreparedStatement statement, Set<String> textures, String value, String signature) throws SQLException {
+        String id = TextureCache.getId(value, signature);
+
+        if (id != null && textures.add(id)){
+            statement.setString(1, id);
+            statement.setString(2, value);
+            statement.setString(3, signature);
+            statement.addBatch();
+        }
+
+        return id;
+    }
+}
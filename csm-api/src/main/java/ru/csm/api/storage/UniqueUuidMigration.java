@@ -0,0 +1,82 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.storage;
+
+import java.sql.*;
+import java.util.Locale;
+
+/**
+ * Create unique key on the uuid column, which is required by upsert statements.
+ * Duplicated rows created by older versions are removed, the newest row is kept
+ */
+public class UniqueUuidMigration implements Migration {
+
+    private static final String KEY_NAME = "skins_uuid_key";
+
+    private final int version;
+
+    public UniqueUuidMigration(int version){
+        this.version = version;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return "unique_uuid";
+    }
+
+    @Override
+    public void apply(Connection connection, DatabaseType type) throws SQLException {
+        if (hasUniqueKey(connection)) return;
+
+        try (Statement statement = connection.createStatement()){
+            if (type == DatabaseType.MYSQL){
+                statement.executeUpdate("DELETE s1 FROM " + Tables.SKINS + " s1 JOIN " + Tables.SKINS
+                        + " s2 ON s1.uuid=s2.uuid AND s1.id<s2.id");
+            } else {
+                // SQLite table does not fill id column, so rowid is used there
+                String id = type == DatabaseType.SQLITE ? "rowid" : "id";
+                statement.executeUpdate("DELETE FROM " + Tables.SKINS + " WHERE " + id + " NOT IN (SELECT MAX("
+                        + id + ") FROM " + Tables.SKINS + " GROUP BY uuid)");
+            }
+
+            statement.executeUpdate("CREATE UNIQUE INDEX " + KEY_NAME + " ON " + Tables.SKINS + "(uuid)");
+        }
+    }
+
+    private static boolean hasUniqueKey(Connection connection) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String[] tableNames = {Tables.SKINS, Tables.SKINS.toUpperCase(Locale.ROOT)};
+
+        for (String table : tableNames){
+            try (ResultSet result = meta.getIndexInfo(null, null, table, true, false)){
+                while (result.next()){
+                    String column = result.getString("COLUMN_NAME");
+                    if (column != null && column.equalsIgnoreCase("uuid")) return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
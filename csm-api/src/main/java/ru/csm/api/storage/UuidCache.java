@@ -0,0 +1,239 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Cache of the premium UUIDs by case insensitive name. Recently used names are kept in memory,
+ * and all received answers are stored in database, so they are shared by servers and survive restart.
+ * Names without premium account are cached too, but for shorter time
+ */
+public class UuidCache {
+
+    private static final long PURGE_INTERVAL = 3600000L; // 1 hour
+    private static final String SELECT = "SELECT uuid,fetched_at FROM " + Tables.UUIDS + " WHERE name=?";
+    private static final String PURGE = "DELETE FROM " + Tables.UUIDS + " WHERE (uuid IS NOT NULL AND fetched_at<?) OR (uuid IS NULL AND fetched_at<?)";
+
+    private final Database database;
+    private final int maxSize;
+    private final long ttl;
+    private final long negativeTtl;
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    private long nextPurge;
+
+    /**
+     * @param database Database to store answers. May be null, then answers are kept only in memory
+     * @param maxSize Maximum amount of the names in memory
+     * @param ttl Time in milliseconds after which premium UUID is requested again
+     * @param negativeTtl Time in milliseconds after which name without premium account is requested again
+     */
+    public UuidCache(Database database, int maxSize, long ttl, long negativeTtl){
+        this.database = database;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<String, CacheEntry>(64, 0.75F, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > UuidCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get UUID of the name from cache, or load it if name is not cached or expired
+     * @param name Name of the player
+     * @param loader Requests UUID if it is not cached. Returns null if name has no premium account,
+     *               and throws exception if answer is unknown, so it is not cached
+     * @return UUID of the premium account, or null if there is no such account
+     */
+    public UUID get(String name, Loader loader) throws IOException {
+        String key = name.toLowerCase();
+        long now = System.currentTimeMillis();
+        CacheEntry entry = lookup(key, now);
+
+        if (entry == null){
+            entry = new CacheEntry(loader.load(name), now);
+            putEntry(key, entry);
+            storeEntry(key, entry);
+        }
+
+        return entry.uuid;
+    }
+
+    /**
+     * Get UUIDs of several names. Names which are not cached are loaded by one call of loader
+     * @param names Names of the players
+     * @param loader Requests UUIDs of the names which are not cached
+     * @return UUIDs of the premium accounts by lower case name. Names without premium account are not included
+     */
+    public Map<String, UUID> getAll(Collection<String> names, BulkLoader loader) throws IOException {
+        long now = System.currentTimeMillis();
+        Map<String, UUID> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String name : names){
+            String key = name.toLowerCase();
+            CacheEntry entry = lookup(key, now);
+
+            if (entry == null){
+                missing.add(name);
+            } else if (entry.uuid != null){
+                result.put(key, entry.uuid);
+            }
+        }
+
+        if (missing.isEmpty()) return result;
+
+        Map<String, UUID> loaded = loader.load(missing);
+
+        for (String name : missing){
+            String key = name.toLowerCase();
+            CacheEntry entry = new CacheEntry(loaded.get(key), now);
+
+            putEntry(key, entry);
+            storeEntry(key, entry);
+
+            if (entry.uuid != null) result.put(key, entry.uuid);
+        }
+
+        return result;
+    }
+
+    public synchronized void invalidate(String name){
+        entries.remove(name.toLowerCase());
+    }
+
+    /**
+     * Find actual entry in memory or in database
+     * @return Cached entry or null if name is not cached or entry expired
+     */
+    private CacheEntry lookup(String key, long now){
+        CacheEntry entry = getEntry(key);
+        if (entry != null && !entry.isExpired(now)) return entry;
+
+        entry = loadEntry(key);
+        if (entry == null || entry.isExpired(now)) return null;
+
+        putEntry(key, entry);
+        return entry;
+    }
+
+    private synchronized CacheEntry getEntry(String key){
+        return entries.get(key);
+    }
+
+    private synchronized void putEntry(String key, CacheEntry entry){
+        if (maxSize > 0) entries.put(key, entry);
+    }
+
+    private CacheEntry loadEntry(String key){
+        if (database == null) return null;
+
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)){
+            statement.setString(1, key);
+
+            try (ResultSet result = statement.executeQuery()){
+                if (result.next()){
+                    String uuid = result.getString(1);
+                    return new CacheEntry(uuid != null ? UUID.fromString(uuid) : null, result.getLong(2));
+                }
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private void storeEntry(String key, CacheEntry entry){
+        if (database == null) return;
+
+        try (Connection connection = database.getConnection()){
+            try (PreparedStatement statement = connection.prepareStatement(getUpsert(database.getType()))){
+                statement.setString(1, key);
+                statement.setString(2, entry.uuid != null ? entry.uuid.toString() : null);
+                statement.setLong(3, entry.fetchedAt);
+                statement.executeUpdate();
+            }
+
+            if (entry.fetchedAt >= nextPurge){
+                nextPurge = entry.fetchedAt + PURGE_INTERVAL;
+
+                try (PreparedStatement statement = connection.prepareStatement(PURGE)){
+                    statement.setLong(1, entry.fetchedAt - ttl);
+                    statement.setLong(2, entry.fetchedAt - negativeTtl);
+                    statement.executeUpdate();
+                }
+            }
+        } catch (SQLException e){
+            e.printStackTrace();
+        }
+    }
+
+    private static String getUpsert(DatabaseType type){
+        switch (type){
+            case MYSQL:
+                return "REPLACE INTO " + Tables.UUIDS + " (name,uuid,fetched_at) VALUES (?,?,?)";
+            case SQLITE:
+                return "INSERT OR REPLACE INTO " + Tables.UUIDS + " (name,uuid,fetched_at) VALUES (?,?,?)";
+            case H2:
+                return "MERGE INTO " + Tables.UUIDS + " (name,uuid,fetched_at) KEY(name) VALUES (?,?,?)";
+            default:
+                throw new IllegalArgumentException("Unsupported database type: " + type);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        UUID load(String name) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BulkLoader {
+        /**
+         * @return UUIDs of the existing premium accounts by lower case name
+         */
+        Map<String, UUID> load(List<String> names) throws IOException;
+    }
+
+    private class CacheEntry {
+
+        private final UUID uuid;
+        private final long fetchedAt;
+
+        CacheEntry(UUID uuid, long fetchedAt){
+            this.uuid = uuid;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isExpired(long now){
+            return now - fetchedAt > (uuid != null ? ttl : negativeTtl);
+        }
+    }
+}
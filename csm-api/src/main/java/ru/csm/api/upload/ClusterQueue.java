@@ -0,0 +1,381 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.upload;
+
+import ru.csm.api.logging.Logger;
+import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinModel;
+import ru.csm.api.services.SkinHash;
+import ru.csm.api.storage.Database;
+import ru.csm.api.storage.Lease;
+import ru.csm.api.storage.Tables;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Queue of the skin requests shared by all servers which use the same database.
+ * Servers write requests into the table, and only one of them, which holds the lease, executes them
+ * by its local queues. So requests from all servers are sent to Mojang and Mineskin at rate of one server.
+ * Results are written back into the table and read by the servers which wait for the request.
+ * Pending name requests have unique key in the table, so servers which request the same name wait for one row
+ */
+public final class ClusterQueue implements Runnable {
+
+    public static final String TYPE_NAME = "name";
+    public static final String TYPE_IMAGE = "image";
+
+    private static final String LEASE_NAME = "lookups";
+
+    private static final int STATUS_PENDING = 0;
+    private static final int STATUS_CLAIMED = 1;
+    private static final int STATUS_DONE = 2;
+    private static final int STATUS_FAILED = 3;
+
+    // Max number of requests taken into local queue of the worker
+    private static final int CLAIM_LIMIT = 10;
+    // Requests of the stopped servers are removed after this time
+    private static final long MAX_AGE = 3600000;
+    // Results are kept for all servers which wait for them, and removed after this time
+    private static final long RESULT_TIME = 60000;
+    private static final int CLEANUP_RUNS = 600;
+    // Max number of requests which results are selected by one query
+    private static final int RESULTS_BATCH = 100;
+    // Length of the pending_name column. Longer names are not deduplicated
+    private static final int MAX_NAME_KEY = 64;
+
+    private static final String INSERT = "INSERT INTO " + Tables.LOOKUPS
+            + " (node,type,request,model,status,created_at,pending_name) VALUES (?,?,?,?," + STATUS_PENDING + ",?,?)";
+    private static final String SELECT_BY_NAME = "SELECT id FROM " + Tables.LOOKUPS + " WHERE pending_name=?";
+    private static final String SELECT_PENDING = "SELECT id,type,request,model FROM " + Tables.LOOKUPS
+            + " WHERE status=" + STATUS_PENDING + " ORDER BY id LIMIT ?";
+    private static final String CLAIM = "UPDATE " + Tables.LOOKUPS + " SET status=" + STATUS_CLAIMED
+            + ", worker=?, claimed_at=? WHERE id=? AND status=" + STATUS_PENDING;
+    private static final String COMPLETE = "UPDATE " + Tables.LOOKUPS
+            + " SET status=?, skin_value=?, skin_signature=?, pending_name=NULL, completed_at=? WHERE id=?";
+    private static final String UNCLAIM = "UPDATE " + Tables.LOOKUPS + " SET status=" + STATUS_PENDING
+            + ", worker=NULL, claimed_at=NULL WHERE status=" + STATUS_CLAIMED + " AND worker<>? AND claimed_at<?";
+    private static final String SELECT_RESULTS = "SELECT id,status,skin_value,skin_signature FROM " + Tables.LOOKUPS
+            + " WHERE status>=" + STATUS_DONE + " AND id IN ";
+    private static final String DELETE_OLD = "DELETE FROM " + Tables.LOOKUPS + " WHERE created_at<? OR completed_at<?";
+
+    private final Database database;
+    private final Lease lease;
+    private final long leaseTime;
+    private final NameQueue nameQueue;
+    private final ImageQueue imageQueue;
+
+    private final Queue<Pending> outgoing = new ConcurrentLinkedQueue<>();
+    private final Map<Long, List<Pending>> pending = new ConcurrentHashMap<>();
+    private final Map<String, SharedCallback> names = new ConcurrentHashMap<>();
+
+    private boolean worker;
+    private int runs;
+
+    public ClusterQueue(Database database, NameQueue nameQueue, ImageQueue imageQueue, long leaseTime){
+        this.database = database;
+        this.lease = new Lease(database, LEASE_NAME, UUID.randomUUID().toString(), leaseTime);
+        this.leaseTime = leaseTime;
+        this.nameQueue = nameQueue;
+        this.imageQueue = imageQueue;
+    }
+
+    public boolean isWorker(){
+        return worker;
+    }
+
+    /**
+     * @return Number of not completed requests of this server with specified type
+     */
+    public int getPendingCount(String type){
+        int count = 0;
+
+        for (Pending request : outgoing){
+            if (request.type.equals(type)) count++;
+        }
+
+        for (List<Pending> requests : pending.values()){
+            for (Pending request : requests){
+                if (request.type.equals(type)) count++;
+            }
+        }
+
+        return count;
+    }
+
+    public void pushName(String name, LookupCallback callback){
+        SharedCallback.attach(names, name.toLowerCase(), callback, shared -> outgoing.offer(new Pending(TYPE_NAME, name, null, shared)));
+    }
+
+    public void pushImage(String url, SkinModel model, LookupCallback callback){
+        outgoing.offer(new Pending(TYPE_IMAGE, url, model, callback));
+    }
+
+    @Override
+    public void run() {
+        try (Connection connection = database.getConnection()){
+            sendRequests(connection);
+
+            if (lease.acquire(connection)){
+                if (!worker){
+                    worker = true;
+                    Logger.info("This server now executes shared skin requests");
+                }
+
+                unclaimRequests(connection);
+                claimRequests(connection);
+
+                if (++runs % CLEANUP_RUNS == 0){
+                    deleteOldRequests(connection);
+                }
+            } else {
+                worker = false;
+            }
+
+            if (!pending.isEmpty()){
+                receiveResults(connection);
+            }
+        } catch (SQLException e){
+            Logger.warning("Cannot process shared skin requests: %s", e.getMessage());
+        }
+    }
+
+    private void sendRequests(Connection connection) throws SQLException {
+        Pending request;
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)){
+            while ((request = outgoing.peek()) != null){
+                String key = getNameKey(request);
+                Long id = key != null ? findPendingName(connection, key) : null;
+
+                if (id == null){
+                    statement.setString(1, lease.getNode());
+                    statement.setString(2, request.type);
+                    statement.setString(3, request.request);
+                    statement.setString(4, request.model != null ? request.model.getName() : null);
+                    statement.setLong(5, System.currentTimeMillis());
+                    statement.setString(6, key);
+
+                    try {
+                        statement.executeUpdate();
+
+                        try (ResultSet keys = statement.getGeneratedKeys()){
+                            if (keys.next()) id = keys.getLong(1);
+                        }
+                    } catch (SQLException e){
+                        // Another server inserted the same name at the same time
+                        id = key != null ? findPendingName(connection, key) : null;
+                        if (id == null) throw e;
+                    }
+                }
+
+                if (id != null){
+                    pending.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(request);
+                }
+
+                outgoing.poll();
+            }
+        }
+    }
+
+    private static String getNameKey(Pending request){
+        if (!request.type.equals(TYPE_NAME) || request.request.length() > MAX_NAME_KEY) return null;
+        return request.request.toLowerCase();
+    }
+
+    private Long findPendingName(Connection connection, String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_NAME)){
+            statement.setString(1, key);
+
+            try (ResultSet result = statement.executeQuery()){
+                return result.next() ? result.getLong(1) : null;
+            }
+        }
+    }
+
+    private void claimRequests(Connection connection) throws SQLException {
+        if (nameQueue.getSize() >= CLAIM_LIMIT && imageQueue.getSize() >= CLAIM_LIMIT) return;
+
+        List<Long> ids = new ArrayList<>();
+        List<Pending> requests = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_PENDING)){
+            statement.setInt(1, CLAIM_LIMIT);
+
+            try (ResultSet result = statement.executeQuery()){
+                while (result.next()){
+                    String model = result.getString(4);
+                    ids.add(result.getLong(1));
+                    requests.add(new Pending(result.getString(2), result.getString(3),
+                            model != null ? SkinModel.fromName(model) : null, null));
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(CLAIM)){
+            for (int i = 0; i < ids.size(); i++){
+                long id = ids.get(i);
+                Pending request = requests.get(i);
+                boolean isName = request.type.equals(TYPE_NAME);
+
+                if ((isName ? nameQueue.getSize() : imageQueue.getSize()) >= CLAIM_LIMIT) continue;
+
+                statement.setString(1, lease.getNode());
+                statement.setLong(2, System.currentTimeMillis());
+                statement.setLong(3, id);
+
+                if (statement.executeUpdate() == 0) continue;
+
+                if (isName){
+                    nameQueue.push(request.request, new ResultCallback(id));
+                } else {
+                    imageQueue.push(request.request, request.model, new ResultCallback(id));
+                }
+            }
+        }
+    }
+
+    private void unclaimRequests(Connection connection) throws SQLException {
+        // Requests taken by previous worker which stopped before completing them.
+        // Previous worker may still process requests claimed during its lease, so only older claims are returned
+        try (PreparedStatement statement = connection.prepareStatement(UNCLAIM)){
+            statement.setString(1, lease.getNode());
+            statement.setLong(2, System.currentTimeMillis() - leaseTime);
+            statement.executeUpdate();
+        }
+    }
+
+    private void deleteOldRequests(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_OLD)){
+            statement.setLong(1, now - MAX_AGE);
+            statement.setLong(2, now - RESULT_TIME);
+            statement.executeUpdate();
+        }
+    }
+
+    private void receiveResults(Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>(pending.keySet());
+
+        for (int start = 0; start < ids.size(); start += RESULTS_BATCH){
+            receiveResults(connection, ids.subList(start, Math.min(start + RESULTS_BATCH, ids.size())));
+        }
+    }
+
+    private void receiveResults(Connection connection, List<Long> ids) throws SQLException {
+        Map<Long, Skin> results = new LinkedHashMap<>();
+        StringBuilder query = new StringBuilder(SELECT_RESULTS).append('(');
+
+        for (int i = 0; i < ids.size(); i++){
+            query.append(i > 0 ? ",?" : "?");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(query.append(')').toString())){
+            for (int i = 0; i < ids.size(); i++){
+                statement.setLong(i + 1, ids.get(i));
+            }
+
+            try (ResultSet result = statement.executeQuery()){
+                while (result.next()){
+                    Skin skin = result.getInt(2) == STATUS_DONE
+                            ? new Skin(result.getString(3), result.getString(4))
+                            : null;
+                    results.put(result.getLong(1), skin);
+                }
+            }
+        }
+
+        // Rows are not deleted here, since other servers may wait for the same request
+        for (Map.Entry<Long, Skin> entry : results.entrySet()){
+            List<Pending> requests = pending.remove(entry.getKey());
+            if (requests == null) continue;
+
+            for (Pending request : requests){
+                if (!request.callback.isActive()) continue;
+
+                if (entry.getValue() != null){
+                    SkinHash.add(request.request, entry.getValue());
+                    request.callback.onSuccess(entry.getValue());
+                } else {
+                    request.callback.onFailure();
+                }
+            }
+        }
+    }
+
+    private static class Pending {
+
+        private final String type;
+        private final String request;
+        private final SkinModel model;
+        private final LookupCallback callback;
+
+        Pending(String type, String request, SkinModel model, LookupCallback callback){
+            this.type = type;
+            this.request = request;
+            this.model = model;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Writes result of the request executed by this server for other server
+     */
+    private class ResultCallback implements LookupCallback {
+
+        private final long id;
+
+        ResultCallback(long id){
+            this.id = id;
+        }
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+
+        @Override
+        public void onSuccess(Skin skin) {
+            complete(STATUS_DONE, skin);
+        }
+
+        @Override
+        public void onFailure() {
+            complete(STATUS_FAILED, null);
+        }
+
+        private void complete(int status, Skin skin){
+            try (Connection connection = database.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(COMPLETE)){
+                statement.setInt(1, status);
+                statement.setString(2, skin != null ? skin.getValue() : null);
+                statement.setString(3, skin != null ? skin.getSignature() : null);
+                statement.setLong(4, System.currentTimeMillis());
+                statement.setLong(5, id);
+                statement.executeUpdate();
+            } catch (SQLException e){
+                Logger.warning("Cannot save result of the shared skin request: %s", e.getMessage());
+            }
+        }
+    }
+}
@@ -20,20 +20,40 @@ package ru.csm.api.upload;
 
 import ru.csm.api.player.SkinModel;
 import ru.csm.api.player.SkinPlayer;
+import ru.csm.api.services.SkinsAPI;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Queue of the skin generation requests by image URL.
+ * Requests of the same URL and model, which are pushed while it's pending, share one generation
+ */
 public abstract class ImageQueue implements Runnable {
 
+    protected final SkinsAPI<?> api;
     private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, SharedCallback> pending = new ConcurrentHashMap<>();
     private final int period;
 
-    public ImageQueue(int period){
+    private ClusterQueue cluster;
+
+    public ImageQueue(SkinsAPI<?> api, int period){
+        this.api = api;
         this.period = period;
     }
 
+    /**
+     * Send requests of the players through shared queue instead of local one
+     * @param cluster Shared queue or null to use local queue
+     */
+    public void setCluster(ClusterQueue cluster){
+        this.cluster = cluster;
+    }
+
     protected Optional<Request> pop(){
         return Optional.ofNullable(queue.poll());
     }
@@ -43,27 +63,35 @@ public abstract class ImageQueue implements Runnable {
     }
 
     public int getWaitSeconds(){
+        if (cluster != null) return cluster.getPendingCount(ClusterQueue.TYPE_IMAGE) * period;
         return queue.size() * period;
     }
 
     public void push(SkinPlayer player, String url, SkinModel model){
-        queue.offer(new Request(player, url, model));
+        LookupCallback callback = new PlayerCallback(api, player, "skin.image.error");
+
+        if (cluster != null){
+            cluster.pushImage(url, model, callback);
+            return;
+        }
+
+        push(url, model, callback);
+    }
+
+    public void push(String url, SkinModel model, LookupCallback callback){
+        SharedCallback.attach(pending, model + " " + url, callback, shared -> queue.offer(new Request(url, model, shared)));
     }
 
     static class Request {
 
-        private final SkinPlayer player;
         private final String url;
         private final SkinModel model;
+        private final LookupCallback callback;
 
-        public Request(SkinPlayer player, String url, SkinModel model){
-            this.player = player;
+        public Request(String url, SkinModel model, LookupCallback callback){
             this.url = url;
             this.model = model;
-        }
-
-        public SkinPlayer getPlayer() {
-            return player;
+            this.callback = callback;
         }
 
         public String getUrl() {
@@ -73,5 +101,9 @@ public abstract class ImageQueue implements Runnable {
         public SkinModel getModel() {
             return model;
         }
+
+        public LookupCallback getCallback() {
+            return callback;
+        }
     }
 }
@@ -35,13 +35,11 @@ public final class MineskinQueue extends ImageQueue {
 
     private static final String API_URL = "https://api.mineskin.org/generate/url";
     private static final JsonParser JSON_PARSER = new JsonParser();
-    private final SkinsAPI<?> api;
 
     private long nextRequest;
 
     public MineskinQueue(SkinsAPI<?> api, int period) {
-        super(period);
-        this.api = api;
+        super(api, period);
     }
 
     @Override
@@ -55,11 +53,11 @@ public final class MineskinQueue extends ImageQueue {
             nextRequest = System.currentTimeMillis();
 
             pop().ifPresent((request)->{
-                if (request.getPlayer().isOnline()){
+                if (request.getCallback().isActive()){
                     Optional<Skin> hashed = SkinHash.get(request.getUrl());
 
                     if (hashed.isPresent()){
-                        api.setCustomSkin(request.getPlayer(), hashed.get());
+                        request.getCallback().onSuccess(hashed.get());
                         return;
                     }
 
@@ -72,7 +70,7 @@ public final class MineskinQueue extends ImageQueue {
                     }
 
                     if (sendErrorMessage)
-                        request.getPlayer().sendMessage(api.getLang().of("skin.image.error"));
+                        request.getCallback().onFailure();
                 }
             });
         }
@@ -90,12 +88,16 @@ public final class MineskinQueue extends ImageQueue {
 
         HttpResponse response = post.execute();
 
+        if(response.getCode() != 200){
+            Logger.severe("Cannot execute request to mineskin.org. Response code: %s", response.getCode());
+        }
+
         if(response.getResponse() != null){
             Skin skin = parseResponse(response);
 
             if(skin != null){
                 SkinHash.add(request.getUrl(), skin);
-                api.setCustomSkin(request.getPlayer(), skin);
+                request.getCallback().onSuccess(skin);
                 return true;
             }
         }
@@ -106,12 +108,14 @@ public final class MineskinQueue extends ImageQueue {
     private Skin parseResponse(HttpResponse response) {
         String responseJson = response.getResponse();
 
-        if(responseJson != null && !responseJson.isEmpty()){
+        if(responseJson != null && responseJson.startsWith("{")){
             JsonObject json = JSON_PARSER.parse(responseJson).getAsJsonObject();
 
-            nextRequest = System.currentTimeMillis() + json.get("nextRequest").getAsInt() * 1000;
+            if(json.has("nextRequest")){
+                nextRequest = System.currentTimeMillis() + (long) (json.get("nextRequest").getAsDouble() * 1000);
+            }
 
-            if(json.has("data")){
+            if(response.getCode() == 200 && json.has("data")){
                 JsonObject texture = json.get("data").getAsJsonObject().get("texture").getAsJsonObject();
                 String value = texture.get("value").getAsString();
                 String signature = texture.get("signature").getAsString();
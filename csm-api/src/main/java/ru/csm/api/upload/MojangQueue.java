@@ -39,13 +39,11 @@ public final class MojangQueue extends ImageQueue {
     private static final String SKIN_URL = "https://api.mojang.com/user/profile/%s/skin";
     private static final JsonParser JSON_PARSER = new JsonParser();
 
-    private final SkinsAPI<?> api;
     private final List<Profile> profiles;
     private Iterator<Profile> profileIterator;
 
     public MojangQueue(SkinsAPI<?> api, List<Profile> profiles, int period) {
-        super(period);
-        this.api = api;
+        super(api, period);
         this.profiles = profiles;
         this.profileIterator = profiles.iterator();
 
@@ -62,7 +60,7 @@ public final class MojangQueue extends ImageQueue {
     @Override
     public void run() {
         pop().ifPresent((request)->{
-            if (request.getPlayer().isOnline()){
+            if (request.getCallback().isActive()){
                 Profile profile = getAvailableProfile();
 
                 Logger.info("Using profile %s", profile.toString());
@@ -71,19 +69,21 @@ public final class MojangQueue extends ImageQueue {
                     refresh(profile);
                 }
 
+                long changedAt = System.currentTimeMillis();
+
                 if(changeSkin(profile, request)){
-                    Skin skin = MojangAPI.getPremiumSkin(profile.getUUID());
+                    // Skin of the account was just changed, so cached texture of this account is outdated
+                    Skin skin = MojangAPI.getPremiumSkin(profile.getUUID(), Long.MAX_VALUE, changedAt);
 
                     if(skin != null){
                         SkinHash.add(request.getUrl(), skin);
-                        api.setCustomSkin(request.getPlayer(), skin);
+                        request.getCallback().onSuccess(skin);
                         return;
                     }
                     Logger.severe("Cannot get skin of premium profile %s", profile);
-                    return;
                 }
 
-                request.getPlayer().sendMessage(api.getLang().of("skin.image.error"));
+                request.getCallback().onFailure();
             }
         });
     }
@@ -144,6 +144,12 @@ public final class MojangQueue extends ImageQueue {
             request.setEntity(new HttpEntity(json.toString()));
 
             HttpResponse response = request.execute();
+
+            if (response.getCode() != 200){
+                Logger.severe("Cannot refresh session for Mojang account %s. Response code: %s", profile.getUsername(), response.getCode());
+                return;
+            }
+
             JsonObject responseJson = JSON_PARSER.parse(response.getResponse()).getAsJsonObject();
             String accessToken = responseJson.get("accessToken").getAsString();
             String clientToken = responseJson.get("clientToken").getAsString();
@@ -173,6 +179,12 @@ public final class MojangQueue extends ImageQueue {
             request.setEntity(new HttpEntity(json.toString()));
 
             HttpResponse response = request.execute();
+
+            if (response.getCode() != 200){
+                Logger.severe("Cannot authenticate profile %s. Response code: %s", profile.getUsername(), response.getCode());
+                return;
+            }
+
             JsonObject responseJson = JSON_PARSER.parse(response.getResponse()).getAsJsonObject();
 
             String accessToken = responseJson.get("accessToken").getAsString();
@@ -18,84 +18,167 @@
 
 package ru.csm.api.upload;
 
+import ru.csm.api.http.HttpClient;
 import ru.csm.api.player.Skin;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.api.services.MojangAPI;
 import ru.csm.api.services.SkinHash;
 import ru.csm.api.services.SkinsAPI;
 
-import java.util.Optional;
-import java.util.Queue;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Queue of the skin requests by player name. Every run takes up to {@link MojangAPI#MAX_BULK_NAMES} requests,
+ * resolves their names by one bulk request and fetches profiles concurrently.
+ * Amount of the requests is limited by budget, which is refilled with the rate allowed by Mojang.
+ * Requests of the same name, which are pushed while it's pending, share one lookup
+ */
 public final class NameQueue implements Runnable {
 
+    // Mojang allows about 600 requests per 10 minutes
+    private static final double REQUESTS_PER_SECOND = 1;
+    // Requests which may be sent at once after the queue was empty
+    private static final int MAX_BUDGET = 60;
+
     private final SkinsAPI<?> api;
     private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, SharedCallback> pending = new ConcurrentHashMap<>();
     private final int period;
 
+    private ClusterQueue cluster;
+    private double budget = MAX_BUDGET;
+    private long lastRefill = System.currentTimeMillis();
+
     public NameQueue(SkinsAPI<?> api, int period){
         this.api = api;
         this.period = period;
     }
 
+    /**
+     * Send requests of the players through shared queue instead of local one
+     * @param cluster Shared queue or null to use local queue
+     */
+    public void setCluster(ClusterQueue cluster){
+        this.cluster = cluster;
+    }
+
     protected Optional<Request> pop(){
         return Optional.ofNullable(queue.poll());
     }
 
+    public int getSize(){
+        return queue.size();
+    }
+
     public int getWaitSeconds(){
-        return queue.size() * period;
+        int size = cluster != null ? cluster.getPendingCount(ClusterQueue.TYPE_NAME) : queue.size();
+        int batches = (size + MojangAPI.MAX_BULK_NAMES - 1) / MojangAPI.MAX_BULK_NAMES;
+        // Every batch needs one bulk request and one request per name
+        double requests = batches + size - getBudget();
+
+        if (requests <= 0) return batches * period;
+
+        return Math.max(batches * period, (int) Math.ceil(requests / REQUESTS_PER_SECOND));
     }
 
     public void push(SkinPlayer player, String name){
-        queue.offer(new Request(player, name));
+        LookupCallback callback = new PlayerCallback(api, player, "skin.name.error");
+
+        if (cluster != null){
+            cluster.pushName(name, callback);
+            return;
+        }
+
+        push(name, callback);
+    }
+
+    public void push(String name, LookupCallback callback){
+        SharedCallback.attach(pending, name.toLowerCase(), callback, shared -> queue.offer(new Request(name, shared)));
     }
 
     @Override
     public void run() {
-        pop().ifPresent((request)->{
-            if (request.getPlayer().isOnline()){
-                Optional<Skin> hashed = SkinHash.get(request.getName());
+        int limit = Math.min(MojangAPI.MAX_BULK_NAMES, (int) refillBudget() - 1);
+        if (limit <= 0) return;
+
+        Map<String, Request> requests = new LinkedHashMap<>();
 
-                if (hashed.isPresent()){
-                    api.setCustomSkin(request.getPlayer(), hashed.get());
-                    return;
-                }
+        while (requests.size() < limit){
+            Request request = pop().orElse(null);
+            if (request == null) break;
+            if (!request.getCallback().isActive()) continue;
 
-                UUID targetUUID = MojangAPI.getUUID(request.getName());
+            Optional<Skin> hashed = SkinHash.get(request.getName());
 
-                if(targetUUID != null){
-                    Skin skin = MojangAPI.getPremiumSkin(targetUUID);
+            if (hashed.isPresent()){
+                request.getCallback().onSuccess(hashed.get());
+                continue;
+            }
 
-                    if(skin != null){
-                        SkinHash.add(request.getName(), skin);
-                        api.setCustomSkin(request.getPlayer(), skin);
-                        return;
-                    }
-                }
+            requests.put(request.getName().toLowerCase(), request);
+        }
 
-                request.getPlayer().sendMessage(api.getLang().of("skin.name.error"));
+        if (requests.isEmpty()) return;
+
+        Map<String, UUID> uuids = MojangAPI.getUUIDs(requests.keySet());
+        spendBudget(1 + uuids.size());
+
+        for (Map.Entry<String, Request> entry : requests.entrySet()){
+            UUID uuid = uuids.get(entry.getKey());
+            LookupCallback callback = entry.getValue().getCallback();
+
+            if (uuid == null){
+                callback.onFailure();
+                continue;
             }
-        });
+
+            CompletableFuture.supplyAsync(() -> MojangAPI.getPremiumSkin(uuid), HttpClient.getDefault().getExecutor())
+                    .whenComplete((skin, error) -> {
+                        if (skin != null){
+                            SkinHash.add(entry.getKey(), skin);
+                            callback.onSuccess(skin);
+                            return;
+                        }
+
+                        callback.onFailure();
+                    });
+        }
+    }
+
+    private synchronized double getBudget(){
+        return Math.min(MAX_BUDGET, budget + (System.currentTimeMillis() - lastRefill) / 1000.0 * REQUESTS_PER_SECOND);
+    }
+
+    private synchronized double refillBudget(){
+        long now = System.currentTimeMillis();
+        budget = Math.min(MAX_BUDGET, budget + (now - lastRefill) / 1000.0 * REQUESTS_PER_SECOND);
+        lastRefill = now;
+        return budget;
+    }
+
+    private synchronized void spendBudget(int requests){
+        budget -= requests;
     }
 
     private static class Request {
 
-        private final SkinPlayer player;
         private final String name;
+        private final LookupCallback callback;
 
-        public Request(SkinPlayer player, String name){
-            this.player = player;
+        public Request(String name, LookupCallback callback){
             this.name = name;
-        }
-
-        public SkinPlayer getPlayer() {
-            return player;
+            this.callback = callback;
         }
 
         public String getName() {
             return name;
         }
+
+        public LookupCallback getCallback() {
+            return callback;
+        }
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.csm.api.upload;
+
+import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinPlayer;
+import ru.csm.api.services.SkinsAPI;
+
+/**
+ * Sets received skin to the player or sends error message to him
+ */
+final class PlayerCallback implements LookupCallback {
+
+    private final SkinsAPI<?> api;
+    private final SkinPlayer player;
+    private final String errorKey;
+
+    PlayerCallback(SkinsAPI<?> api, SkinPlayer player, String errorKey){
+        this.api = api;
+        this.player = player;
+        this.errorKey = errorKey;
+    }
+
+    @Override
+    public boolean isActive() {
+        return player.isOnline();
+    }
+
+    @Override
+    public void onSuccess(Skin skin) {
+        api.setCustomSkin(player, skin);
+    }
+
+    @Override
+    public void onFailure() {
+        player.sendMessage(api.getLang().of(errorKey));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.upload;
+
+import ru.csm.api.player.Skin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Callback of the request shared by all requesters of the same skin.
+ * Requesters attach to the pending request instead of creating new one, and all of them receive the same result.
+ * Request is removed from pending map before result is delivered, so later requesters create new request
+ */
+final class SharedCallback implements LookupCallback {
+
+    private final Map<String, SharedCallback> pending;
+    private final String key;
+    private final List<LookupCallback> callbacks = new CopyOnWriteArrayList<>();
+
+    private SharedCallback(Map<String, SharedCallback> pending, String key){
+        this.pending = pending;
+        this.key = key;
+    }
+
+    /**
+     * Attach callback to the pending request with the same key, or create new request
+     * @param pending Pending requests by key. Must be concurrent map
+     * @param key Normalized key of the request
+     * @param callback Callback of the requester
+     * @param creator Called with shared callback, if new request should be created
+     */
+    static void attach(Map<String, SharedCallback> pending, String key, LookupCallback callback, Creator creator){
+        pending.compute(key, (k, shared) -> {
+            if (shared == null){
+                shared = new SharedCallback(pending, k);
+                creator.create(shared);
+            }
+
+            shared.callbacks.add(callback);
+            return shared;
+        });
+    }
+
+    /**
+     * Request which nobody waits for is removed from pending map, so it's not joined after queue skipped it
+     */
+    @Override
+    public boolean isActive() {
+        if (hasActiveCallback()) return true;
+        // Requester could attach after check above, so check is repeated while key is locked
+        return pending.computeIfPresent(key, (k, shared) -> shared == this && !hasActiveCallback() ? null : shared) == this;
+    }
+
+    private boolean hasActiveCallback(){
+        for (LookupCallback callback : callbacks){
+            if (callback.isActive()) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onSuccess(Skin skin) {
+        pending.remove(key, this);
+
+        for (LookupCallback callback : callbacks){
+            if (callback.isActive()) callback.onSuccess(skin);
+        }
+    }
+
+    @Override
+    public void onFailure() {
+        pending.remove(key, this);
+
+        for (LookupCallback callback : callbacks){
+            if (callback.isActive()) callback.onFailure();
+        }
+    }
+
+    @FunctionalInterface
+    interface Creator {
+        void create(SharedCallback callback);
+    }
+}
@@ -0,0 +1,8 @@
+ALTER TABLE skins ADD COLUMN last_seen BIGINT;
+CREATE INDEX skins_last_seen_idx ON skins(last_seen);
+CREATE TABLE IF NOT EXISTS skins_archive(
+    uuid VARCHAR(38) PRIMARY KEY,
+    name VARCHAR(16),
+    default_texture VARCHAR(64),
+    last_seen BIGINT
+);
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS skins_premium(
+    uuid VARCHAR(38) PRIMARY KEY,
+    value VARCHAR(2048) NOT NULL,
+    signature VARCHAR(2048),
+    texture_time BIGINT NOT NULL,
+    fetched_at BIGINT NOT NULL
+);
@@ -0,0 +1,4 @@
+ALTER TABLE skins_lookups ADD COLUMN pending_name VARCHAR(64);
+ALTER TABLE skins_lookups ADD COLUMN claimed_at BIGINT;
+ALTER TABLE skins_lookups ADD COLUMN completed_at BIGINT;
+CREATE UNIQUE INDEX skins_lookups_name_idx ON skins_lookups(pending_name);
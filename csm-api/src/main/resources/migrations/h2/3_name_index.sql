@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS skins_name_idx ON skins(name);
@@ -0,0 +1,5 @@
+DROP TABLE skins;
+ALTER TABLE skins_new RENAME TO skins;
+CREATE UNIQUE INDEX skins_uuid_key ON skins(uuid);
+CREATE INDEX skins_name_lower_idx ON skins(name_lower);
+CREATE INDEX skins_custom_idx ON skins(custom_texture);
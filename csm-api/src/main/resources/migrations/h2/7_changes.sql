@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS skins_changes(
+    id IDENTITY PRIMARY KEY,
+    uuid VARCHAR(38) NOT NULL,
+    node VARCHAR(38) NOT NULL,
+    changed_at BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS skins_changes_time_idx ON skins_changes(changed_at);
@@ -0,0 +1,19 @@
+CREATE TABLE IF NOT EXISTS skins_lookups(
+    id IDENTITY PRIMARY KEY,
+    node VARCHAR(38) NOT NULL,
+    worker VARCHAR(38),
+    type VARCHAR(8) NOT NULL,
+    request VARCHAR(1024) NOT NULL,
+    model VARCHAR(16),
+    status INT NOT NULL,
+    skin_value VARCHAR(2048),
+    skin_signature VARCHAR(2048),
+    created_at BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS skins_lookups_status_idx ON skins_lookups(status, id);
+CREATE INDEX IF NOT EXISTS skins_lookups_node_idx ON skins_lookups(node, status);
+CREATE TABLE IF NOT EXISTS skins_leases(
+    name VARCHAR(32) PRIMARY KEY,
+    node VARCHAR(38) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
@@ -0,0 +1 @@
+CREATE INDEX skins_name_idx ON skins(name);
@@ -0,0 +1,2 @@
+ALTER TABLE skins ADD COLUMN name_lower VARCHAR(16), DROP INDEX skins_name_idx, ADD INDEX skins_name_lower_idx (name_lower);
+UPDATE skins SET name_lower=LOWER(name);
@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS textures(
+    id VARCHAR(64) PRIMARY KEY,
+    value TEXT NOT NULL,
+    signature TEXT
+);
+DROP TABLE IF EXISTS skins_new;
+CREATE TABLE skins_new(
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    uuid VARCHAR(38),
+    name VARCHAR(16),
+    name_lower VARCHAR(16),
+    default_texture VARCHAR(64) NOT NULL,
+    custom_texture VARCHAR(64)
+);
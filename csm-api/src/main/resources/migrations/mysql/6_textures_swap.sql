@@ -0,0 +1,6 @@
+CREATE UNIQUE INDEX skins_uuid_key ON skins_new(uuid);
+CREATE INDEX skins_name_lower_idx ON skins_new(name_lower);
+CREATE INDEX skins_custom_idx ON skins_new(custom_texture);
+DROP TABLE IF EXISTS skins_old;
+RENAME TABLE skins TO skins_old, skins_new TO skins;
+DROP TABLE skins_old;
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS skins_changes(
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    uuid VARCHAR(38) NOT NULL,
+    node VARCHAR(38) NOT NULL,
+    changed_at BIGINT NOT NULL,
+    INDEX skins_changes_time_idx (changed_at)
+);
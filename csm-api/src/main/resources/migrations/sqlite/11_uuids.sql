@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS skins_uuids(
+    name VARCHAR(16) PRIMARY KEY,
+    uuid VARCHAR(38),
+    fetched_at BIGINT NOT NULL
+);
@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS skins_custom_idx ON skins(name) WHERE custom_value IS NOT NULL;
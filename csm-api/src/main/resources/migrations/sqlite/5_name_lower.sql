@@ -0,0 +1,4 @@
+ALTER TABLE skins ADD COLUMN name_lower VARCHAR(16);
+UPDATE skins SET name_lower=LOWER(name);
+DROP INDEX IF EXISTS skins_name_idx;
+CREATE INDEX IF NOT EXISTS skins_name_lower_idx ON skins(name_lower);
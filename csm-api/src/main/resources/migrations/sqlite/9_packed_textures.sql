@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS textures_packed(
+    id VARCHAR(64) PRIMARY KEY,
+    value BLOB NOT NULL,
+    signature BLOB
+);
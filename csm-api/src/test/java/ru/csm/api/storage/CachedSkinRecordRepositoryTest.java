@@ -0,0 +1,149 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.csm.api.player.SkinField;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class CachedSkinRecordRepositoryTest {
+
+    private final UUID uuid = UUID.randomUUID();
+    private final SkinRecord stale = new SkinRecord(uuid, "Player", "old", "old", null, null);
+    private final SkinRecord fresh = new SkinRecord(uuid, "Player", "new", "new", null, null);
+
+    private StubRepository storage;
+    private SkinRecordCache cache;
+    private CachedSkinRecordRepository repository;
+
+    @Before
+    public void setUp(){
+        storage = new StubRepository();
+        cache = new SkinRecordCache(1 << 20, 60000);
+        repository = new CachedSkinRecordRepository(storage, cache);
+    }
+
+    @Test
+    public void loadedRecordIsCached(){
+        storage.record = stale;
+
+        assertSame(stale, repository.loadByUUID(uuid));
+        assertSame(stale, cache.get(uuid));
+    }
+
+    @Test
+    public void writeDuringLoadIsNotOverwritten(){
+        storage.record = stale;
+        // Other thread saves the record after the row was read, but before the read is cached
+        storage.duringLoad = () -> repository.save(fresh);
+
+        assertSame(stale, repository.loadByUUID(uuid));
+        assertSame(fresh, cache.get(uuid));
+    }
+
+    @Test
+    public void invalidationDuringLoadIsNotOverwritten(){
+        storage.record = stale;
+        storage.duringLoad = () -> cache.invalidate(uuid);
+
+        repository.loadByName("player");
+
+        assertNull(cache.get(uuid));
+    }
+
+    @Test
+    public void failedSaveIsNotCached(){
+        storage.saved = false;
+        repository.save(fresh);
+
+        assertNull(cache.get(uuid));
+    }
+
+    @Test
+    public void galleryInvalidationDuringLoadIsNotOverwritten(){
+        storage.record = new SkinRecord(uuid, "Player", "v", "s", "custom", "custom");
+        storage.duringLoad = cache::invalidateGallery;
+
+        assertEquals(1, repository.loadGalleryPage(0, 10).size());
+        assertNull(cache.getGalleryPage(0, 10));
+
+        storage.duringLoad = null;
+        repository.loadGalleryPage(0, 10);
+
+        assertNotNull(cache.getGalleryPage(0, 10));
+    }
+
+    private static class StubRepository implements SkinRecordRepository {
+
+        private SkinRecord record;
+        private Runnable duringLoad;
+        private boolean saved = true;
+
+        private SkinRecord load(){
+            SkinRecord loaded = record;
+            if (duringLoad != null) duringLoad.run();
+            return loaded;
+        }
+
+        @Override
+        public SkinRecord loadByUUID(UUID uuid) {
+            return load();
+        }
+
+        @Override
+        public SkinRecord loadByName(String name) {
+            return load();
+        }
+
+        @Override
+        public void save(SkinRecord record) {
+            save(record, EnumSet.allOf(SkinField.class));
+        }
+
+        @Override
+        public void save(SkinRecord record, Set<SkinField> fields) {
+            saveAll(Collections.singletonMap(record, fields));
+        }
+
+        @Override
+        public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+            if (saved) record = records.keySet().iterator().next();
+            return saved;
+        }
+
+        @Override
+        public void resetCustomSkin(UUID uuid) {}
+
+        @Override
+        public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+            return Collections.singletonList(load());
+        }
+
+        @Override
+        public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) {
+            consumer.accept(record);
+        }
+    }
+}
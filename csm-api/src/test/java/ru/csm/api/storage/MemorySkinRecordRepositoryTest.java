@@ -0,0 +1,176 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.csm.api.logging.JULHandler;
+import ru.csm.api.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class MemorySkinRecordRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpLogger(){
+        Logger.set(new JULHandler(java.util.logging.Logger.getGlobal()));
+    }
+
+    @Test
+    public void journalIsReplayedOnStart() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID uuid = UUID.randomUUID();
+
+        MemorySkinRecordRepository repository = new MemorySkinRecordRepository(dir);
+        repository.save(record(uuid, "Player", "custom"));
+        repository.resetCustomSkin(uuid);
+
+        SkinRecord loaded = new MemorySkinRecordRepository(dir).loadByName("player");
+
+        assertNotNull(loaded);
+        assertEquals(uuid, loaded.getUUID());
+        assertNull(loaded.getCustomValue());
+    }
+
+    @Test
+    public void snapshotAndJournalAreCombined() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        MemorySkinRecordRepository repository = new MemorySkinRecordRepository(dir);
+        repository.save(record(first, "First", null));
+        repository.compact();
+        repository.save(record(second, "Second", "custom"));
+
+        MemorySkinRecordRepository reopened = new MemorySkinRecordRepository(dir);
+
+        assertEquals(2, reopened.size());
+        assertEquals("custom", reopened.loadByUUID(second).getCustomValue());
+    }
+
+    @Test
+    public void incompleteEntryIsRemoved() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID kept = UUID.randomUUID();
+        UUID torn = UUID.randomUUID();
+
+        MemorySkinRecordRepository repository = new MemorySkinRecordRepository(dir);
+        repository.save(record(kept, "Kept", null));
+        long valid = journalSize(dir);
+        repository.save(record(torn, "Torn", null));
+
+        truncateJournal(dir, journalSize(dir) - 10);
+
+        MemorySkinRecordRepository reopened = new MemorySkinRecordRepository(dir);
+
+        assertEquals(1, reopened.size());
+        assertNotNull(reopened.loadByUUID(kept));
+        assertEquals(valid, journalSize(dir));
+    }
+
+    @Test
+    public void damagedLengthIsEndOfJournal() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID uuid = UUID.randomUUID();
+
+        MemorySkinRecordRepository repository = new MemorySkinRecordRepository(dir);
+        repository.save(record(uuid, "Player", null));
+        long valid = journalSize(dir);
+
+        appendJournal(dir, ByteBuffer.allocate(16).putInt(Integer.MAX_VALUE).putInt(0).putLong(42));
+
+        assertEquals(1, new MemorySkinRecordRepository(dir).size());
+        assertEquals(valid, journalSize(dir));
+
+        appendJournal(dir, ByteBuffer.allocate(8).putInt(-5).putInt(0));
+
+        assertEquals(1, new MemorySkinRecordRepository(dir).size());
+        assertEquals(valid, journalSize(dir));
+    }
+
+    @Test
+    public void entriesAfterChecksumMismatchAreRemoved() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID first = UUID.randomUUID();
+
+        MemorySkinRecordRepository repository = new MemorySkinRecordRepository(dir);
+        repository.save(record(first, "First", null));
+        long damaged = journalSize(dir);
+        repository.save(record(UUID.randomUUID(), "Second", null));
+        repository.save(record(UUID.randomUUID(), "Third", null));
+
+        // Byte in the payload of the second entry
+        try (FileChannel channel = FileChannel.open(journal(dir), StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), damaged + 20);
+        }
+
+        MemorySkinRecordRepository reopened = new MemorySkinRecordRepository(dir);
+
+        assertEquals(1, reopened.size());
+        assertEquals(damaged, journalSize(dir));
+
+        // Entries written after recovery are appended to the valid part
+        UUID next = UUID.randomUUID();
+        reopened.save(record(next, "Next", null));
+
+        assertNotNull(new MemorySkinRecordRepository(dir).loadByUUID(next));
+    }
+
+    private static SkinRecord record(UUID uuid, String name, String custom){
+        return new SkinRecord(uuid, name, "value-" + name, "signature-" + name,
+                custom, custom != null ? "signature-" + custom : null);
+    }
+
+    private static Path journal(Path dir){
+        return dir.resolve("skins.journal");
+    }
+
+    private static long journalSize(Path dir) throws IOException {
+        return Files.size(journal(dir));
+    }
+
+    private static void truncateJournal(Path dir, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal(dir), StandardOpenOption.WRITE)){
+            channel.truncate(size);
+        }
+    }
+
+    private static void appendJournal(Path dir, ByteBuffer data) throws IOException {
+        data.flip();
+
+        try (FileChannel channel = FileChannel.open(journal(dir), StandardOpenOption.WRITE, StandardOpenOption.APPEND)){
+            channel.write(data);
+        }
+    }
+}
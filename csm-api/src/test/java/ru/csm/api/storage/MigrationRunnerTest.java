@@ -0,0 +1,186 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.csm.api.logging.JULHandler;
+import ru.csm.api.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MigrationRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Database database;
+
+    @BeforeClass
+    public static void setUpLogger(){
+        Logger.set(new JULHandler(java.util.logging.Logger.getGlobal()));
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        database = new H2Database(folder.getRoot().toPath().resolve("skins"), "sa", "",
+                new PoolSettings(2, 5000, 600000, "", 0));
+    }
+
+    @After
+    public void tearDown(){
+        database.closeConnection();
+    }
+
+    @Test
+    public void migrationsAreAppliedInVersionOrder() throws SQLException {
+        List<Integer> applied = new ArrayList<>();
+
+        new MigrationRunner(database, Arrays.asList(
+                new RecordingMigration(3, applied),
+                new RecordingMigration(1, applied),
+                new RecordingMigration(2, applied)
+        )).migrate();
+
+        assertEquals(Arrays.asList(1, 2, 3), applied);
+        assertEquals(Arrays.asList(1, 2, 3), storedVersions());
+    }
+
+    @Test
+    public void appliedMigrationsAreSkipped() throws SQLException {
+        List<Integer> applied = new ArrayList<>();
+
+        new MigrationRunner(database, Arrays.asList(new RecordingMigration(1, applied))).migrate();
+        new MigrationRunner(database, Arrays.asList(
+                new RecordingMigration(1, applied),
+                new RecordingMigration(2, applied)
+        )).migrate();
+
+        assertEquals(Arrays.asList(1, 2), applied);
+        assertEquals(Arrays.asList(1, 2), storedVersions());
+    }
+
+    @Test
+    public void failedMigrationStopsNextOnes() throws SQLException {
+        List<Integer> applied = new ArrayList<>();
+        Migration failing = new RecordingMigration(2, applied){
+            @Override
+            public void apply(Connection connection, DatabaseType type) throws SQLException {
+                throw new SQLException("Broken migration");
+            }
+        };
+
+        try {
+            new MigrationRunner(database, Arrays.asList(
+                    new RecordingMigration(1, applied),
+                    failing,
+                    new RecordingMigration(3, applied)
+            )).migrate();
+            fail("Migration error is not thrown");
+        } catch (SQLException e){
+            assertTrue(e.getMessage().contains("Cannot apply migration 2"));
+        }
+
+        assertEquals(Collections.singletonList(1), applied);
+        assertEquals(Collections.singletonList(1), storedVersions());
+
+        // Fixed migration is applied on the next start
+        new MigrationRunner(database, Arrays.asList(
+                new RecordingMigration(1, applied),
+                new RecordingMigration(2, applied),
+                new RecordingMigration(3, applied)
+        )).migrate();
+
+        assertEquals(Arrays.asList(1, 2, 3), storedVersions());
+    }
+
+    @Test
+    public void schemaMigrationsAreIdempotent() throws SQLException {
+        Database sqlite = new SQLiteDatabase(folder.getRoot().getAbsolutePath(), "skins", "", "",
+                new PoolSettings(2, 5000, 600000, "", 0));
+
+        try {
+            for (Database db : Arrays.asList(database, sqlite)){
+                new MigrationRunner(db, Migrations.list()).migrate();
+                new MigrationRunner(db, Migrations.list()).migrate();
+
+                try (Connection connection = db.getConnection();
+                     Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT COUNT(*), MAX(version) FROM " + Tables.SCHEMA_VERSION)){
+                    result.next();
+                    assertEquals(Migrations.list().size(), result.getInt(1));
+                    assertEquals(Migrations.list().get(Migrations.list().size() - 1).getVersion(), result.getInt(2));
+                }
+            }
+        } finally {
+            sqlite.closeConnection();
+        }
+    }
+
+    private List<Integer> storedVersions() throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+
+        try (Connection connection = database.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT version FROM " + Tables.SCHEMA_VERSION + " ORDER BY version")){
+            while (result.next()){
+                versions.add(result.getInt(1));
+            }
+        }
+
+        return versions;
+    }
+
+    private static class RecordingMigration implements Migration {
+
+        private final int version;
+        private final List<Integer> applied;
+
+        RecordingMigration(int version, List<Integer> applied){
+            this.version = version;
+            this.applied = applied;
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+
+        @Override
+        public String getDescription() {
+            return "test " + version;
+        }
+
+        @Override
+        public void apply(Connection connection, DatabaseType type) throws SQLException {
+            applied.add(version);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.csm.api.logging.JULHandler;
+import ru.csm.api.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class NativeSkinRecordRepositoryTest {
+
+    private static final int HEADER_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpLogger(){
+        Logger.set(new JULHandler(java.util.logging.Logger.getGlobal()));
+    }
+
+    @Test
+    public void logIsReplayedOnStart() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID uuid = UUID.randomUUID();
+
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+        repository.save(record(uuid, "Player", "first"));
+        repository.save(record(uuid, "Renamed", "second"));
+        repository.resetCustomSkin(uuid);
+        repository.close();
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertEquals(1, reopened.size());
+        assertNull(reopened.loadByName("player"));
+        assertNull(reopened.loadByName("renamed").getCustomValue());
+        assertEquals("value", reopened.loadByUUID(uuid).getDefaultValue());
+        reopened.close();
+    }
+
+    @Test
+    public void bytesAfterEndAreIgnored() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID uuid = UUID.randomUUID();
+
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+        repository.save(record(uuid, "Player", null));
+        repository.close();
+
+        // Entry which was written, but its flush did not update the end
+        try (FileChannel channel = FileChannel.open(logFile(dir), StandardOpenOption.WRITE)){
+            channel.write(entry(record(UUID.randomUUID(), "Lost", null)), end(dir));
+        }
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertEquals(1, reopened.size());
+        assertNull(reopened.loadByName("lost"));
+        reopened.close();
+    }
+
+    @Test
+    public void truncatedEntryIsRemoved() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID kept = UUID.randomUUID();
+        UUID torn = UUID.randomUUID();
+
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+        repository.save(record(kept, "Kept", null));
+        int valid = end(dir);
+        repository.save(record(torn, "Torn", "custom"));
+        repository.close();
+
+        // Only half of the last entry reached the disk
+        try (FileChannel channel = FileChannel.open(logFile(dir), StandardOpenOption.WRITE)){
+            int end = end(dir);
+            channel.write(ByteBuffer.allocate(end - valid - (end - valid) / 2), valid + (end - valid) / 2);
+        }
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertNotNull(reopened.loadByUUID(kept));
+        assertNull(reopened.loadByUUID(torn));
+        assertEquals(valid, end(dir));
+
+        UUID next = UUID.randomUUID();
+        reopened.save(record(next, "Next", null));
+        reopened.close();
+
+        NativeSkinRecordRepository again = new NativeSkinRecordRepository(dir);
+
+        assertEquals(2, again.size());
+        assertNotNull(again.loadByUUID(next));
+        again.close();
+    }
+
+    @Test
+    public void corruptedEntryEndsLog() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        List<UUID> uuids = new ArrayList<>();
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+
+        for (int i = 0; i < 3; i++){
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            repository.save(record(uuid, "Player" + i, null));
+        }
+
+        repository.close();
+
+        // Flip a byte in the payload of the second entry, so its checksum does not match
+        try (FileChannel channel = FileChannel.open(logFile(dir), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, HEADER_SIZE);
+            int second = HEADER_SIZE + 8 + length.getInt(0);
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), second + 8 + 20);
+        }
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertEquals(1, reopened.size());
+        assertNotNull(reopened.loadByUUID(uuids.get(0)));
+        assertNull(reopened.loadByUUID(uuids.get(1)));
+        assertNull(reopened.loadByUUID(uuids.get(2)));
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsLatestRecords() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        List<UUID> uuids = new ArrayList<>();
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+
+        for (int i = 0; i < 100; i++){
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            repository.save(record(uuid, "Player" + i, "first"));
+            repository.save(record(uuid, "Player" + i, "second"));
+        }
+
+        repository.compact();
+        repository.save(record(uuids.get(0), "Player0", "third"));
+        repository.close();
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertEquals(100, reopened.size());
+        assertEquals("third", reopened.loadByUUID(uuids.get(0)).getCustomValue());
+        assertEquals("second", reopened.loadByName("player99").getCustomValue());
+        assertEquals("skins-1.log", logFile(dir).getFileName().toString());
+        reopened.close();
+    }
+
+    @Test
+    public void legacyLogIsUpgraded() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        UUID uuid = UUID.randomUUID();
+
+        // Version 1 header had no end of the log
+        try (FileChannel channel = FileChannel.open(dir.resolve("skins-0.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)){
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(0x43534D4C).putInt(1).flip();
+            channel.write(header);
+            channel.write(entry(record(uuid, "Legacy", "custom")));
+        }
+
+        NativeSkinRecordRepository repository = new NativeSkinRecordRepository(dir);
+
+        assertEquals("custom", repository.loadByName("legacy").getCustomValue());
+        repository.close();
+        assertEquals("skins-1.log", logFile(dir).getFileName().toString());
+
+        NativeSkinRecordRepository reopened = new NativeSkinRecordRepository(dir);
+
+        assertNotNull(reopened.loadByUUID(uuid));
+        reopened.close();
+    }
+
+    private static SkinRecord record(UUID uuid, String name, String custom){
+        return new SkinRecord(uuid, name, "value", "signature", custom, custom != null ? "signature" : null);
+    }
+
+    private static Path logFile(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)){
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElse(null);
+        }
+    }
+
+    private static int end(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile(dir), StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            return header.getInt(8);
+        }
+    }
+
+    /**
+     * Entry in the format of the log: length and checksum of the payload, UUID and length prefixed strings
+     */
+    private static ByteBuffer entry(SkinRecord record){
+        String[] strings = {record.getName(), record.getDefaultValue(), record.getDefaultSignature(),
+                record.getCustomValue(), record.getCustomSignature()};
+        int size = 16;
+
+        for (String value : strings){
+            size += 4 + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putLong(record.getUUID().getMostSignificantBits());
+        payload.putLong(record.getUUID().getLeastSignificantBits());
+
+        for (String value : strings){
+            if (value == null){
+                payload.putInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                payload.putInt(bytes.length).put(bytes);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+
+        ByteBuffer entry = ByteBuffer.allocate(8 + size);
+        entry.putInt(size).putInt((int) crc.getValue()).put(payload.array()).flip();
+        return entry;
+    }
+}
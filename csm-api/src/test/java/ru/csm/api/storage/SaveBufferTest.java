@@ -0,0 +1,179 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.csm.api.player.SkinField;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class SaveBufferTest {
+
+    private final UUID uuid = UUID.randomUUID();
+
+    private RecordingRepository repository;
+    private SaveBuffer buffer;
+
+    @Before
+    public void setUp(){
+        repository = new RecordingRepository();
+        buffer = new SaveBuffer(repository, 3);
+    }
+
+    @Test
+    public void savesOfPlayerAreCoalesced(){
+        SkinRecord first = new SkinRecord(uuid, "Player", "first", "sign", null, null);
+        SkinRecord second = new SkinRecord(uuid, "Player", "second", "sign", "custom", "sign");
+
+        buffer.add(first, EnumSet.of(SkinField.DEFAULT_SKIN));
+        buffer.add(second, EnumSet.of(SkinField.CUSTOM_SKIN));
+
+        assertEquals(1, buffer.size());
+        assertSame(second, buffer.getPending(uuid));
+
+        buffer.flush();
+
+        assertEquals(1, repository.batches.size());
+        Map<SkinRecord, Set<SkinField>> batch = repository.batches.get(0);
+        assertEquals(Collections.singleton(second), batch.keySet());
+        assertEquals(EnumSet.of(SkinField.DEFAULT_SKIN, SkinField.CUSTOM_SKIN), batch.get(second));
+        assertEquals(0, buffer.size());
+        assertNull(buffer.getPending(uuid));
+    }
+
+    @Test
+    public void unchangedRecordIsNotAdded(){
+        assertFalse(buffer.add(new SkinRecord(uuid, "Player", "v", "s", null, null), EnumSet.noneOf(SkinField.class)));
+
+        buffer.flush();
+
+        assertTrue(repository.batches.isEmpty());
+    }
+
+    @Test
+    public void fullBufferRequestsFlush(){
+        assertFalse(buffer.add(record(), EnumSet.of(SkinField.NAME)));
+        assertFalse(buffer.add(record(), EnumSet.of(SkinField.NAME)));
+        assertTrue(buffer.add(record(), EnumSet.of(SkinField.NAME)));
+    }
+
+    @Test
+    public void failedFlushIsRetriedWithNewerChanges(){
+        SkinRecord old = new SkinRecord(uuid, "Player", "old", "sign", null, null);
+        SkinRecord newer = new SkinRecord(uuid, "Player", "old", "sign", "custom", "sign");
+
+        buffer.add(old, EnumSet.of(SkinField.DEFAULT_SKIN));
+        repository.saved = false;
+        // Player changed again while the failed batch was written
+        repository.duringSave = () -> buffer.add(newer, EnumSet.of(SkinField.CUSTOM_SKIN));
+        buffer.flush();
+
+        assertTrue(repository.batches.isEmpty());
+        assertSame(newer, buffer.getPending(uuid));
+
+        repository.saved = true;
+        repository.duringSave = null;
+        buffer.flush();
+
+        Map<SkinRecord, Set<SkinField>> batch = repository.batches.get(0);
+        assertEquals(Collections.singleton(newer), batch.keySet());
+        assertEquals(EnumSet.of(SkinField.DEFAULT_SKIN, SkinField.CUSTOM_SKIN), batch.get(newer));
+    }
+
+    @Test
+    public void recordIsPendingWhileFlushing(){
+        SkinRecord record = record();
+        buffer.add(record, EnumSet.of(SkinField.NAME));
+
+        SkinRecord[] pending = new SkinRecord[1];
+        repository.duringSave = () -> pending[0] = buffer.getPending(record.getUUID());
+        buffer.flush();
+
+        assertSame(record, pending[0]);
+    }
+
+    @Test
+    public void seenPlayersAreWrittenOnFlush(){
+        buffer.markSeen(uuid);
+        buffer.flush();
+
+        assertEquals(Collections.singleton(uuid), repository.seen);
+        assertTrue(repository.batches.isEmpty());
+    }
+
+    private static SkinRecord record(){
+        return new SkinRecord(UUID.randomUUID(), "Player", "value", "sign", null, null);
+    }
+
+    private static class RecordingRepository implements SkinRecordRepository {
+
+        private final List<Map<SkinRecord, Set<SkinField>>> batches = new ArrayList<>();
+        private final Set<UUID> seen = new HashSet<>();
+        private Runnable duringSave;
+        private boolean saved = true;
+
+        @Override
+        public SkinRecord loadByUUID(UUID uuid) {
+            return null;
+        }
+
+        @Override
+        public SkinRecord loadByName(String name) {
+            return null;
+        }
+
+        @Override
+        public void save(SkinRecord record) {
+            save(record, EnumSet.allOf(SkinField.class));
+        }
+
+        @Override
+        public void save(SkinRecord record, Set<SkinField> fields) {
+            saveAll(Collections.singletonMap(record, fields));
+        }
+
+        @Override
+        public boolean saveAll(Map<SkinRecord, Set<SkinField>> records) {
+            if (duringSave != null) duringSave.run();
+            if (saved) batches.add(new LinkedHashMap<>(records));
+            return saved;
+        }
+
+        @Override
+        public void resetCustomSkin(UUID uuid) {}
+
+        @Override
+        public void updateLastSeen(Collection<UUID> uuids, long time) {
+            seen.addAll(uuids);
+        }
+
+        @Override
+        public List<SkinRecord> loadGalleryPage(int offset, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void forEachRecord(UUID after, Consumer<SkinRecord> consumer) {}
+    }
+}
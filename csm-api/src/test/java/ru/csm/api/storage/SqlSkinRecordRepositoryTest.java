@@ -0,0 +1,246 @@
+/*
+ * Custom Skins Manager
+ * Copyright (C) 2020  Nanit
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ru.csm.api.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ru.csm.api.logging.JULHandler;
+import ru.csm.api.logging.Logger;
+import ru.csm.api.player.SkinField;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class SqlSkinRecordRepositoryTest {
+
+    private static final String TEXTURE = Base64.getEncoder().encodeToString(
+            "{\"textures\":{\"SKIN\":{\"url\":\"http://textures.minecraft.net/texture/1\"}}}".getBytes(StandardCharsets.UTF_8));
+    private static final String SIGNATURE = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> dialects(){
+        return Arrays.asList(new Object[][]{
+                {"H2", DatabaseType.H2, true},
+                {"SQLite", DatabaseType.SQLITE, true},
+                {"SQLite without upsert", DatabaseType.SQLITE, false}
+        });
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DatabaseType type;
+    private final boolean upsertSupported;
+
+    private Database database;
+
+    public SqlSkinRecordRepositoryTest(String name, DatabaseType type, boolean upsertSupported){
+        this.type = type;
+        this.upsertSupported = upsertSupported;
+    }
+
+    @BeforeClass
+    public static void setUpLogger(){
+        Logger.set(new JULHandler(java.util.logging.Logger.getGlobal()));
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        PoolSettings settings = new PoolSettings(4, 5000, 600000, "", 0);
+
+        database = type == DatabaseType.H2
+                ? new H2Database(folder.getRoot().toPath().resolve("skins"), "sa", "", settings)
+                : new SQLiteDatabase(folder.getRoot().getAbsolutePath(), "skins", "", "", settings);
+
+        new MigrationRunner(database, Migrations.list()).migrate();
+    }
+
+    @After
+    public void tearDown(){
+        database.closeConnection();
+    }
+
+    @Test
+    public void partialMaskInsertsWholeRecord(){
+        SqlSkinRecordRepository repository = repository(false);
+        UUID uuid = UUID.randomUUID();
+
+        repository.save(new SkinRecord(uuid, "Player", "default", "sign", "custom", "sign"),
+                EnumSet.of(SkinField.CUSTOM_SKIN));
+
+        assertRecord(repository.loadByUUID(uuid), "Player", "default", "custom");
+    }
+
+    @Test
+    public void everyMaskUpdatesOnlyItsColumns(){
+        SqlSkinRecordRepository repository = repository(false);
+
+        for (Set<SkinField> fields : masks()){
+            UUID uuid = UUID.randomUUID();
+            repository.save(new SkinRecord(uuid, "Player", "default", "sign", null, null));
+            repository.save(new SkinRecord(uuid, "Changed", "default2", "sign", "custom2", "sign"), fields);
+
+            SkinRecord loaded = repository.loadByUUID(uuid);
+
+            assertRecord(loaded,
+                    fields.contains(SkinField.NAME) ? "Changed" : "Player",
+                    fields.contains(SkinField.DEFAULT_SKIN) ? "default2" : "default",
+                    fields.contains(SkinField.CUSTOM_SKIN) ? "custom2" : null);
+        }
+    }
+
+    @Test
+    public void batchWithDifferentMasks(){
+        SqlSkinRecordRepository repository = repository(false);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        repository.save(new SkinRecord(first, "First", "default", "sign", "custom", "sign"));
+
+        Map<SkinRecord, Set<SkinField>> batch = new LinkedHashMap<>();
+        batch.put(new SkinRecord(first, "First", "default", "sign", null, null), EnumSet.of(SkinField.CUSTOM_SKIN));
+        batch.put(new SkinRecord(second, "Second", "default", "sign", null, null), EnumSet.of(SkinField.NAME));
+
+        assertTrue(repository.saveAll(batch));
+        assertRecord(repository.loadByUUID(first), "First", "default", null);
+        assertRecord(repository.loadByName("second"), "Second", "default", null);
+    }
+
+    @Test
+    public void resetCustomSkinKeepsDefault(){
+        SqlSkinRecordRepository repository = repository(false);
+        UUID uuid = UUID.randomUUID();
+
+        repository.save(new SkinRecord(uuid, "Player", "default", "sign", "custom", "sign"));
+        repository.resetCustomSkin(uuid);
+
+        assertRecord(repository.loadByUUID(uuid), "Player", "default", null);
+    }
+
+    @Test
+    public void texturesRoundTrip() throws SQLException {
+        SqlSkinRecordRepository repository = repository(false);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        repository.save(new SkinRecord(first, "First", TEXTURE, SIGNATURE, null, null));
+        repository.save(new SkinRecord(second, "Second", TEXTURE, SIGNATURE, TEXTURE, SIGNATURE));
+
+        // Loaded by new repository, so textures are read from database instead of texture cache
+        SkinRecord loaded = repository(false).loadByUUID(second);
+
+        assertEquals(TEXTURE, loaded.getDefaultValue());
+        assertEquals(SIGNATURE, loaded.getDefaultSignature());
+        assertEquals(TEXTURE, loaded.getCustomValue());
+        assertEquals(SIGNATURE, loaded.getCustomSignature());
+        assertEquals(1, count(Tables.TEXTURES));
+    }
+
+    @Test
+    public void packedTexturesRoundTrip() throws SQLException {
+        SqlSkinRecordRepository repository = repository(true);
+        UUID binary = UUID.randomUUID();
+        UUID text = UUID.randomUUID();
+
+        repository.save(new SkinRecord(binary, "Binary", TEXTURE, SIGNATURE, null, null));
+        // Not base64, so it's stored as text
+        repository.save(new SkinRecord(text, "Text", "not base64!", null, null, null));
+
+        SqlSkinRecordRepository reader = repository(false);
+
+        assertRecord(reader.loadByUUID(binary), "Binary", TEXTURE, null);
+        assertEquals(SIGNATURE, reader.loadByUUID(binary).getDefaultSignature());
+        assertRecord(reader.loadByUUID(text), "Text", "not base64!", null);
+        assertNull(reader.loadByUUID(text).getDefaultSignature());
+        assertEquals(2, count(Tables.PACKED_TEXTURES));
+        assertEquals(0, count(Tables.TEXTURES));
+    }
+
+    @Test
+    public void recordsAreIteratedWithTextures() throws SQLException {
+        SqlSkinRecordRepository repository = repository(true);
+        List<UUID> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++){
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            repository.save(new SkinRecord(uuid, "Player" + i, TEXTURE, SIGNATURE, i % 2 == 0 ? "custom" + i : null, null));
+        }
+
+        List<SkinRecord> records = new ArrayList<>();
+        repository.forEachRecord(null, records::add);
+
+        assertEquals(uuids.size(), records.size());
+
+        for (SkinRecord record : records){
+            assertEquals(TEXTURE, record.getDefaultValue());
+        }
+    }
+
+    private SqlSkinRecordRepository repository(boolean packTextures){
+        return new SqlSkinRecordRepository(database, null, packTextures, upsertSupported);
+    }
+
+    private int count(String table) throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)){
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
+    private static List<Set<SkinField>> masks(){
+        List<Set<SkinField>> masks = new ArrayList<>();
+        SkinField[] fields = SkinField.values();
+
+        for (int mask = 1; mask < 1 << fields.length; mask++){
+            Set<SkinField> set = EnumSet.noneOf(SkinField.class);
+
+            for (SkinField field : fields){
+                if ((mask & (1 << field.ordinal())) != 0) set.add(field);
+            }
+
+            masks.add(set);
+        }
+
+        return masks;
+    }
+
+    private static void assertRecord(SkinRecord record, String name, String defaultValue, String customValue){
+        assertNotNull(record);
+        assertEquals(name, record.getName());
+        assertEquals(defaultValue, record.getDefaultValue());
+        assertEquals(customValue, record.getCustomValue());
+    }
+}
@@ -58,7 +58,6 @@ import ru.csm.bukkit.services.ProxySkinsAPI;
 import ru.csm.bukkit.services.SpigotSkinsAPI;
 import ru.csm.bukkit.services.MenuManager;
 import ru.csm.bukkit.util.BukkitTasks;
-import ru.csm.api.utils.FileUtil;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -67,6 +66,7 @@ import java.sql.SQLException;
 public class SpigotSkinsManager extends JavaPlugin {
 
     private Database database;
+    private SkinsAPI<Player> api;
 
     @Override
     public void onLoad() {
@@ -80,10 +80,12 @@ public class SpigotSkinsManager extends JavaPlugin {
             Path libsFolder = Paths.get(getDataFolder().toString(), "libs");
 
             try {
+                // Storages without SQL database don't need JDBC driver
+                if (!Storages.isSql(readDatabaseType())) return;
+
                 LibLoader libLoader = new LibLoader(this, libsFolder);
 
                 libLoader.download(Dependency.H2.getName(), Dependency.H2.getUrl());
-                libLoader.download(Dependency.DBCP.getName(), Dependency.DBCP.getUrl());
                 libLoader.load(libsFolder);
             } catch (Exception e){
                 Logger.severe("Cannot load library: " + e.getMessage());
@@ -91,10 +93,19 @@ public class SpigotSkinsManager extends JavaPlugin {
         }
     }
 
+    private String readDatabaseType() throws Exception {
+        Configuration configurationFile = YamlConfiguration.builder()
+                .source(ConfigSources.resource("/bukkit/config.yml", this).copyTo(getDataFolder().toPath()))
+                .build();
+
+        configurationFile.reload();
+        return configurationFile.getNode("database", "type").getString("h2");
+    }
+
     @Override
     public void onEnable(){
         try{
-            new Metrics(this, 7375);
+            Metrics metrics = new Metrics(this, 7375);
 
             registerSerializers();
 
@@ -127,7 +138,12 @@ public class SpigotSkinsManager extends JavaPlugin {
                 return;
             }
 
-            SkinsAPI<Player> api = new SpigotSkinsAPI(database, config, config.getLanguage(), menuManager);
+            SpigotSkinsAPI spigotApi = new SpigotSkinsAPI(database, config, config.getLanguage(), menuManager);
+            api = spigotApi;
+
+            if (spigotApi.getRetentionTask() != null){
+                metrics.addCustomChart(new Metrics.SingleLineChart("removed_inactive_players", spigotApi.getRetentionTask()::pollRemoved));
+            }
 
             BukkitTasks.runTaskTimerAsync(SkinHash::clean, 0, 900); // 30 sec
 
@@ -144,7 +160,7 @@ public class SpigotSkinsManager extends JavaPlugin {
                 Placeholders.init();
             }
 
-            Commands.init(this, api);
+            Commands.init(this, api, config);
         } catch (Exception e){
             Logger.severe("Cannot enable plugin: " + e.getMessage());
         }
@@ -152,6 +168,12 @@ public class SpigotSkinsManager extends JavaPlugin {
 
     @Override
     public void onDisable(){
+        if (api != null){
+            api.getAsyncDatabase().shutdown();
+            api.getSaveBuffer().flush();
+            api.getSkinRepository().close();
+        }
+
         if(database != null){
             database.closeConnection();
         }
@@ -166,15 +188,18 @@ public class SpigotSkinsManager extends JavaPlugin {
     private void setupDatabase(SkinsConfig conf) throws SQLException {
         String type = conf.getDbType().toLowerCase();
 
+        // Records are stored without SQL database
+        if (!Storages.isSql(type)) return;
+
         switch (type) {
             case "h2": {
                 Path path = Paths.get(getDataFolder().getAbsolutePath(), "skins");
-                this.database = new H2Database(path, conf.getDbUser(), conf.getDbPassword());
+                this.database = new H2Database(path, conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings());
                 break;
             }
             case "sqlite": {
                 String path = getDataFolder().getAbsolutePath();
-                this.database = new SQLiteDatabase(path, conf.getDbName(), conf.getDbUser(), conf.getDbPassword());
+                this.database = new SQLiteDatabase(path, conf.getDbName(), conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings());
                 break;
             }
             case "mysql": {
@@ -183,13 +208,15 @@ public class SpigotSkinsManager extends JavaPlugin {
                 String dbname = conf.getDbName();
                 String user = conf.getDbUser();
                 String password = conf.getDbPassword();
-                this.database = new MySQLDatabase(host, port, dbname, user, password);
+                this.database = new MySQLDatabase(host, port, dbname, user, password, conf.getPoolSettings(),
+                        conf.getReplicaHost(), conf.getReplicaPort(), conf.getReplicaMaxLag() * 1000L);
                 break;
             }
             default:
                 throw new SQLException("Undefined database type: " + type);
         }
 
-        this.database.executeSQL(FileUtil.readResourceContent("/tables/" + type + "/skins.sql"));
+        new MigrationRunner(this.database, Migrations.list()).migrate();
+        PackedTextures.convert(this.database, conf.isPackTextures());
     }
 }
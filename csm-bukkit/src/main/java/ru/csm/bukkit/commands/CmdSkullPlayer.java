@@ -6,9 +6,9 @@ import napi.commands.parsed.CommandContext;
 import napi.commands.parsed.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import ru.csm.api.player.Head;
 import ru.csm.api.services.SkinsAPI;
 import ru.csm.bukkit.menu.item.Skull;
+import ru.csm.bukkit.util.BukkitTasks;
 
 public class CmdSkullPlayer implements CommandExecutor {
 
@@ -24,16 +24,16 @@ public class CmdSkullPlayer implements CommandExecutor {
 
         Player player = sender.getSender();
         Player targetPlayer = ctx.<Player>get("player").get();
-        Head head = api.getPlayerHead(targetPlayer.getName());
-
-        if (head != null){
-            ItemStack item = Skull.getCustomSkull(head.getUrl());
-            player.getInventory().addItem(item);
-            player.sendMessage(api.getLang().of("player.skull.received"));
-            return;
-        }
-
-        player.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+        api.getPlayerHead(targetPlayer.getName()).thenAccept(head -> BukkitTasks.runTask(() -> {
+            if (head != null){
+                ItemStack item = Skull.getCustomSkull(head.getUrl());
+                player.getInventory().addItem(item);
+                player.sendMessage(api.getLang().of("player.skull.received"));
+                return;
+            }
+
+            player.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+        }));
     }
 
 }
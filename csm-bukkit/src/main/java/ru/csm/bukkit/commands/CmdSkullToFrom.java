@@ -6,9 +6,9 @@ import napi.commands.parsed.CommandContext;
 import napi.commands.parsed.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import ru.csm.api.player.Head;
 import ru.csm.api.services.SkinsAPI;
 import ru.csm.bukkit.menu.item.Skull;
+import ru.csm.bukkit.util.BukkitTasks;
 
 public class CmdSkullToFrom implements CommandExecutor {
 
@@ -23,15 +23,15 @@ public class CmdSkullToFrom implements CommandExecutor {
         Player player = ctx.<Player>get("target").get();
         Player targetPlayer = ctx.<Player>get("username").get();
 
-        Head head = api.getPlayerHead(targetPlayer.getName());
+        api.getPlayerHead(targetPlayer.getName()).thenAccept(head -> BukkitTasks.runTask(() -> {
+            if (head != null){
+                ItemStack item = Skull.getCustomSkull(head.getUrl());
+                player.getInventory().addItem(item);
+                return;
+            }
 
-        if (head != null){
-            ItemStack item = Skull.getCustomSkull(head.getUrl());
-            player.getInventory().addItem(item);
-            return;
-        }
-
-        sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+            sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+        }));
     }
 
 }
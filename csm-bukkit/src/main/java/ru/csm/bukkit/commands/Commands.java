@@ -8,12 +8,13 @@ import napi.commands.manager.CommandManager;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
 
 public final class Commands {
 
     private Commands(){}
 
-    public static void init(Plugin plugin, SkinsAPI<Player> api) {
+    public static void init(Plugin plugin, SkinsAPI<Player> api, SkinsConfig conf) {
         CommandManager manager = new BukkitCommandManager(plugin);
 
         /*  /skin commands  */
@@ -97,6 +98,33 @@ public final class Commands {
                 .executor(new CmdSkinMenu(api))
                 .build();
 
+        Command cmdStorageMigrate = Command.builder()
+                .args(
+                        Arguments.string("from"),
+                        Arguments.string("to")
+                )
+                .executor(new CmdStorageMigrate(api, conf, plugin.getDataFolder().toPath()))
+                .build();
+
+        Command cmdStorageSwitch = Command.builder()
+                .args(
+                        Arguments.string("to"),
+                        Arguments.optional(Arguments.string("rate"))
+                )
+                .executor(new CmdStorageSwitch(api, conf))
+                .build();
+
+        Command cmdStorageStats = Command.builder()
+                .executor(new CmdStorageStats(api))
+                .build();
+
+        Command cmdStorage = Command.builder()
+                .permission("csm.storage")
+                .child(cmdStorageMigrate, "migrate")
+                .child(cmdStorageSwitch, "switch")
+                .child(cmdStorageStats, "stats")
+                .build();
+
         Command cmdSkin = Command.builder()
                 .description("CustomSkinsManager skin command")
                 .help(api.getLang().ofArr("help"))
@@ -106,6 +134,7 @@ public final class Commands {
                 .child(cmdSkinTo, "to")
                 .child(cmdSkinPreview, "preview")
                 .child(cmdSkinMenu, "menu")
+                .child(cmdStorage, "storage")
                 .build();
 
         /*  /skull commands  */
@@ -27,10 +27,13 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerResourcePackStatusEvent;
 import org.joor.Reflect;
+import ru.csm.api.logging.Logger;
 import ru.csm.api.services.SkinsAPI;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.bukkit.util.BukkitTasks;
 
+import java.util.UUID;
+
 public class PlayerListener implements Listener {
 
     private final SkinsAPI<Player> api;
@@ -55,11 +58,16 @@ public class PlayerListener implements Listener {
 
     @EventHandler
     public void onJoin(PlayerJoinEvent event){
-        BukkitTasks.runTaskAsync(()->{
-            SkinPlayer player = api.loadPlayer(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        UUID uuid = event.getPlayer().getUniqueId();
+        String name = event.getPlayer().getName();
+
+        // Record is loaded in database thread, but player is created in plugin's thread
+        // because it may request Mojang API
+        api.loadRecord(uuid).thenAcceptAsync(record -> {
+            SkinPlayer player = record != null ? api.loadPlayer(record, uuid, name) : null;
 
             if (player == null){
-                player = api.buildPlayer(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+                player = api.buildPlayer(uuid, name);
                 api.createNewPlayer(player);
             }
 
@@ -70,6 +78,9 @@ public class PlayerListener implements Listener {
             if(!event.getPlayer().isDead() && !useResourcePack){
                 player.refreshSkin();
             }
+        }, BukkitTasks::runTaskAsync).exceptionally(e -> {
+            Logger.severe("Cannot load player %s: %s", name, e.getMessage());
+            return null;
         });
     }
 
@@ -22,9 +22,12 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinField;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.bukkit.nms.SkinHandlers;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 
 public class BukkitSkinPlayer implements SkinPlayer {
@@ -35,6 +38,7 @@ public class BukkitSkinPlayer implements SkinPlayer {
 
     private Skin defaultSkin;
     private Skin customSkin;
+    private final Set<SkinField> dirtyFields = EnumSet.noneOf(SkinField.class);
 
     public BukkitSkinPlayer(UUID uuid, String name){
         this.uuid = uuid;
@@ -69,11 +73,13 @@ public class BukkitSkinPlayer implements SkinPlayer {
     @Override
     public void setDefaultSkin(Skin skin) {
         this.defaultSkin = skin;
+        markDirty(SkinField.DEFAULT_SKIN);
     }
 
     @Override
     public void setCustomSkin(Skin skin) {
         this.customSkin = skin;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -89,6 +95,7 @@ public class BukkitSkinPlayer implements SkinPlayer {
     @Override
     public void resetSkin() {
         this.customSkin = null;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -110,4 +117,21 @@ public class BukkitSkinPlayer implements SkinPlayer {
     public boolean hasPermission(String permission) {
         return getPlayer().hasPermission(permission);
     }
+
+    @Override
+    public synchronized void markDirty(SkinField field) {
+        dirtyFields.add(field);
+    }
+
+    @Override
+    public synchronized boolean hasDirtyFields() {
+        return !dirtyFields.isEmpty();
+    }
+
+    @Override
+    public synchronized Set<SkinField> pollDirtyFields() {
+        Set<SkinField> fields = EnumSet.copyOf(dirtyFields);
+        dirtyFields.clear();
+        return fields;
+    }
 }
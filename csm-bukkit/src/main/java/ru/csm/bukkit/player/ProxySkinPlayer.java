@@ -20,8 +20,11 @@ package ru.csm.bukkit.player;
 
 import org.bukkit.entity.Player;
 import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinField;
 import ru.csm.api.player.SkinPlayer;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 
 public class ProxySkinPlayer implements SkinPlayer {
@@ -29,6 +32,7 @@ public class ProxySkinPlayer implements SkinPlayer {
     private Player player;
     private String name;
     private UUID uuid;
+    private final Set<SkinField> dirtyFields = EnumSet.noneOf(SkinField.class);
 
     public ProxySkinPlayer(Player player){
         this.player = player;
@@ -105,4 +109,21 @@ public class ProxySkinPlayer implements SkinPlayer {
     public boolean hasPermission(String permission) {
         return player != null && player.hasPermission(permission);
     }
+
+    @Override
+    public synchronized void markDirty(SkinField field) {
+        dirtyFields.add(field);
+    }
+
+    @Override
+    public synchronized boolean hasDirtyFields() {
+        return !dirtyFields.isEmpty();
+    }
+
+    @Override
+    public synchronized Set<SkinField> pollDirtyFields() {
+        Set<SkinField> fields = EnumSet.copyOf(dirtyFields);
+        dirtyFields.clear();
+        return fields;
+    }
 }
@@ -31,12 +31,18 @@ import ru.csm.api.player.Skin;
 import ru.csm.api.player.SkinModel;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.AsyncDatabase;
 import ru.csm.api.storage.Database;
+import ru.csm.api.storage.SaveBuffer;
+import ru.csm.api.storage.SkinRecordCache;
+import ru.csm.api.storage.SkinRecordRepository;
+import ru.csm.api.storage.SwitchableSkinRecordRepository;
 import ru.csm.bukkit.nms.Npcs;
 import ru.csm.bukkit.npc.NPC;
 import ru.csm.bukkit.player.ProxySkinPlayer;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class ProxySkinsAPI implements SkinsAPI<Player> {
 
@@ -58,6 +64,31 @@ public class ProxySkinsAPI implements SkinsAPI<Player> {
         return null;
     }
 
+    @Override
+    public SkinRecordRepository getSkinRepository() {
+        return null;
+    }
+
+    @Override
+    public SaveBuffer getSaveBuffer() {
+        return null;
+    }
+
+    @Override
+    public AsyncDatabase getAsyncDatabase() {
+        return null;
+    }
+
+    @Override
+    public SkinRecordCache getRecordCache() {
+        return null;
+    }
+
+    @Override
+    public SwitchableSkinRecordRepository getSwitchableRepository() {
+        return null;
+    }
+
     @Override
     public boolean isBlackList(String nickname, SkinPlayer player) {
         return false;
@@ -96,8 +127,8 @@ public class ProxySkinsAPI implements SkinsAPI<Player> {
     }
 
     @Override
-    public Head getPlayerHead(String name) {
-        return null;
+    public CompletableFuture<Head> getPlayerHead(String name) {
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
@@ -27,12 +27,11 @@ import ru.csm.api.player.Head;
 import ru.csm.api.player.Skin;
 import ru.csm.api.player.SkinModel;
 import ru.csm.api.player.SkinPlayer;
+import ru.csm.api.services.MojangAPI;
 import ru.csm.api.services.SkinHash;
 import ru.csm.api.services.SkinsAPI;
-import ru.csm.api.storage.SkinsConfig;
-import ru.csm.api.storage.Tables;
-import ru.csm.api.storage.Database;
-import ru.csm.api.storage.Row;
+import ru.csm.api.logging.Logger;
+import ru.csm.api.storage.*;
 import ru.csm.api.upload.*;
 import ru.csm.api.utils.Validator;
 import ru.csm.bukkit.event.SkinChangeEvent;
@@ -45,13 +44,21 @@ import ru.csm.bukkit.npc.NPC;
 import ru.csm.bukkit.player.BukkitSkinPlayer;
 import ru.csm.bukkit.util.BukkitTasks;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class SpigotSkinsAPI implements SkinsAPI<Player> {
 
     private final SkinsConfig conf;
     private final Database database;
+    private final SkinRecordCache recordCache;
+    private final SwitchableSkinRecordRepository switchableRepository;
+    private final SkinRecordRepository repository;
+    private final SaveBuffer saveBuffer;
+    private final AsyncDatabase asyncDatabase;
+    private final RetentionTask retentionTask;
     private final Language lang;
 
     private final Map<UUID, SkinPlayer> playersByUUID = new HashMap<>();
@@ -66,16 +73,51 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
 
     private final MenuManager menuManager;
 
-    public SpigotSkinsAPI(Database database, SkinsConfig conf, Language lang, MenuManager menuManager) {
+    public SpigotSkinsAPI(Database database, SkinsConfig conf, Language lang, MenuManager menuManager) throws IOException {
         this.database = database;
+        // Database is null when records are stored without SQL
+        ChangeLog changeLog = conf.isSyncEnabled() && database != null ? new ChangeLog(database) : null;
+        this.recordCache = new SkinRecordCache(conf.getCacheMaxMemory() * 1024L * 1024L, conf.getCacheExpireAfter() * 1000L);
+        this.switchableRepository = new SwitchableSkinRecordRepository(Storages.create(conf, database, changeLog), changeLog);
+        this.repository = new CachedSkinRecordRepository(switchableRepository, recordCache);
+        this.saveBuffer = new SaveBuffer(repository, conf.getSaveBatchSize());
+        this.asyncDatabase = new AsyncDatabase(repository, recordCache, conf.getPoolSettings().getMaxSize(), conf.getQueueSize());
         this.conf = conf;
         this.lang = lang;
         this.menuManager = menuManager;
         this.defaultSkins = conf.getDefaultSkins().toArray(new Skin[0]);
 
+        MojangAPI.setUuidCache(new UuidCache(database, conf.getUuidCacheSize(),
+                conf.getUuidCacheTtl() * 60000L, conf.getUuidCacheNegativeTtl() * 60000L));
+        MojangAPI.setSkinCache(new PremiumSkinCache(database, conf.getSkinCacheSize(),
+                conf.getSkinCacheMaxAge() * 60000L), conf.getSkinCacheMaxAge() * 60000L);
+
         loadBlacklist();
         loadWhitelist();
         loadQueues();
+
+        BukkitTasks.runTaskTimerAsync(() -> asyncDatabase.write(saveBuffer::flush), 0, conf.getSaveInterval() * 20L);
+
+        if (changeLog != null){
+            StorageSync sync = new StorageSync(this, changeLog, conf.getSyncRetention() * 3600000L);
+            BukkitTasks.runTaskTimerAsync(() -> asyncDatabase.run(sync), 0, conf.getSyncPeriod() * 20L);
+        }
+
+        if (database != null && conf.isRetentionEnabled()){
+            RetentionTask retention = new RetentionTask(this, database, changeLog, conf.getRetentionMaxAge() * 86400000L,
+                    conf.getRetentionBatchSize(), conf.isRetentionArchive(), conf.getRetentionPause() * 1000L);
+            BukkitTasks.runTaskTimerAsync(() -> asyncDatabase.run(retention), 0, conf.getRetentionPause() * 20L);
+            this.retentionTask = retention;
+        } else {
+            this.retentionTask = null;
+        }
+    }
+
+    /**
+     * @return Task which removes inactive players, or null if retention is disabled
+     */
+    public RetentionTask getRetentionTask() {
+        return retentionTask;
     }
 
     @Override
@@ -88,6 +130,31 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
         return database;
     }
 
+    @Override
+    public SkinRecordRepository getSkinRepository() {
+        return repository;
+    }
+
+    @Override
+    public SaveBuffer getSaveBuffer() {
+        return saveBuffer;
+    }
+
+    @Override
+    public AsyncDatabase getAsyncDatabase() {
+        return asyncDatabase;
+    }
+
+    @Override
+    public SkinRecordCache getRecordCache() {
+        return recordCache;
+    }
+
+    @Override
+    public SwitchableSkinRecordRepository getSwitchableRepository() {
+        return switchableRepository;
+    }
+
     @Override
     public boolean isBlackList(String nickname, SkinPlayer player){
         if (blacklist == null) return false;
@@ -138,19 +205,15 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
     }
 
     @Override
-    public Head getPlayerHead(String name) {
-        Row row = database.getRow(Tables.SKINS, "name", name);
-
-        if (row != null){
-            String owner = row.getField("name").toString();
-            String texture = row.hasField("custom_value")
-                    ? row.getField("custom_value").toString()
-                    : row.getField("default_value").toString();
-
-            return new Head(owner, Skin.of(texture, null).getURL());
-        }
+    public CompletableFuture<Head> getPlayerHead(String name) {
+        return asyncDatabase.loadByName(name).thenCompose(record -> {
+            if (record != null){
+                return CompletableFuture.completedFuture(new Head(record.getName(), Skin.of(record.getCurrentValue(), null).getURL()));
+            }
 
-        return null;
+            // Player is not stored yet, so head has premium skin if it exists
+            return getDefaultSkinAsync(name).thenApply(skin -> skin.map(s -> new Head(name, s.getURL())).orElse(null));
+        });
     }
 
     @Override
@@ -268,6 +331,11 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
         });
     }
 
+    @Override
+    public void updatePlayer(SkinPlayer player, SkinRecord record) {
+        BukkitTasks.runTask(() -> SkinsAPI.super.updatePlayer(player, record));
+    }
+
     @Override
     public void openSkinsMenu(Player player, int page) {
         if (page < 1) return;
@@ -275,25 +343,24 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
         int range = 45;
         int offset = (page-1) * range;
 
-        String sql = "SELECT name,custom_value,custom_signature FROM %s WHERE custom_value IS NOT NULL LIMIT %s OFFSET %s";
-        Row[] rows = database.getRowsWithRequest(String.format(sql, Tables.SKINS, range, offset));
-
-        if (rows.length == 0) {
-            if (page == 1) player.sendMessage(lang.of("menu.empty"));
-            return;
-        }
+        asyncDatabase.loadGalleryPage(offset, range).thenAccept(records -> BukkitTasks.runTask(() -> {
+            if (records.isEmpty()) {
+                if (page == 1) player.sendMessage(lang.of("menu.empty"));
+                return;
+            }
 
-        List<HeadItem> heads = new ArrayList<>();
+            List<HeadItem> heads = new ArrayList<>();
 
-        for (Row row : rows){
-            String name = row.getField("name").toString();
-            String texture = row.getField("custom_value").toString();
-            String signature = row.getField("custom_signature").toString();
-            heads.add(new HeadItem(name, new Skin(texture, signature)));
-        }
+            for (SkinRecord record : records){
+                heads.add(new HeadItem(record.getName(), record.getCustomSkin()));
+            }
 
-        SkinsMenu menu = menuManager.createMenu(this, heads, page);
-        menuManager.openMenu(player, menu);
+            SkinsMenu menu = menuManager.createMenu(this, heads, page);
+            menuManager.openMenu(player, menu);
+        })).exceptionally(e -> {
+            Logger.warning("Cannot load skins menu: %s", e.getMessage());
+            return null;
+        });
     }
 
     @Override
@@ -305,6 +372,7 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
     public void addPlayer(SkinPlayer player) {
         playersByName.put(player.getName().toLowerCase(), player);
         playersByUUID.put(player.getUUID(), player);
+        saveBuffer.markSeen(player.getUUID());
     }
 
     @Override
@@ -353,12 +421,21 @@ public class SpigotSkinsAPI implements SkinsAPI<Player> {
             imageQueue = new MineskinQueue(this, imagePeriod);
         }
 
+        if (conf.isClusterEnabled() && database != null){
+            ClusterQueue cluster = new ClusterQueue(database, nameQueue, imageQueue, conf.getClusterLeaseTime() * 1000L);
+            nameQueue.setCluster(cluster);
+            imageQueue.setCluster(cluster);
+            BukkitTasks.runTaskTimerAsync(cluster, 0, 20);
+        }
+
         BukkitTasks.runTaskTimerAsync(nameQueue, 0, 20); // 1 second
         BukkitTasks.runTaskTimerAsync(imageQueue, 0, imagePeriod * 20);
     }
 
     @Override
     public void savePlayer(SkinPlayer player) {
-        BukkitTasks.runTaskAsync(()->savePlayerBlocking(player));
+        if (saveBuffer.add(SkinRecord.of(player), player.pollDirtyFields())){
+            asyncDatabase.write(saveBuffer::flush);
+        }
     }
 }
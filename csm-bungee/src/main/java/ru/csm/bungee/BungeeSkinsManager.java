@@ -32,7 +32,6 @@ import ru.csm.api.services.SkinHash;
 import ru.csm.api.services.SkinsAPI;
 import ru.csm.api.storage.*;
 import ru.csm.api.upload.Profile;
-import ru.csm.api.utils.FileUtil;
 import ru.csm.api.logging.Logger;
 import ru.csm.bungee.cmd.Commands;
 import ru.csm.bungee.listeners.PlayerListeners;
@@ -63,7 +62,7 @@ public class BungeeSkinsManager extends Plugin {
         try {
             Logger.set(new JULHandler(getLogger()));
 
-            new Metrics(this, 7375);
+            Metrics metrics = new Metrics(this, 7375);
 
             BungeeTasks.init(this);
 
@@ -89,7 +88,12 @@ public class BungeeSkinsManager extends Plugin {
             MessageSender<ProxiedPlayer> sender = new PluginMessageSender();
             PluginMessageReceiver receiver = new PluginMessageReceiver();
 
-            api = new BungeeSkinsAPI(database, config, sender);
+            BungeeSkinsAPI bungeeApi = new BungeeSkinsAPI(database, config, sender);
+            api = bungeeApi;
+
+            if (bungeeApi.getRetentionTask() != null){
+                metrics.addCustomChart(new Metrics.SingleLineChart("removed_inactive_players", bungeeApi.getRetentionTask()::pollRemoved));
+            }
 
             receiver.registerHandler(Channels.SKINS, new HandlerSkin(api));
             receiver.registerHandler(Channels.SKULLS, new HandlerSkull());
@@ -105,7 +109,7 @@ public class BungeeSkinsManager extends Plugin {
 
             registerListeners();
 
-            Commands.init(this, api, sender);
+            Commands.init(this, api, sender, config);
 
             BungeeTasks.runRepeatTask(SkinHash::clean, 0, 30000); // 30 sec
         } catch (Exception e){
@@ -115,6 +119,12 @@ public class BungeeSkinsManager extends Plugin {
 
     @Override
     public void onDisable(){
+        if (api != null){
+            api.getAsyncDatabase().shutdown();
+            api.getSaveBuffer().flush();
+            api.getSkinRepository().close();
+        }
+
         if (database != null){
             database.closeConnection();
         }
@@ -133,10 +143,13 @@ public class BungeeSkinsManager extends Plugin {
     private void setupDatabase(SkinsConfig conf) throws SQLException {
         String type = conf.getDbType().toLowerCase();
 
+        // Records are stored without SQL database
+        if (!Storages.isSql(type)) return;
+
         switch (type) {
             case "h2": {
                 Path path = Paths.get(getDataFolder().getAbsolutePath(), "skins");
-                this.database = new H2Database(path, conf.getDbUser(), conf.getDbPassword());
+                this.database = new H2Database(path, conf.getDbUser(), conf.getDbPassword(), conf.getPoolSettings());
                 break;
             }
             case "mysql": {
@@ -145,13 +158,15 @@ public class BungeeSkinsManager extends Plugin {
                 String dbname = conf.getDbName();
                 String user = conf.getDbUser();
                 String password = conf.getDbPassword();
-                this.database = new MySQLDatabase(host, port, dbname, user, password);
+                this.database = new MySQLDatabase(host, port, dbname, user, password, conf.getPoolSettings(),
+                        conf.getReplicaHost(), conf.getReplicaPort(), conf.getReplicaMaxLag() * 1000L);
                 break;
             }
             default:
                 throw new SQLException("Undefined database type: " + type);
         }
 
-        this.database.executeSQL(FileUtil.readResourceContent("/tables/" + type + "/skins.sql"));
+        new MigrationRunner(this.database, Migrations.list()).migrate();
+        PackedTextures.convert(this.database, conf.isPackTextures());
     }
 }
@@ -8,7 +8,6 @@ import napi.commands.parsed.CommandSender;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import ru.csm.api.network.Channels;
 import ru.csm.api.network.MessageSender;
-import ru.csm.api.player.Head;
 import ru.csm.api.services.SkinsAPI;
 
 public class CmdSkullToFrom implements CommandExecutor {
@@ -26,17 +25,17 @@ public class CmdSkullToFrom implements CommandExecutor {
         ProxiedPlayer player = ctx.<ProxiedPlayer>get("target").get();
         ProxiedPlayer targetPlayer = ctx.<ProxiedPlayer>get("username").get();
 
-        Head head = api.getPlayerHead(targetPlayer.getName());
-
-        if (head != null){
-            JsonObject message = new JsonObject();
-            message.addProperty("player", player.getName());
-            message.addProperty("url", head.getUrl());
-            this.sender.sendMessage(player, Channels.SKULLS, message);
-            return;
-        }
-
-        sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+        api.getPlayerHead(targetPlayer.getName()).thenAccept(head -> {
+            if (head != null){
+                JsonObject message = new JsonObject();
+                message.addProperty("player", player.getName());
+                message.addProperty("url", head.getUrl());
+                this.sender.sendMessage(player, Channels.SKULLS, message);
+                return;
+            }
+
+            sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getName()));
+        });
     }
 
 }
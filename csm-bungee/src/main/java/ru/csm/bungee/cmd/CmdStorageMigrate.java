@@ -0,0 +1,35 @@
+package ru.csm.bungee.cmd;
+
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
+import ru.csm.api.storage.StorageTransferTask;
+import ru.csm.bungee.util.BungeeTasks;
+
+import java.nio.file.Path;
+
+public class CmdStorageMigrate implements CommandExecutor {
+
+    private final SkinsAPI<ProxiedPlayer> api;
+    private final SkinsConfig conf;
+    private final Path dataFolder;
+
+    public CmdStorageMigrate(SkinsAPI<ProxiedPlayer> api, SkinsConfig conf, Path dataFolder){
+        this.api = api;
+        this.conf = conf;
+        this.dataFolder = dataFolder;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        String from = ctx.getString("from");
+        String to = ctx.getString("to");
+
+        BungeeTasks.runAsync(new StorageTransferTask(api, conf, dataFolder, from, to, sender::sendMessage));
+    }
+
+}
@@ -0,0 +1,31 @@
+package ru.csm.bungee.cmd;
+
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.Database;
+
+public class CmdStorageStats implements CommandExecutor {
+
+    private final SkinsAPI<ProxiedPlayer> api;
+
+    public CmdStorageStats(SkinsAPI<ProxiedPlayer> api){
+        this.api = api;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        Database database = api.getDatabase();
+
+        if (database == null){
+            sender.sendMessage("Storage is not SQL database");
+            return;
+        }
+
+        sender.sendMessage("Connection pool: " + database.getPoolStats());
+    }
+
+}
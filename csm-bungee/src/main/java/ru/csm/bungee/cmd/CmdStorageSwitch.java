@@ -0,0 +1,40 @@
+package ru.csm.bungee.cmd;
+
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
+import ru.csm.api.storage.StorageSwitchTask;
+import ru.csm.bungee.util.BungeeTasks;
+
+public class CmdStorageSwitch implements CommandExecutor {
+
+    private final SkinsAPI<ProxiedPlayer> api;
+    private final SkinsConfig conf;
+
+    public CmdStorageSwitch(SkinsAPI<ProxiedPlayer> api, SkinsConfig conf){
+        this.api = api;
+        this.conf = conf;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        String to = ctx.getString("to");
+        int rate = StorageSwitchTask.DEFAULT_RATE;
+
+        if (ctx.has("rate")){
+            try {
+                rate = Integer.parseInt(ctx.getString("rate"));
+            } catch (NumberFormatException e){
+                sender.sendMessage("Rate must be a number of records per second");
+                return;
+            }
+        }
+
+        BungeeTasks.runAsync(new StorageSwitchTask(api, conf, to, rate, sender::sendMessage));
+    }
+
+}
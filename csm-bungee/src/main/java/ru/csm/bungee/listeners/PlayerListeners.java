@@ -24,10 +24,13 @@ import net.md_5.bungee.api.event.PostLoginEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
+import ru.csm.api.logging.Logger;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.api.services.SkinsAPI;
 import ru.csm.bungee.util.BungeeTasks;
 
+import java.util.UUID;
+
 public class PlayerListeners implements Listener {
 
     private final SkinsAPI<ProxiedPlayer> api;
@@ -38,11 +41,16 @@ public class PlayerListeners implements Listener {
 
     @EventHandler
     public void onPostLogin(PostLoginEvent e){
-        BungeeTasks.runAsync(()->{
-            SkinPlayer player = api.loadPlayer(e.getPlayer().getUniqueId(), e.getPlayer().getName());
+        UUID uuid = e.getPlayer().getUniqueId();
+        String name = e.getPlayer().getName();
+
+        // Record is loaded in database thread, but player is created in plugin's thread
+        // because it may request Mojang API
+        api.loadRecord(uuid).thenAcceptAsync(record -> {
+            SkinPlayer player = record != null ? api.loadPlayer(record, uuid, name) : null;
 
             if (player == null){
-                player = api.buildPlayer(e.getPlayer().getUniqueId(), e.getPlayer().getName());
+                player = api.buildPlayer(uuid, name);
                 api.createNewPlayer(player);
             }
 
@@ -50,6 +58,9 @@ public class PlayerListeners implements Listener {
 
             player.applySkin();
             player.refreshSkin();
+        }, BungeeTasks::runAsync).exceptionally(ex -> {
+            Logger.severe("Cannot load player %s: %s", name, ex.getMessage());
+            return null;
         });
     }
 
@@ -27,10 +27,13 @@ import net.md_5.bungee.connection.LoginResult;
 import ru.csm.api.network.Channels;
 import ru.csm.api.network.MessageSender;
 import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinField;
 import ru.csm.api.player.SkinPlayer;
 import ru.csm.api.logging.Logger;
 
 import java.lang.reflect.Field;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 
 public class BungeeSkinPlayer implements SkinPlayer {
@@ -40,6 +43,7 @@ public class BungeeSkinPlayer implements SkinPlayer {
 
     private Skin defaultSkin;
     private Skin customSkin;
+    private final Set<SkinField> dirtyFields = EnumSet.noneOf(SkinField.class);
 
     private final MessageSender<ProxiedPlayer> messageSender;
 
@@ -87,11 +91,13 @@ public class BungeeSkinPlayer implements SkinPlayer {
     @Override
     public void setDefaultSkin(Skin skin) {
         defaultSkin = skin;
+        markDirty(SkinField.DEFAULT_SKIN);
     }
 
     @Override
     public void setCustomSkin(Skin skin) {
         customSkin = skin;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -128,6 +134,7 @@ public class BungeeSkinPlayer implements SkinPlayer {
     @Override
     public void resetSkin() {
         customSkin = null;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -152,4 +159,21 @@ public class BungeeSkinPlayer implements SkinPlayer {
     public boolean hasPermission(String permission) {
         return getPlayer().hasPermission(permission);
     }
+
+    @Override
+    public synchronized void markDirty(SkinField field) {
+        dirtyFields.add(field);
+    }
+
+    @Override
+    public synchronized boolean hasDirtyFields() {
+        return !dirtyFields.isEmpty();
+    }
+
+    @Override
+    public synchronized Set<SkinField> pollDirtyFields() {
+        Set<SkinField> fields = EnumSet.copyOf(dirtyFields);
+        dirtyFields.clear();
+        return fields;
+    }
 }
@@ -27,12 +27,11 @@ import net.md_5.bungee.api.connection.ProxiedPlayer;
 import ru.csm.api.network.Channels;
 import ru.csm.api.network.MessageSender;
 import ru.csm.api.player.*;
+import ru.csm.api.services.MojangAPI;
 import ru.csm.api.services.SkinHash;
 import ru.csm.api.services.SkinsAPI;
-import ru.csm.api.storage.SkinsConfig;
-import ru.csm.api.storage.Tables;
-import ru.csm.api.storage.Database;
-import ru.csm.api.storage.Row;
+import ru.csm.api.logging.Logger;
+import ru.csm.api.storage.*;
 import ru.csm.api.upload.*;
 import ru.csm.api.utils.Validator;
 import ru.csm.bungee.event.SkinChangeEvent;
@@ -41,13 +40,21 @@ import ru.csm.bungee.event.SkinResetEvent;
 import ru.csm.bungee.player.BungeeSkinPlayer;
 import ru.csm.bungee.util.BungeeTasks;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
 
     private final SkinsConfig conf;
     private final Database database;
+    private final SkinRecordCache recordCache;
+    private final SwitchableSkinRecordRepository switchableRepository;
+    private final SkinRecordRepository repository;
+    private final SaveBuffer saveBuffer;
+    private final AsyncDatabase asyncDatabase;
+    private final RetentionTask retentionTask;
     private final Language lang;
 
     private final Skin[] defaultSkins;
@@ -62,16 +69,51 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
 
     private final MessageSender<ProxiedPlayer> messageSender;
 
-    public BungeeSkinsAPI(Database database, SkinsConfig conf, MessageSender<ProxiedPlayer> messageSender) {
+    public BungeeSkinsAPI(Database database, SkinsConfig conf, MessageSender<ProxiedPlayer> messageSender) throws IOException {
         this.database = database;
+        // Database is null when records are stored without SQL
+        ChangeLog changeLog = conf.isSyncEnabled() && database != null ? new ChangeLog(database) : null;
+        this.recordCache = new SkinRecordCache(conf.getCacheMaxMemory() * 1024L * 1024L, conf.getCacheExpireAfter() * 1000L);
+        this.switchableRepository = new SwitchableSkinRecordRepository(Storages.create(conf, database, changeLog), changeLog);
+        this.repository = new CachedSkinRecordRepository(switchableRepository, recordCache);
+        this.saveBuffer = new SaveBuffer(repository, conf.getSaveBatchSize());
+        this.asyncDatabase = new AsyncDatabase(repository, recordCache, conf.getPoolSettings().getMaxSize(), conf.getQueueSize());
         this.conf = conf;
         this.lang = conf.getLanguage();
         this.messageSender = messageSender;
         this.defaultSkins = conf.getDefaultSkins().toArray(new Skin[0]);
 
+        MojangAPI.setUuidCache(new UuidCache(database, conf.getUuidCacheSize(),
+                conf.getUuidCacheTtl() * 60000L, conf.getUuidCacheNegativeTtl() * 60000L));
+        MojangAPI.setSkinCache(new PremiumSkinCache(database, conf.getSkinCacheSize(),
+                conf.getSkinCacheMaxAge() * 60000L), conf.getSkinCacheMaxAge() * 60000L);
+
         loadBlacklist();
         loadWhitelist();
         loadQueues();
+
+        BungeeTasks.runRepeatTask(() -> asyncDatabase.write(saveBuffer::flush), 0, conf.getSaveInterval() * 1000L);
+
+        if (changeLog != null){
+            StorageSync sync = new StorageSync(this, changeLog, conf.getSyncRetention() * 3600000L);
+            BungeeTasks.runRepeatTask(() -> asyncDatabase.run(sync), 0, conf.getSyncPeriod() * 1000L);
+        }
+
+        if (database != null && conf.isRetentionEnabled()){
+            RetentionTask retention = new RetentionTask(this, database, changeLog, conf.getRetentionMaxAge() * 86400000L,
+                    conf.getRetentionBatchSize(), conf.isRetentionArchive(), conf.getRetentionPause() * 1000L);
+            BungeeTasks.runRepeatTask(() -> asyncDatabase.run(retention), 0, conf.getRetentionPause() * 1000L);
+            this.retentionTask = retention;
+        } else {
+            this.retentionTask = null;
+        }
+    }
+
+    /**
+     * @return Task which removes inactive players, or null if retention is disabled
+     */
+    public RetentionTask getRetentionTask() {
+        return retentionTask;
     }
 
     @Override
@@ -84,6 +126,31 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
         return database;
     }
 
+    @Override
+    public SkinRecordRepository getSkinRepository() {
+        return repository;
+    }
+
+    @Override
+    public SaveBuffer getSaveBuffer() {
+        return saveBuffer;
+    }
+
+    @Override
+    public AsyncDatabase getAsyncDatabase() {
+        return asyncDatabase;
+    }
+
+    @Override
+    public SkinRecordCache getRecordCache() {
+        return recordCache;
+    }
+
+    @Override
+    public SwitchableSkinRecordRepository getSwitchableRepository() {
+        return switchableRepository;
+    }
+
     @Override
     public boolean isBlackList(String nickname, SkinPlayer player){
         if (blacklist == null) return false;
@@ -134,19 +201,15 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
     }
 
     @Override
-    public Head getPlayerHead(String name) {
-        Row row = database.getRow(Tables.SKINS, "name", name);
-
-        if (row != null){
-            String owner = row.getField("name").toString();
-            String texture = row.hasField("custom_value")
-                    ? row.getField("custom_value").toString()
-                    : row.getField("default_value").toString();
-
-            return new Head(owner, Skin.of(texture, null).getURL());
-        }
+    public CompletableFuture<Head> getPlayerHead(String name) {
+        return asyncDatabase.loadByName(name).thenCompose(record -> {
+            if (record != null){
+                return CompletableFuture.completedFuture(new Head(record.getName(), Skin.of(record.getCurrentValue(), null).getURL()));
+            }
 
-        return null;
+            // Player is not stored yet, so head has premium skin if it exists
+            return getDefaultSkinAsync(name).thenApply(skin -> skin.map(s -> new Head(name, s.getURL())).orElse(null));
+        });
     }
 
     @Override
@@ -254,36 +317,34 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
         int range = 45;
         int offset = (page-1) * range;
 
-        String sql = "SELECT name,custom_value,custom_signature FROM %s WHERE custom_value IS NOT NULL LIMIT %s OFFSET %s";
-        Row[] rows = database.getRowsWithRequest(String.format(sql, Tables.SKINS, range, offset));
-
-        if (rows.length == 0) {
-            if (page == 1) player.sendMessage(TextComponent.fromLegacyText(lang.of("menu.empty")));
-            return;
-        }
-
-        JsonObject message = new JsonObject();
-        JsonArray heads = new JsonArray();
+        asyncDatabase.loadGalleryPage(offset, range).thenAccept(records -> {
+            if (records.isEmpty()) {
+                if (page == 1) player.sendMessage(TextComponent.fromLegacyText(lang.of("menu.empty")));
+                return;
+            }
 
-        for (Row row : rows){
-            JsonObject head = new JsonObject();
+            JsonObject message = new JsonObject();
+            JsonArray heads = new JsonArray();
 
-            String name = row.getField("name").toString();
-            String texture = row.getField("custom_value").toString();
-            String signature = row.getField("custom_signature").toString();
+            for (SkinRecord record : records){
+                JsonObject head = new JsonObject();
 
-            head.addProperty("name", name);
-            head.addProperty("texture", texture);
-            head.addProperty("signature", signature);
+                head.addProperty("name", record.getName());
+                head.addProperty("texture", record.getCustomValue());
+                head.addProperty("signature", record.getCustomSignature());
 
-            heads.add(head);
-        }
+                heads.add(head);
+            }
 
-        message.addProperty("player", player.getName());
-        message.addProperty("page", page);
-        message.add("heads", heads);
+            message.addProperty("player", player.getName());
+            message.addProperty("page", page);
+            message.add("heads", heads);
 
-        messageSender.sendMessage(player, Channels.MENU, message);
+            messageSender.sendMessage(player, Channels.MENU, message);
+        }).exceptionally(e -> {
+            Logger.warning("Cannot load skins menu: %s", e.getMessage());
+            return null;
+        });
     }
 
     @Override
@@ -295,6 +356,7 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
     public void addPlayer(SkinPlayer player) {
         playersByName.put(player.getName().toLowerCase(), player);
         playersByUUID.put(player.getUUID(), player);
+        saveBuffer.markSeen(player.getUUID());
     }
 
     @Override
@@ -343,12 +405,21 @@ public class BungeeSkinsAPI implements SkinsAPI<ProxiedPlayer> {
             imageQueue = new MineskinQueue(this, imagePeriod);
         }
 
+        if (conf.isClusterEnabled() && database != null){
+            ClusterQueue cluster = new ClusterQueue(database, nameQueue, imageQueue, conf.getClusterLeaseTime() * 1000L);
+            nameQueue.setCluster(cluster);
+            imageQueue.setCluster(cluster);
+            BungeeTasks.runRepeatTask(cluster, 0, 1000);
+        }
+
         BungeeTasks.runRepeatTask(nameQueue, 0, 1000);
         BungeeTasks.runRepeatTask(imageQueue, 0, imagePeriod * 1000);
     }
 
     @Override
     public void savePlayer(SkinPlayer player) {
-        BungeeTasks.runAsync(()->savePlayerBlocking(player));
+        if (saveBuffer.add(SkinRecord.of(player), player.pollDirtyFields())){
+            asyncDatabase.write(saveBuffer::flush);
+        }
     }
 }
@@ -43,8 +43,11 @@ import ru.csm.api.storage.Database;
 import ru.csm.api.storage.H2Database;
 import ru.csm.api.storage.MySQLDatabase;
 import ru.csm.api.storage.SkinsConfig;
+import ru.csm.api.storage.MigrationRunner;
+import ru.csm.api.storage.Migrations;
+import ru.csm.api.storage.PackedTextures;
+import ru.csm.api.storage.Storages;
 import ru.csm.api.upload.Profile;
-import ru.csm.api.utils.FileUtil;
 import ru.csm.velocity.cmd.Commands;
 import ru.csm.velocity.listeners.PlayerListeners;
 import ru.csm.velocity.message.PluginMessageReceiver;
@@ -98,10 +101,7 @@ public class VelocitySkinsManager {
         try{
             PluginManager pm = server.getPluginManager();
 
-            pm.addToClasspath(this, downloadLib(Dependency.COMMONS_LOGGING.getName(), Dependency.COMMONS_LOGGING.getUrl()));
             pm.addToClasspath(this, downloadLib(Dependency.COMMONS_LANG3.getName(), Dependency.COMMONS_LANG3.getUrl()));
-            pm.addToClasspath(this, downloadLib(Dependency.COMMONS_POOL.getName(), Dependency.COMMONS_POOL.getUrl()));
-            pm.addToClasspath(this, downloadLib(Dependency.DBCP.getName(), Dependency.DBCP.getUrl()));
             pm.addToClasspath(this, downloadLib(Dependency.H2.getName(), Dependency.H2.getUrl()));
 
             VelocityTasks.init(this, server);
@@ -142,7 +142,7 @@ public class VelocitySkinsManager {
             server.getEventManager().register(this, receiver);
 
             registerListeners();
-            Commands.init(server, api, sender);
+            Commands.init(server, api, sender, config, dataFolder);
 
             VelocityTasks.runRepeat(SkinHash::clean, 30000); // 30 sec
 
@@ -154,6 +154,12 @@ public class VelocitySkinsManager {
 
     @Subscribe
     public void onDisable(ProxyShutdownEvent event){
+        if (api != null){
+            api.getAsyncDatabase().shutdown();
+            api.getSaveBuffer().flush();
+            api.getSkinRepository().close();
+        }
+
         if (database != null){
             database.closeConnection();
         }
@@ -172,12 +178,15 @@ public class VelocitySkinsManager {
     private void setupDatabase(SkinsConfig conf) throws SQLException {
         String type = conf.getDbType().toLowerCase();
 
+        // Records are stored without SQL database
+        if (!Storages.isSql(type)) return;
+
         switch (type) {
             case "h2": {
                 Path path = Paths.get(dataFolder.toString(), "skins");
                 String user = conf.getDbUser();
                 String password = conf.getDbPassword();
-                this.database = new H2Database(path, user, password);
+                this.database = new H2Database(path, user, password, conf.getPoolSettings());
                 break;
             }
             case "mysql": {
@@ -186,14 +195,16 @@ public class VelocitySkinsManager {
                 String dbname = conf.getDbName();
                 String user = conf.getDbUser();
                 String password = conf.getDbPassword();
-                this.database = new MySQLDatabase(host, port, dbname, user, password);
+                this.database = new MySQLDatabase(host, port, dbname, user, password, conf.getPoolSettings(),
+                        conf.getReplicaHost(), conf.getReplicaPort(), conf.getReplicaMaxLag() * 1000L);
                 break;
             }
             default:
                 throw new SQLException("Undefined database type: " + type);
         }
 
-        this.database.executeSQL(FileUtil.readResourceContent("/tables/" + type + "/skins.sql"));
+        new MigrationRunner(this.database, Migrations.list()).migrate();
+        PackedTextures.convert(this.database, conf.isPackTextures());
     }
 
     private Path downloadLib(String name, URL url) throws IOException {
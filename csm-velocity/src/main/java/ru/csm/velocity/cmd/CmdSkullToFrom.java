@@ -8,7 +8,6 @@ import napi.commands.parsed.CommandSender;
 import com.velocitypowered.api.proxy.Player;
 import ru.csm.api.network.Channels;
 import ru.csm.api.network.MessageSender;
-import ru.csm.api.player.Head;
 import ru.csm.api.services.SkinsAPI;
 
 public class CmdSkullToFrom implements CommandExecutor {
@@ -26,17 +25,17 @@ public class CmdSkullToFrom implements CommandExecutor {
         Player player = ctx.<Player>get("target").get();
         Player targetPlayer = ctx.<Player>get("username").get();
 
-        Head head = api.getPlayerHead(targetPlayer.getUsername());
-
-        if (head != null){
-            JsonObject message = new JsonObject();
-            message.addProperty("player", player.getUsername());
-            message.addProperty("url", head.getUrl());
-            this.sender.sendMessage(player, Channels.SKULLS, message);
-            return;
-        }
-
-        sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getUsername()));
+        api.getPlayerHead(targetPlayer.getUsername()).thenAccept(head -> {
+            if (head != null){
+                JsonObject message = new JsonObject();
+                message.addProperty("player", player.getUsername());
+                message.addProperty("url", head.getUrl());
+                this.sender.sendMessage(player, Channels.SKULLS, message);
+                return;
+            }
+
+            sender.sendMessage(String.format(api.getLang().of("player.missing"), targetPlayer.getUsername()));
+        });
     }
 
 }
@@ -0,0 +1,35 @@
+package ru.csm.velocity.cmd;
+
+import com.velocitypowered.api.proxy.Player;
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
+import ru.csm.api.storage.StorageTransferTask;
+import ru.csm.velocity.util.VelocityTasks;
+
+import java.nio.file.Path;
+
+public class CmdStorageMigrate implements CommandExecutor {
+
+    private final SkinsAPI<Player> api;
+    private final SkinsConfig conf;
+    private final Path dataFolder;
+
+    public CmdStorageMigrate(SkinsAPI<Player> api, SkinsConfig conf, Path dataFolder){
+        this.api = api;
+        this.conf = conf;
+        this.dataFolder = dataFolder;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        String from = ctx.getString("from");
+        String to = ctx.getString("to");
+
+        VelocityTasks.run(new StorageTransferTask(api, conf, dataFolder, from, to, sender::sendMessage));
+    }
+
+}
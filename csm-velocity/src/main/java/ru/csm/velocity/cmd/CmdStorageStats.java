@@ -0,0 +1,31 @@
+package ru.csm.velocity.cmd;
+
+import com.velocitypowered.api.proxy.Player;
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.Database;
+
+public class CmdStorageStats implements CommandExecutor {
+
+    private final SkinsAPI<Player> api;
+
+    public CmdStorageStats(SkinsAPI<Player> api){
+        this.api = api;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        Database database = api.getDatabase();
+
+        if (database == null){
+            sender.sendMessage("Storage is not SQL database");
+            return;
+        }
+
+        sender.sendMessage("Connection pool: " + database.getPoolStats());
+    }
+
+}
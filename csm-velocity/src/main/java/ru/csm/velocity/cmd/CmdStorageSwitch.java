@@ -0,0 +1,40 @@
+package ru.csm.velocity.cmd;
+
+import com.velocitypowered.api.proxy.Player;
+import napi.commands.CommandExecutor;
+import napi.commands.exception.CommandException;
+import napi.commands.parsed.CommandContext;
+import napi.commands.parsed.CommandSender;
+import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
+import ru.csm.api.storage.StorageSwitchTask;
+import ru.csm.velocity.util.VelocityTasks;
+
+public class CmdStorageSwitch implements CommandExecutor {
+
+    private final SkinsAPI<Player> api;
+    private final SkinsConfig conf;
+
+    public CmdStorageSwitch(SkinsAPI<Player> api, SkinsConfig conf){
+        this.api = api;
+        this.conf = conf;
+    }
+
+    @Override
+    public void execute(CommandSender sender, CommandContext ctx) throws CommandException {
+        String to = ctx.getString("to");
+        int rate = StorageSwitchTask.DEFAULT_RATE;
+
+        if (ctx.has("rate")){
+            try {
+                rate = Integer.parseInt(ctx.getString("rate"));
+            } catch (NumberFormatException e){
+                sender.sendMessage("Rate must be a number of records per second");
+                return;
+            }
+        }
+
+        VelocityTasks.run(new StorageSwitchTask(api, conf, to, rate, sender::sendMessage));
+    }
+
+}
@@ -9,12 +9,16 @@ import napi.commands.velocity.VelocityArgs;
 import napi.commands.velocity.VelocityCommandManager;
 import ru.csm.api.network.MessageSender;
 import ru.csm.api.services.SkinsAPI;
+import ru.csm.api.storage.SkinsConfig;
+
+import java.nio.file.Path;
 
 public final class Commands {
 
     private Commands(){}
 
-    public static void init(ProxyServer server, SkinsAPI<Player> api, MessageSender<Player> sender) {
+    public static void init(ProxyServer server, SkinsAPI<Player> api, MessageSender<Player> sender,
+                            SkinsConfig conf, Path dataFolder) {
         CommandManager manager = new VelocityCommandManager(server);
 
         /*  /skin commands  */
@@ -98,6 +102,33 @@ public final class Commands {
                 .executor(new CmdSkinMenu(api))
                 .build();
 
+        Command cmdStorageMigrate = Command.builder()
+                .args(
+                        Arguments.string("from"),
+                        Arguments.string("to")
+                )
+                .executor(new CmdStorageMigrate(api, conf, dataFolder))
+                .build();
+
+        Command cmdStorageSwitch = Command.builder()
+                .args(
+                        Arguments.string("to"),
+                        Arguments.optional(Arguments.string("rate"))
+                )
+                .executor(new CmdStorageSwitch(api, conf))
+                .build();
+
+        Command cmdStorageStats = Command.builder()
+                .executor(new CmdStorageStats(api))
+                .build();
+
+        Command cmdStorage = Command.builder()
+                .permission("csm.storage")
+                .child(cmdStorageMigrate, "migrate")
+                .child(cmdStorageSwitch, "switch")
+                .child(cmdStorageStats, "stats")
+                .build();
+
         Command cmdSkin = Command.builder()
                 .description("CustomSkinsManager skin command")
                 .help(api.getLang().ofArr("help"))
@@ -107,6 +138,7 @@ public final class Commands {
                 .child(cmdSkinTo, "to")
                 .child(cmdSkinPreview, "preview")
                 .child(cmdSkinMenu, "menu")
+                .child(cmdStorage, "storage")
                 .build();
 
         /*  /skull commands  */
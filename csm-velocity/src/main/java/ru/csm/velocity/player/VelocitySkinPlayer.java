@@ -26,8 +26,11 @@ import net.kyori.text.TextComponent;
 import ru.csm.api.network.Channels;
 import ru.csm.api.network.MessageSender;
 import ru.csm.api.player.Skin;
+import ru.csm.api.player.SkinField;
 import ru.csm.api.player.SkinPlayer;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 
 public class VelocitySkinPlayer implements SkinPlayer {
@@ -40,6 +43,7 @@ public class VelocitySkinPlayer implements SkinPlayer {
     private Player player;
     private Skin defaultSkin;
     private Skin customSkin;
+    private final Set<SkinField> dirtyFields = EnumSet.noneOf(SkinField.class);
 
     public VelocitySkinPlayer(UUID uuid, String name, MessageSender<Player> messageSender, ProxyServer server){
         this.uuid = uuid;
@@ -79,11 +83,13 @@ public class VelocitySkinPlayer implements SkinPlayer {
     @Override
     public void setDefaultSkin(Skin skin) {
         defaultSkin = skin;
+        markDirty(SkinField.DEFAULT_SKIN);
     }
 
     @Override
     public void setCustomSkin(Skin skin) {
         customSkin = skin;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -116,6 +122,7 @@ public class VelocitySkinPlayer implements SkinPlayer {
     @Override
     public void resetSkin() {
         customSkin = null;
+        markDirty(SkinField.CUSTOM_SKIN);
     }
 
     @Override
@@ -140,4 +147,21 @@ public class VelocitySkinPlayer implements SkinPlayer {
     public boolean hasPermission(String permission) {
         return getPlayer().hasPermission(permission);
     }
+
+    @Override
+    public synchronized void markDirty(SkinField field) {
+        dirtyFields.add(field);
+    }
+
+    @Override
+    public synchronized boolean hasDirtyFields() {
+        return !dirtyFields.isEmpty();
+    }
+
+    @Override
+    public synchronized Set<SkinField> pollDirtyFields() {
+        Set<SkinField> fields = EnumSet.copyOf(dirtyFields);
+        dirtyFields.clear();
+        return fields;
+    }
 }